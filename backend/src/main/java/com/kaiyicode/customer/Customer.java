@@ -51,6 +51,12 @@ public class Customer {
     @Enumerated(EnumType.STRING)
     private Gender gender;
 
+    @Version
+    @Column(
+            nullable = false
+    )
+    private Long version;
+
     public Customer() {
     }
 
@@ -69,6 +75,11 @@ public class Customer {
         this.gender = gender;
     }
 
+    public Customer(Integer id, String name, String email, Integer age, Gender gender, Long version) {
+        this(id, name, email, age, gender);
+        this.version = version;
+    }
+
     public Integer getId() {
         return id;
     }
@@ -109,6 +120,15 @@ public class Customer {
         this.gender = gender;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    // version is concurrency metadata, not part of the customer's value
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
@@ -129,6 +149,7 @@ public class Customer {
                 ", email='" + email + '\'' +
                 ", age=" + age +
                 ", gender=" + gender +
+                ", version=" + version +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.kaiyicode.customer;
+
+import java.util.List;
+
+public record CustomerBatchResponse(
+        List<Customer> customers,
+        List<Integer> missingIds
+) {
+}
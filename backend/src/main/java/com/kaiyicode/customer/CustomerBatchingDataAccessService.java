@@ -0,0 +1,285 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Lookups by id wait up to a short window for others: concurrent lookups of the same
+// id share one query, distinct ids arriving together are loaded with one id = ANY(?).
+// Selected with customer.cache.backend=batching, so it sits below the cache and only
+// sees misses; everything else is forwarded.
+@Lazy
+@Repository("batching")
+public class CustomerBatchingDataAccessService implements CustomerDAO, AutoCloseable {
+
+    private final CustomerDAO delegate;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService dispatcher;
+    // queries run on virtual threads, so a slow batch never holds up the next window
+    private final ExecutorService loader;
+
+    private final Map<Integer, CompletableFuture<Optional<Customer>>> inFlight = new ConcurrentHashMap<>();
+    // not a monitor, callers may be virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<Lookup> pending = new ArrayList<>();
+
+    private final Counter lookups;
+    private final Counter coalesced;
+    private final Counter queries;
+    private final DistributionSummary batchSizes;
+
+    public CustomerBatchingDataAccessService(@Qualifier("bloom") CustomerDAO delegate,
+                                             MeterRegistry meterRegistry,
+                                             @Value("${customer.batching.window:2ms}") Duration window,
+                                             @Value("${customer.batching.max-batch-size:100}") int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("max batch size must be positive");
+        }
+        this.delegate = delegate;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("customer-batch-dispatch").daemon().factory());
+        this.loader = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("customer-batch-load-", 0).factory());
+
+        this.lookups = Counter.builder("customer.batching.lookups")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("customer.batching.coalesced")
+                .register(meterRegistry);
+        this.queries = Counter.builder("customer.batching.queries")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("customer.batching.batch.size")
+                .baseUnit("customers")
+                .register(meterRegistry);
+        FunctionCounter.builder("customer.batching.saved.queries", this,
+                        dao -> dao.lookups.count() - dao.queries.count())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        lookups.increment();
+        CompletableFuture<Optional<Customer>> lookup = new CompletableFuture<>();
+        CompletableFuture<Optional<Customer>> existing = inFlight.putIfAbsent(id, lookup);
+        if (existing != null) {
+            coalesced.increment();
+            return join(existing);
+        }
+        enqueue(new Lookup(id, lookup));
+        return join(lookup);
+    }
+
+    // a write detaches the lookup in flight for its id, it may have read the row before
+    // the write; whoever already joined it raced the write, lookups from now on start afresh
+    private void detach(Integer id) {
+        if (id != null) {
+            inFlight.remove(id);
+        }
+    }
+
+    private void enqueue(Lookup lookup) {
+        List<Lookup> full = null;
+        lock.lock();
+        try {
+            pending.add(lookup);
+            if (pending.size() >= maxBatchSize || windowNanos == 0) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                // the first id of a batch opens its window
+                dispatcher.schedule(this::dispatch, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            load(full);
+        }
+    }
+
+    // a window may close on a batch that was already sent for being full, or on the next one
+    private void dispatch() {
+        List<Lookup> batch;
+        lock.lock();
+        try {
+            batch = takePending();
+        } finally {
+            lock.unlock();
+        }
+        if (!batch.isEmpty()) {
+            loader.execute(() -> load(batch));
+        }
+    }
+
+    private List<Lookup> takePending() {
+        List<Lookup> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void load(List<Lookup> batch) {
+        // an id detached by a write and looked up again may be in the same batch twice
+        Set<Integer> ids = batch.stream().map(Lookup::id).collect(Collectors.toSet());
+        queries.increment();
+        batchSizes.record(ids.size());
+        Map<Integer, Optional<Customer>> loaded = new HashMap<>();
+        try {
+            if (ids.size() == 1) {
+                Integer id = ids.iterator().next();
+                loaded.put(id, delegate.selectCustomerById(id));
+            } else {
+                ids.forEach(id -> loaded.put(id, Optional.empty()));
+                delegate.selectCustomersByIds(ids)
+                        .forEach(customer -> loaded.put(customer.getId(), Optional.of(customer)));
+            }
+        } catch (RuntimeException e) {
+            complete(batch, lookup -> lookup.future().completeExceptionally(e));
+            return;
+        } catch (Error e) {
+            // waiters fail with the batch instead of hanging, the error still reaches this thread
+            complete(batch, lookup -> lookup.future().completeExceptionally(e));
+            throw e;
+        }
+        complete(batch, lookup -> lookup.future().complete(loaded.get(lookup.id())));
+    }
+
+    // removed first: lookups from now on must not be served a result that predates them;
+    // only our own entry, a write may have replaced it with a newer lookup already
+    private void complete(List<Lookup> batch, Consumer<Lookup> completion) {
+        batch.forEach(lookup -> {
+            inFlight.remove(lookup.id(), lookup.future());
+            completion.accept(lookup);
+        });
+    }
+
+    private record Lookup(Integer id, CompletableFuture<Optional<Customer>> future) {
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        dispatcher.shutdownNow();
+        loader.shutdown();
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(int id, int limit) {
+        return delegate.selectCustomersAfterId(id, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        return delegate.selectCustomers(query);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return delegate.streamAllCustomers();
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return delegate.streamAllEmails();
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        boolean inserted = delegate.insertCustomer(customer);
+        detach(customer.getId());
+        return inserted;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] inserted = delegate.insertCustomers(customers);
+        customers.forEach(customer -> detach(customer.getId()));
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        try {
+            return delegate.deleteCustomerById(id);
+        } finally {
+            detach(id);
+        }
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public List<CustomerCount> countCustomersByGenderAndAge() {
+        return delegate.countCustomersByGenderAndAge();
+    }
+
+    @Override
+    public Optional<CustomerUpdateResult> updateCustomer(Customer update) {
+        try {
+            return delegate.updateCustomer(update);
+        } finally {
+            detach(update.getId());
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+@Repository("bloom")
+public class CustomerBloomFilterDataAccessService implements CustomerDAO {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerBloomFilterDataAccessService.class);
+    private static final long MIN_STALE_ENTRIES_FOR_REBUILD = 1024;
+
+    private final CustomerDAO delegate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TaskExecutor taskExecutor;
+    private final double falsePositiveRate;
+    private volatile long expectedInsertions;
+
+    // null until the first rebuild finished: every lookup goes to the delegate
+    private volatile EmailBloomFilter filter;
+    // receives concurrent writes while a rebuild streams the email column
+    private volatile EmailBloomFilter building;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final LongAdder staleEntries = new LongAdder();
+
+    private final Counter definitelyAbsent;
+    private final Counter mightContain;
+    private final Counter falsePositives;
+    private final Timer rebuildTimer;
+
+    public CustomerBloomFilterDataAccessService(@Qualifier("jdbc") CustomerDAO delegate,
+                                                PlatformTransactionManager transactionManager,
+                                                @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+                                                MeterRegistry meterRegistry,
+                                                @Value("${customer.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                                                @Value("${customer.email-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.delegate = delegate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.taskExecutor = taskExecutor;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+
+        this.definitelyAbsent = Counter.builder("customer.email.filter.lookups")
+                .tag("result", "absent")
+                .register(meterRegistry);
+        this.mightContain = Counter.builder("customer.email.filter.lookups")
+                .tag("result", "maybe")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("customer.email.filter.false.positives")
+                .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("customer.email.filter.rebuild")
+                .register(meterRegistry);
+        Gauge.builder("customer.email.filter.memory", this,
+                        dao -> dao.filter == null ? 0 : dao.filter.memoryBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("customer.email.filter.expected.fpp", this,
+                        dao -> dao.filter == null ? Double.NaN : dao.filter.expectedFalsePositiveRate())
+                .register(meterRegistry);
+        Gauge.builder("customer.email.filter.stale.entries", staleEntries, LongAdder::sum)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        taskExecutor.execute(this::rebuild);
+    }
+
+    @EventListener
+    public void onImportCompleted(CustomerImportCompletedEvent event) {
+        if (event.insertedRows() > 0) {
+            taskExecutor.execute(this::rebuild);
+        }
+    }
+
+    @EventListener
+    public void onCustomersChanged(CustomerChangedEvent event) {
+        if (filter == null && building == null) {
+            return;
+        }
+        if (event.allCustomers()) {
+            taskExecutor.execute(this::rebuild);
+            return;
+        }
+        // rows written by other instances never went through record()
+        taskExecutor.execute(() -> delegate.selectCustomersByIds(event.ids())
+                .forEach(customer -> record(customer.getEmail())));
+    }
+
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            EmailBloomFilter next = EmailBloomFilter.create(expectedInsertions, falsePositiveRate);
+            // publish before reading so a write committed after the snapshot still lands in it
+            building = next;
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<String> emails = delegate.streamAllEmails()) {
+                    emails.forEach(next::put);
+                }
+            });
+            filter = next;
+            staleEntries.reset();
+            if (next.insertions() > expectedInsertions) {
+                expectedInsertions = next.insertions() * 2;
+            }
+            long elapsed = System.nanoTime() - start;
+            rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            LOGGER.info("email filter rebuilt with {} emails in {} ms ({} bytes)",
+                    next.insertions(), elapsed / 1_000_000, next.memoryBytes());
+        } catch (RuntimeException e) {
+            LOGGER.error("email filter rebuild failed, lookups keep going to the database", e);
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    private void record(String email) {
+        EmailBloomFilter current = filter;
+        if (current != null) {
+            current.put(email);
+        }
+        EmailBloomFilter next = building;
+        if (next != null) {
+            next.put(email);
+        }
+        rebuildIfDegraded(current);
+    }
+
+    private void recordStale() {
+        staleEntries.increment();
+        rebuildIfDegraded(filter);
+    }
+
+    private void rebuildIfDegraded(EmailBloomFilter current) {
+        // bloom filters cannot forget, so outgrowing the sizing or piling up
+        // removed emails only ever costs extra database lookups until a rebuild
+        if (current == null || rebuilding.get()) {
+            return;
+        }
+        if (current.expectedFalsePositiveRate() > 2 * falsePositiveRate ||
+                staleEntries.sum() > Math.max(MIN_STALE_ENTRIES_FOR_REBUILD, current.insertions() / 4)) {
+            taskExecutor.execute(this::rebuild);
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(int id, int limit) {
+        return delegate.selectCustomersAfterId(id, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        return delegate.selectCustomers(query);
+    }
+
+    @Override
+    public List<CustomerCount> countCustomersByGenderAndAge() {
+        return delegate.countCustomersByGenderAndAge();
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return delegate.streamAllCustomers();
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return delegate.streamAllEmails();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        boolean inserted = delegate.insertCustomer(customer);
+        // on a conflict the email is taken as well
+        record(customer.getEmail());
+        return inserted;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] inserted = delegate.insertCustomers(customers);
+        customers.forEach(customer -> record(customer.getEmail()));
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        EmailBloomFilter current = filter;
+        if (current == null) {
+            return delegate.existsCustomerWithEmail(email);
+        }
+        if (!current.mightContain(email)) {
+            definitelyAbsent.increment();
+            return false;
+        }
+        mightContain.increment();
+        boolean exists = delegate.existsCustomerWithEmail(email);
+        if (!exists) {
+            falsePositives.increment();
+        }
+        return exists;
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        EmailBloomFilter current = filter;
+        if (current == null) {
+            return delegate.selectExistingEmails(emails);
+        }
+        List<String> candidates = emails.stream()
+                .filter(current::mightContain)
+                .toList();
+        definitelyAbsent.increment(emails.size() - candidates.size());
+        mightContain.increment(candidates.size());
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> existing = delegate.selectExistingEmails(candidates);
+        falsePositives.increment(candidates.size() - existing.size());
+        return existing;
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        Optional<Customer> deleted = delegate.deleteCustomerById(id);
+        if (deleted.isPresent()) {
+            recordStale();
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public Optional<CustomerUpdateResult> updateCustomer(Customer update) {
+        Optional<CustomerUpdateResult> updated = delegate.updateCustomer(update);
+        if (update.getEmail() != null) {
+            updated.ifPresent(result -> {
+                record(result.customer().getEmail());
+                recordStale();
+            });
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,10 @@
+package com.kaiyicode.customer;
+
+import java.util.List;
+
+public record CustomerBulkRegistrationResponse(
+        int created,
+        int rejected,
+        List<CustomerBulkRegistrationResult> results
+) {
+}
@@ -0,0 +1,14 @@
+package com.kaiyicode.customer;
+
+public record CustomerBulkRegistrationResult(
+        int index,
+        String email,
+        Status status,
+        String message
+) {
+    public enum Status {
+        CREATED,
+        DUPLICATE_EMAIL,
+        INVALID
+    }
+}
@@ -0,0 +1,220 @@
+package com.kaiyicode.customer;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+@Repository("cached")
+public class CustomerCachingDataAccessService implements CustomerDAO {
+    // a synchronous Caffeine load runs inside ConcurrentHashMap.compute, whose
+    // monitor pins a virtual thread to its carrier for the whole JDBC round trip;
+    // async loads only put a future into the map and load outside of it
+    private static final Executor LOADER = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("customer-cache-load-", 0).factory());
+
+    private final CustomerDAO delegate;
+    // Optional.empty() entries remember ids that do not exist (negative caching)
+    private final AsyncCache<Integer, Optional<Customer>> customers;
+    private final Cache<Integer, Optional<Customer>> loadedCustomers;
+
+    public CustomerCachingDataAccessService(BeanFactory beanFactory,
+                                            MeterRegistry meterRegistry,
+                                            @Value("${customer.cache.backend:jdbc}") String backend,
+                                            @Value("${customer.cache.maximum-size:100000}") long maximumSize,
+                                            @Value("${customer.cache.ttl:10m}") Duration ttl,
+                                            @Value("${customer.cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.delegate = beanFactory.getBean(backend, CustomerDAO.class);
+        // Caffeine evicts by W-TinyLFU once maximumSize is reached
+        this.customers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Integer, Optional<Customer>>() {
+                    @Override
+                    public long expireAfterCreate(Integer id, Optional<Customer> customer, long currentTime) {
+                        return (customer.isPresent() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Integer id, Optional<Customer> customer,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, customer, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Integer id, Optional<Customer> customer,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        this.loadedCustomers = customers.synchronous();
+        CaffeineCacheMetrics.monitor(meterRegistry, customers, "customers", "backend", backend);
+    }
+
+    @EventListener
+    public void onImportCompleted(CustomerImportCompletedEvent event) {
+        if (event.insertedRows() > 0) {
+            evictMissing();
+        }
+    }
+
+    @EventListener
+    public void onCustomersChanged(CustomerChangedEvent event) {
+        if (event.allCustomers()) {
+            evictAll();
+        } else {
+            loadedCustomers.invalidateAll(event.ids());
+        }
+    }
+
+    public void evict(Integer id) {
+        loadedCustomers.invalidate(id);
+    }
+
+    public void evictAll() {
+        loadedCustomers.invalidateAll();
+    }
+
+    private void evictMissing() {
+        loadedCustomers.asMap().values().removeIf(Optional::isEmpty);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(int id, int limit) {
+        return delegate.selectCustomersAfterId(id, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        return delegate.selectCustomers(query);
+    }
+
+    @Override
+    public List<CustomerCount> countCustomersByGenderAndAge() {
+        return delegate.countCustomersByGenderAndAge();
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return delegate.streamAllCustomers();
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return delegate.streamAllEmails();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return join(customers.get(id, (key, executor) ->
+                CompletableFuture.supplyAsync(() -> delegate.selectCustomerById(key), LOADER)));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        // one delegate round trip for all misses
+        return join(customers.getAll(ids, (missing, executor) -> CompletableFuture.supplyAsync(() -> {
+                    Map<Integer, Optional<Customer>> loaded = new HashMap<>();
+                    missing.forEach(id -> loaded.put(id, Optional.empty()));
+                    delegate.selectCustomersByIds(Set.copyOf(missing))
+                            .forEach(customer -> loaded.put(customer.getId(), Optional.of(customer)));
+                    return loaded;
+                }, LOADER)))
+                .values()
+                .stream()
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        boolean inserted = delegate.insertCustomer(customer);
+        if (inserted && customer.getId() != null) {
+            evict(customer.getId());
+        }
+        return inserted;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] inserted = delegate.insertCustomers(customers);
+        // batch inserts do not report ids, so forget every id remembered as missing
+        evictMissing();
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        try {
+            return delegate.deleteCustomerById(id);
+        } finally {
+            evict(id);
+        }
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        Optional<Customer> cached = loadedCustomers.getIfPresent(id);
+        if (cached != null) {
+            return cached.isPresent();
+        }
+        return delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public Optional<CustomerUpdateResult> updateCustomer(Customer update) {
+        try {
+            return delegate.updateCustomer(update);
+        } finally {
+            // invalidate rather than put: racing updates could otherwise leave the older row cached
+            evict(update.getId());
+        }
+    }
+
+    // the caller parks on the future, which unlike a monitor releases the carrier
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
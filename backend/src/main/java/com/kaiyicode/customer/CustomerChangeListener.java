@@ -0,0 +1,183 @@
+package com.kaiyicode.customer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+@Component
+@ConditionalOnProperty(name = "customer.change-listener.enabled", matchIfMissing = true)
+public class CustomerChangeListener implements SmartLifecycle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerChangeListener.class);
+    static final String CHANNEL = "customer_changed";
+    static final String APPLICATION_NAME = "customer-change-listener";
+    private static final int POLL_TIMEOUT_MILLIS = 10_000;
+    private static final long MAX_RECONNECT_BACKOFF_MILLIS = 30_000;
+
+    private final String url;
+    private final Properties connectionProperties = new Properties();
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration coalesceWindow;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Connection connection;
+    private Thread thread;
+
+    public CustomerChangeListener(@Value("${spring.datasource.url}") String url,
+                                  @Value("${spring.datasource.username}") String username,
+                                  @Value("${spring.datasource.password}") String password,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${customer.change-listener.coalesce-window:50ms}") Duration coalesceWindow) {
+        this.url = url;
+        this.connectionProperties.setProperty("user", username);
+        this.connectionProperties.setProperty("password", password);
+        this.connectionProperties.setProperty("ApplicationName", APPLICATION_NAME);
+        this.eventPublisher = eventPublisher;
+        this.coalesceWindow = coalesceWindow;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, APPLICATION_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        // unblocks getNotifications
+        closeQuietly(connection);
+        try {
+            thread.join(POLL_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    private void run() {
+        boolean missedNotifications = false;
+        long backoffMillis = 500;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, connectionProperties)) {
+                this.connection = connection;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                connected = true;
+                backoffMillis = 500;
+                LOGGER.info("listening for customer changes on channel {}", CHANNEL);
+                if (missedNotifications) {
+                    // whatever changed while we were away is unknown, drop everything
+                    eventPublisher.publishEvent(CustomerChangedEvent.all());
+                    missedNotifications = false;
+                }
+                listen(connection);
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                LOGGER.warn("customer change listener lost its connection, retrying in {} ms", backoffMillis, e);
+            } finally {
+                connected = false;
+                this.connection = null;
+            }
+
+            missedNotifications = true;
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_RECONNECT_BACKOFF_MILLIS);
+        }
+    }
+
+    private void listen(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+            if (notifications == null || notifications.length == 0) {
+                // a quiet channel looks like a dead one, so make sure the socket still works
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT 1");
+                }
+                continue;
+            }
+
+            // bursts (bulk inserts, imports) become one event instead of one per statement
+            Set<Integer> ids = new HashSet<>();
+            boolean allCustomers = collect(notifications, ids);
+            long deadline = System.nanoTime() + coalesceWindow.toNanos();
+            long remainingMillis;
+            while (!allCustomers && (remainingMillis = (deadline - System.nanoTime()) / 1_000_000) > 0) {
+                allCustomers = collect(pgConnection.getNotifications((int) remainingMillis), ids);
+            }
+            eventPublisher.publishEvent(allCustomers ? CustomerChangedEvent.all() : CustomerChangedEvent.of(ids));
+        }
+    }
+
+    private static boolean collect(PGNotification[] notifications, Set<Integer> ids) {
+        if (notifications == null) {
+            return false;
+        }
+        for (PGNotification notification : notifications) {
+            String payload = notification.getParameter();
+            if ("*".equals(payload)) {
+                return true;
+            }
+            for (String id : payload.split(",")) {
+                try {
+                    ids.add(Integer.parseInt(id));
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("unexpected customer change payload {}", payload);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.debug("could not close customer change listener connection", e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.kaiyicode.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+// tags come from the database, never from this process: every replica hands out the
+// same tag for the same data, whether or not it hears the customer_changed notifications,
+// and a restart does not invalidate what clients hold
+@Component
+public class CustomerChangeTracker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerChangeTracker.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CustomerChangeTracker(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // read per request: how many statements ever changed customers, as far as this
+    // statement's snapshot sees them, so it moves with every commit in whatever order
+    // they commit; see V8__Add_Customer_Changes.sql
+    public String customersETag() {
+        Long changes = jdbcTemplate.queryForObject("""
+                SELECT folded.changes + (SELECT count(*) FROM customer_change)
+                FROM customer_change_folded folded
+                """, Long.class);
+        return "\"%d\"".formatted(changes);
+    }
+
+    // read by id without the row, so a revalidation that matches is answered without
+    // the DAO; empty for a missing customer, which has no tag to revalidate against.
+    // xmin is new with every row version, version alone would repeat if a restored
+    // database handed an id out again
+    public Optional<CustomerTag> customerTag(int id) {
+        return jdbcTemplate.query("""
+                        SELECT version, xmin::TEXT::BIGINT AS row_xmin
+                        FROM customer
+                        WHERE id = ?
+                        """,
+                        (rs, rowNum) -> new CustomerTag(
+                                rs.getLong("version"),
+                                "\"%d-%d\"".formatted(rs.getLong("version"), rs.getLong("row_xmin"))),
+                        id)
+                .stream()
+                .findFirst();
+    }
+
+    public record CustomerTag(long version, String eTag) {
+        // the row a response carries comes through the caches and may lag behind the
+        // database, it only gets the tag if it is the version the tag stands for
+        public boolean describes(Customer customer) {
+            return customer.getVersion() != null && customer.getVersion() == version;
+        }
+    }
+
+    // keeps customer_change short enough to count per request; the rows and their sum
+    // move in one statement, so no snapshot sees a change in neither place or in both
+    @Scheduled(fixedDelayString = "${customer.etag.fold-interval:1m}")
+    public void foldChanges() {
+        try {
+            jdbcTemplate.update("""
+                    WITH folded AS (
+                        DELETE FROM customer_change RETURNING id
+                    )
+                    UPDATE customer_change_folded
+                    SET changes = changes + (SELECT count(*) FROM folded)
+                    """);
+        } catch (DataAccessException e) {
+            LOGGER.warn("could not fold customer changes, trying again next time", e);
+        }
+    }
+}
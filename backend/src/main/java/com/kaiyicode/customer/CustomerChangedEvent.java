@@ -0,0 +1,16 @@
+package com.kaiyicode.customer;
+
+import java.util.Set;
+
+public record CustomerChangedEvent(
+        Set<Integer> ids,
+        boolean allCustomers
+) {
+    public static CustomerChangedEvent of(Set<Integer> ids) {
+        return new CustomerChangedEvent(Set.copyOf(ids), false);
+    }
+
+    public static CustomerChangedEvent all() {
+        return new CustomerChangedEvent(Set.of(), true);
+    }
+}
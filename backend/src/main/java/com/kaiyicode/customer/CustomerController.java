@@ -1,32 +1,170 @@
 package com.kaiyicode.customer;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.kaiyicode.exception.RequestValidationException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("api/v1/customer")
 public class CustomerController {
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final CustomerService customerService;
+    private final CustomerSearchService customerSearchService;
+    private final CustomerChangeTracker changeTracker;
+    private final ObjectWriter customerWriter;
+    private final ObjectReader registrationReader;
+    private final ObjectReader cborRegistrationReader;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              CustomerSearchService customerSearchService,
+                              CustomerChangeTracker changeTracker,
+                              ObjectMapper objectMapper,
+                              MappingJackson2CborHttpMessageConverter cborConverter) {
         this.customerService = customerService;
+        this.customerSearchService = customerSearchService;
+        this.changeTracker = changeTracker;
+        this.customerWriter = objectMapper.writerFor(Customer.class);
+        this.registrationReader = objectMapper.readerFor(CustomerRegistrationRequest.class);
+        this.cborRegistrationReader = cborConverter.getObjectMapper().readerFor(CustomerRegistrationRequest.class);
     }
 
     @GetMapping
-    public List<Customer> getCustomers() {
-        return customerService.getAllCustomers();
+    public ResponseEntity<List<Customer>> getCustomers(WebRequest webRequest) {
+        // the tag is read before the data: a racing write costs a refetch, never a stale 304
+        String eTag = changeTracker.customersETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        // the tag covers the data, not the encoding: caches must keep JSON and CBOR apart
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(eTag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(customerService.getAllCustomers());
+    }
+
+    @GetMapping("page")
+    public CustomerPage getCustomerPage(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size,
+            @RequestParam(value = "gender", required = false) Gender gender,
+            @RequestParam(value = "minAge", required = false) Integer minAge,
+            @RequestParam(value = "maxAge", required = false) Integer maxAge,
+            @RequestParam(value = "sort", defaultValue = "id") String sort,
+            @RequestParam(value = "direction", defaultValue = "asc") String direction) {
+        return customerService.getCustomers(cursor, size, gender, minAge, maxAge, sort, direction);
+    }
+
+    @GetMapping("stats")
+    public CustomerStats getCustomerStats() {
+        return customerService.getCustomerStats();
+    }
+
+    @GetMapping("search")
+    public CustomerSearchPage searchCustomers(
+            @RequestParam("q") String query,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        return customerSearchService.searchCustomers(query, page, size);
+    }
+
+    @GetMapping("suggest")
+    public List<CustomerSuggestion> suggestCustomers(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return customerSearchService.suggestCustomers(query, limit);
+    }
+
+    @GetMapping("batch")
+    public CustomerBatchResponse getCustomersByIds(@RequestParam("ids") List<Integer> ids) {
+        return customerService.getCustomersByIds(ids);
+    }
+
+    @GetMapping(value = "export", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportCustomers() {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                customerService.exportCustomers(customer -> {
+                    try {
+                        outputStream.write(customerWriter.writeValueAsBytes(customer));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        // client went away, abort the cursor and roll back
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().body(body);
     }
 
     @GetMapping("{customerId}")
-    public Customer getCustomer(@PathVariable("customerId") int customerId) {
-       return customerService.getCustomer(customerId);
+    public ResponseEntity<Customer> getCustomer(@PathVariable("customerId") int customerId,
+                                                WebRequest webRequest) {
+        // the tag is read before the row and without it: a 304 never loads the customer,
+        // and a racing update costs a refetch, never a stale 304
+        Optional<CustomerChangeTracker.CustomerTag> tag = changeTracker.customerTag(customerId);
+        if (tag.isPresent() && webRequest.checkNotModified(tag.get().eTag())) {
+            return null;
+        }
+        Customer customer = customerService.getCustomer(customerId);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT);
+        tag.filter(customerTag -> customerTag.describes(customer))
+                .ifPresent(customerTag -> response.eTag(customerTag.eTag()));
+        return response.body(customer);
     }
 
     @PostMapping
-    public void RegisterCustomer(
+    public ResponseEntity<Void> RegisterCustomer(
             @RequestBody CustomerRegistrationRequest request) {
-        customerService.addCustomer(request);
+        // a queued registration is accepted, not yet created
+        return customerService.addCustomer(request)
+                ? ResponseEntity.ok().build()
+                : ResponseEntity.accepted().build();
+    }
+
+    @PostMapping(value = "bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON, MediaType.APPLICATION_CBOR_VALUE})
+    public CustomerBulkRegistrationResponse registerCustomers(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) throws IOException {
+        // accepts a JSON or CBOR array, or newline-delimited documents, and reads them lazily
+        ObjectReader reader = MediaType.APPLICATION_CBOR.isCompatibleWith(contentType)
+                ? cborRegistrationReader
+                : registrationReader;
+        try (MappingIterator<CustomerRegistrationRequest> requests = reader.readValues(body)) {
+            return customerService.addCustomers(requests);
+        } catch (RuntimeException e) {
+            // the iterator wraps binding errors, and parse errors such as a truncated body, unchecked
+            if (e instanceof RuntimeJsonMappingException || e.getCause() instanceof JsonProcessingException) {
+                throw new RequestValidationException(
+                        "malformed customer registration request: " + e.getMessage());
+            }
+            throw e;
+        }
     }
 
     @DeleteMapping("{customerId}")
@@ -35,8 +173,8 @@ public class CustomerController {
     }
 
     @PutMapping("{customerId}")
-    public void updateCustomer(@PathVariable("customerId") int customerId,
-                               @RequestBody CustomerUpdateRequest request) {
-        customerService.updateCustomer(customerId, request);
+    public Customer updateCustomer(@PathVariable("customerId") int customerId,
+                                   @RequestBody CustomerUpdateRequest request) {
+        return customerService.updateCustomer(customerId, request);
     }
 }
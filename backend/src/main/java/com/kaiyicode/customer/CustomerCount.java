@@ -0,0 +1,26 @@
+package com.kaiyicode.customer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public record CustomerCount(
+        Gender gender,
+        int age,
+        long count
+) {
+    // for backends without an aggregate query
+    public static List<CustomerCount> tally(Stream<Customer> customers) {
+        Map<Gender, Map<Integer, Long>> counts = customers.collect(Collectors.groupingBy(
+                Customer::getGender,
+                Collectors.groupingBy(Customer::getAge, Collectors.counting())));
+        return counts.entrySet()
+                .stream()
+                .flatMap(byGender -> byGender.getValue()
+                        .entrySet()
+                        .stream()
+                        .map(byAge -> new CustomerCount(byGender.getKey(), byAge.getKey(), byAge.getValue())))
+                .toList();
+    }
+}
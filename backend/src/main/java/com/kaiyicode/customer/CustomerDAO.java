@@ -1,14 +1,25 @@
 package com.kaiyicode.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface CustomerDAO {
     List<Customer> selectAllCustomers();
+    List<Customer> selectCustomersAfterId(int id, int limit);
+    List<Customer> selectCustomers(CustomerQuery query);
+    Stream<Customer> streamAllCustomers();
+    Stream<String> streamAllEmails();
     Optional<Customer> selectCustomerById(Integer id);
-    void insertCustomer(Customer customer);
+    List<Customer> selectCustomersByIds(Collection<Integer> ids);
+    boolean insertCustomer(Customer customer);
+    int[] insertCustomers(List<Customer> customers);
     boolean existsCustomerWithEmail(String email);
-    void deleteCustomerById(Integer id);
+    Set<String> selectExistingEmails(Collection<String> emails);
+    Optional<Customer> deleteCustomerById(Integer id);
     boolean existsCustomerWithId(Integer id);
-    void updateCustomer(Customer customer);
+    List<CustomerCount> countCustomersByGenderAndAge();
+    Optional<CustomerUpdateResult> updateCustomer(Customer update);
 }
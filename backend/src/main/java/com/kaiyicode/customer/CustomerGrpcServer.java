@@ -0,0 +1,101 @@
+package com.kaiyicode.customer;
+
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// like the reactive server, a Netty server next to the servlet container on its own port;
+// calls run on virtual threads, the service underneath blocks on JDBC
+@Component
+@ConditionalOnProperty(name = "customer.grpc.enabled", havingValue = "true")
+public class CustomerGrpcServer implements SmartLifecycle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerGrpcServer.class);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final CustomerGrpcService service;
+    private final int port;
+    private final DataSize flowControlWindow;
+    private final DataSize maxInboundMessageSize;
+
+    private volatile Server server;
+    private ExecutorService executor;
+
+    public CustomerGrpcServer(CustomerGrpcService service,
+                              @Value("${customer.grpc.port:9090}") int port,
+                              @Value("${customer.grpc.flow-control-window:1MB}") DataSize flowControlWindow,
+                              @Value("${customer.grpc.max-inbound-message-size:4MB}") DataSize maxInboundMessageSize) {
+        this.service = service;
+        this.port = port;
+        this.flowControlWindow = flowControlWindow;
+        this.maxInboundMessageSize = maxInboundMessageSize;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (server != null) {
+            return;
+        }
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("customer-grpc-", 0).factory());
+        // a fixed window, not one tuned up to the connection's bandwidth-delay product: it
+        // caps the unread data a client can push per stream, bulk registrations included
+        Server created = NettyServerBuilder.forPort(port)
+                .addService(service)
+                .executor(executor)
+                .flowControlWindow(Math.toIntExact(flowControlWindow.toBytes()))
+                .maxInboundMessageSize(Math.toIntExact(maxInboundMessageSize.toBytes()))
+                .build();
+        try {
+            created.start();
+        } catch (IOException e) {
+            executor.shutdown();
+            throw new IllegalStateException("could not start gRPC customer server on port " + port, e);
+        }
+        server = created;
+        LOGGER.info("gRPC customer API listening on port {}", created.getPort());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        // running calls may finish, streams included, then whatever is left is cancelled
+        server.shutdown();
+        try {
+            if (!server.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                server.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+        server = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    // the bound port, customer.grpc.port may be 0
+    public int getPort() {
+        Server current = server;
+        if (current == null) {
+            throw new IllegalStateException("gRPC customer server is not running");
+        }
+        return current.getPort();
+    }
+}
@@ -0,0 +1,392 @@
+package com.kaiyicode.customer;
+
+import com.google.protobuf.Empty;
+import com.kaiyicode.customer.grpc.CustomerProto;
+import com.kaiyicode.customer.grpc.CustomerProto.BulkRegistrationResponse;
+import com.kaiyicode.customer.grpc.CustomerProto.BulkRegistrationResult;
+import com.kaiyicode.customer.grpc.CustomerProto.DeleteCustomerRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.ExportCustomersRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.GetCustomerRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.ListCustomersRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.RegistrationRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.UpdateCustomerRequest;
+import com.kaiyicode.customer.grpc.CustomerServiceGrpc;
+import com.kaiyicode.exception.DuplicateResourceException;
+import com.kaiyicode.exception.NoDataChangeException;
+import com.kaiyicode.exception.RequestValidationException;
+import com.kaiyicode.exception.ResourceNotFoundException;
+import com.kaiyicode.exception.ServiceOverloadedException;
+import com.kaiyicode.exception.StaleResourceException;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// CustomerService over gRPC, served by CustomerGrpcServer. Streams run on their own
+// virtual threads: a handler that blocked would hold up the call's other callbacks,
+// onReady among them. Outbound streams wait while the transport is not ready, so HTTP/2
+// flow control reaches back to the database, but no longer than the stream idle timeout or
+// the call's deadline, a client that stops reading must not keep a cursor and a pooled
+// connection for good; bulk registration asks the client for a
+// request each time it takes one, so a fast client cannot queue more than the prefetch.
+@Component
+@ConditionalOnProperty(name = "customer.grpc.enabled", havingValue = "true")
+public class CustomerGrpcService extends CustomerServiceGrpc.CustomerServiceImplBase implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerGrpcService.class);
+    private static final int DEFAULT_PAGE_SIZE = 500;
+
+    private final CustomerService customerService;
+    private final int registrationPrefetch;
+    private final Duration streamIdleTimeout;
+    private final ExecutorService streams;
+
+    // one chunk of bulk registrations ahead, so a chunk never waits for a round trip
+    public CustomerGrpcService(CustomerService customerService,
+                               @Value("${customer.bulk.chunk-size:500}") int registrationPrefetch,
+                               @Value("${customer.grpc.stream-idle-timeout:30s}") Duration streamIdleTimeout) {
+        this.customerService = customerService;
+        this.registrationPrefetch = registrationPrefetch;
+        this.streamIdleTimeout = streamIdleTimeout;
+        this.streams = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("customer-grpc-stream-", 0).factory());
+    }
+
+    @Override
+    public void listCustomers(ListCustomersRequest request,
+                              StreamObserver<CustomerProto.Customer> responseObserver) {
+        OutboundStream<CustomerProto.Customer> stream = new OutboundStream<>(responseObserver, streamIdleTimeout);
+        streams.execute(() -> stream.run(() -> {
+            Gender gender = null;
+            if (request.hasGender()) {
+                gender = toGender(request.getGender());
+                if (gender == null) {
+                    throw new RequestValidationException("gender must be MALE or FEMALE");
+                }
+            }
+            Integer minAge = request.hasMinAge() ? request.getMinAge() : null;
+            Integer maxAge = request.hasMaxAge() ? request.getMaxAge() : null;
+            String sort = request.getSort().isEmpty() ? "id" : request.getSort();
+            String direction = request.getDirection().isEmpty() ? "asc" : request.getDirection();
+            int pageSize = request.getPageSize() == 0 ? DEFAULT_PAGE_SIZE : request.getPageSize();
+
+            String cursor = null;
+            do {
+                CustomerPage page = customerService.getCustomers(
+                        cursor, pageSize, gender, minAge, maxAge, sort, direction);
+                page.customers().forEach(customer -> stream.send(toMessage(customer)));
+                cursor = page.nextCursor();
+            } while (cursor != null);
+        }));
+    }
+
+    @Override
+    public void exportCustomers(ExportCustomersRequest request,
+                                StreamObserver<CustomerProto.Customer> responseObserver) {
+        OutboundStream<CustomerProto.Customer> stream = new OutboundStream<>(responseObserver, streamIdleTimeout);
+        // a waiting send holds the database cursor open, which is what keeps rows out of memory
+        streams.execute(() -> stream.run(() ->
+                customerService.exportCustomers(customer -> stream.send(toMessage(customer)))));
+    }
+
+    @Override
+    public StreamObserver<RegistrationRequest> registerCustomers(
+            StreamObserver<BulkRegistrationResponse> responseObserver) {
+        ServerCallStreamObserver<BulkRegistrationResponse> call =
+                (ServerCallStreamObserver<BulkRegistrationResponse>) responseObserver;
+        InboundRegistrations registrations = new InboundRegistrations(call, registrationPrefetch);
+        streams.execute(() -> {
+            BulkRegistrationResponse response;
+            try {
+                response = toMessage(customerService.addCustomers(registrations));
+            } catch (RuntimeException e) {
+                fail(call, e);
+                return;
+            }
+            call.onNext(response);
+            call.onCompleted();
+        });
+        return registrations;
+    }
+
+    @Override
+    public void getCustomer(GetCustomerRequest request,
+                            StreamObserver<CustomerProto.Customer> responseObserver) {
+        unary(responseObserver, () -> toMessage(customerService.getCustomer(request.getId())));
+    }
+
+    @Override
+    public void updateCustomer(UpdateCustomerRequest request,
+                               StreamObserver<CustomerProto.Customer> responseObserver) {
+        unary(responseObserver, () -> toMessage(customerService.updateCustomer(
+                request.getId(),
+                new CustomerUpdateRequest(
+                        request.hasName() ? request.getName() : null,
+                        request.hasEmail() ? request.getEmail() : null,
+                        request.hasAge() ? request.getAge() : null,
+                        request.hasVersion() ? request.getVersion() : null))));
+    }
+
+    @Override
+    public void deleteCustomer(DeleteCustomerRequest request,
+                               StreamObserver<Empty> responseObserver) {
+        unary(responseObserver, () -> {
+            customerService.deleteCustomerById(request.getId());
+            return Empty.getDefaultInstance();
+        });
+    }
+
+    @Override
+    public void close() {
+        streams.shutdown();
+    }
+
+    private static <T> void unary(StreamObserver<T> responseObserver, Supplier<T> body) {
+        T response;
+        try {
+            response = body.get();
+        } catch (RuntimeException e) {
+            fail(responseObserver, e);
+            return;
+        }
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    private static void fail(StreamObserver<?> responseObserver, RuntimeException e) {
+        if (responseObserver instanceof ServerCallStreamObserver<?> call && call.isCancelled()) {
+            // nobody left to tell
+            return;
+        }
+        responseObserver.onError(toStatus(e).asRuntimeException());
+    }
+
+    // the codes the REST API's @ResponseStatus annotations translate to
+    static Status toStatus(RuntimeException e) {
+        Status status = switch (e) {
+            case StatusRuntimeException statusException -> statusException.getStatus();
+            case ResourceNotFoundException notFound -> Status.NOT_FOUND;
+            case DuplicateResourceException duplicate -> Status.ALREADY_EXISTS;
+            case StaleResourceException stale -> Status.ABORTED;
+            case RequestValidationException invalid -> Status.INVALID_ARGUMENT;
+            case NoDataChangeException noChange -> Status.INVALID_ARGUMENT;
+            case ServiceOverloadedException overloaded -> Status.UNAVAILABLE;
+            default -> {
+                LOGGER.error("gRPC customer call failed", e);
+                yield Status.INTERNAL;
+            }
+        };
+        return e instanceof StatusRuntimeException ? status : status.withDescription(e.getMessage());
+    }
+
+    private static CustomerProto.Customer toMessage(Customer customer) {
+        // proto3 has no nulls: absent fields read back as their defaults
+        CustomerProto.Customer.Builder message = CustomerProto.Customer.newBuilder()
+                .setId(customer.getId());
+        if (customer.getName() != null) {
+            message.setName(customer.getName());
+        }
+        if (customer.getEmail() != null) {
+            message.setEmail(customer.getEmail());
+        }
+        if (customer.getAge() != null) {
+            message.setAge(customer.getAge());
+        }
+        if (customer.getGender() != null) {
+            message.setGender(toMessage(customer.getGender()));
+        }
+        if (customer.getVersion() != null) {
+            message.setVersion(customer.getVersion());
+        }
+        return message.build();
+    }
+
+    private static BulkRegistrationResponse toMessage(CustomerBulkRegistrationResponse response) {
+        BulkRegistrationResponse.Builder message = BulkRegistrationResponse.newBuilder()
+                .setCreated(response.created())
+                .setRejected(response.rejected());
+        for (CustomerBulkRegistrationResult result : response.results()) {
+            if (result.status() == CustomerBulkRegistrationResult.Status.CREATED) {
+                continue;
+            }
+            BulkRegistrationResult.Builder rejection = BulkRegistrationResult.newBuilder()
+                    .setIndex(result.index())
+                    .setStatus(BulkRegistrationResult.Status.valueOf(result.status().name()));
+            if (result.email() != null) {
+                rejection.setEmail(result.email());
+            }
+            if (result.message() != null) {
+                rejection.setMessage(result.message());
+            }
+            message.addRejections(rejection);
+        }
+        return message.build();
+    }
+
+    private static CustomerProto.Gender toMessage(Gender gender) {
+        return switch (gender) {
+            case MALE -> CustomerProto.Gender.MALE;
+            case FEMALE -> CustomerProto.Gender.FEMALE;
+        };
+    }
+
+    // null for GENDER_UNSPECIFIED and values this server does not know
+    private static Gender toGender(CustomerProto.Gender gender) {
+        return switch (gender) {
+            case MALE -> Gender.MALE;
+            case FEMALE -> Gender.FEMALE;
+            default -> null;
+        };
+    }
+
+    private static CustomerRegistrationRequest toRegistrationRequest(RegistrationRequest request) {
+        // empty strings are proto3's unset, CustomerService rejects them as missing
+        return new CustomerRegistrationRequest(
+                request.getName(),
+                request.getEmail(),
+                request.getAge(),
+                toGender(request.getGender()));
+    }
+
+    // the handlers must be registered before the handler method returns, and the deadline
+    // read there too: the stream's own thread does not carry the call's context
+    private static final class OutboundStream<T> {
+        private final ServerCallStreamObserver<T> call;
+        private final long idleTimeoutNanos;
+        private final Deadline deadline;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition ready = lock.newCondition();
+
+        OutboundStream(StreamObserver<T> responseObserver, Duration idleTimeout) {
+            this.call = (ServerCallStreamObserver<T>) responseObserver;
+            this.idleTimeoutNanos = idleTimeout.toNanos();
+            this.deadline = Context.current().getDeadline();
+            call.setOnReadyHandler(this::signal);
+            call.setOnCancelHandler(this::signal);
+        }
+
+        void run(Runnable body) {
+            try {
+                body.run();
+            } catch (RuntimeException e) {
+                fail(call, e);
+                return;
+            }
+            call.onCompleted();
+        }
+
+        void send(T message) {
+            lock.lock();
+            try {
+                long remaining = deadline == null
+                        ? idleTimeoutNanos
+                        : Math.min(idleTimeoutNanos, deadline.timeRemaining(TimeUnit.NANOSECONDS));
+                while (!call.isReady() && !call.isCancelled()) {
+                    if (remaining <= 0) {
+                        // thrown out of the export, which closes its cursor on the way
+                        throw Status.DEADLINE_EXCEEDED
+                                .withDescription("client stopped reading the stream")
+                                .asRuntimeException();
+                    }
+                    remaining = ready.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Status.CANCELLED.withDescription("server shutting down").asRuntimeException();
+            } finally {
+                lock.unlock();
+            }
+            if (call.isCancelled()) {
+                throw Status.CANCELLED.withDescription("cancelled by the client").asRuntimeException();
+            }
+            call.onNext(message);
+        }
+
+        private void signal() {
+            lock.lock();
+            try {
+                ready.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // what the client sent, taken one at a time by CustomerService.addCustomers
+    private static final class InboundRegistrations
+            implements StreamObserver<RegistrationRequest>, Iterator<CustomerRegistrationRequest> {
+        private static final Object END = new Object();
+
+        private final ServerCallStreamObserver<?> call;
+        // holds at most the prefetch, the client is not allowed to send more
+        private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        private Object next;
+
+        InboundRegistrations(ServerCallStreamObserver<?> call, int prefetch) {
+            this.call = call;
+            call.disableAutoRequest();
+            call.request(prefetch);
+        }
+
+        @Override
+        public void onNext(RegistrationRequest request) {
+            received.add(request);
+        }
+
+        // also called when the client cancels
+        @Override
+        public void onError(Throwable t) {
+            received.add(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            received.add(END);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = received.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw Status.CANCELLED.withDescription("server shutting down").asRuntimeException();
+                }
+            }
+            if (next instanceof Throwable t) {
+                throw Status.fromThrowable(t).asRuntimeException();
+            }
+            return next != END;
+        }
+
+        @Override
+        public CustomerRegistrationRequest next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            RegistrationRequest request = (RegistrationRequest) next;
+            next = null;
+            call.request(1);
+            return toRegistrationRequest(request);
+        }
+    }
+}
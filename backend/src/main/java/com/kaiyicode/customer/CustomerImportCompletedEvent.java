@@ -0,0 +1,9 @@
+package com.kaiyicode.customer;
+
+import java.util.UUID;
+
+public record CustomerImportCompletedEvent(
+        UUID jobId,
+        long insertedRows
+) {
+}
@@ -0,0 +1,40 @@
+package com.kaiyicode.customer;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("api/v1/customer/import")
+public class CustomerImportController {
+    private final CustomerImportService customerImportService;
+
+    public CustomerImportController(CustomerImportService customerImportService) {
+        this.customerImportService = customerImportService;
+    }
+
+    @PostMapping(consumes = "text/csv")
+    public ResponseEntity<CustomerImportStatus> importCsv(InputStream body) {
+        return accepted(customerImportService.submitImport(CustomerImportFormat.CSV, body));
+    }
+
+    @PostMapping(consumes = "application/x-ndjson")
+    public ResponseEntity<CustomerImportStatus> importNdjson(InputStream body) {
+        return accepted(customerImportService.submitImport(CustomerImportFormat.NDJSON, body));
+    }
+
+    @GetMapping("{jobId}")
+    public CustomerImportStatus getImport(@PathVariable("jobId") UUID jobId) {
+        return customerImportService.getImportStatus(jobId);
+    }
+
+    private static ResponseEntity<CustomerImportStatus> accepted(CustomerImportStatus status) {
+        return ResponseEntity
+                .accepted()
+                .location(URI.create("/api/v1/customer/import/" + status.id()))
+                .body(status);
+    }
+}
@@ -0,0 +1,6 @@
+package com.kaiyicode.customer;
+
+public enum CustomerImportFormat {
+    CSV,
+    NDJSON
+}
@@ -0,0 +1,87 @@
+package com.kaiyicode.customer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+class CustomerImportJob {
+    private final UUID id = UUID.randomUUID();
+    private final CustomerImportFormat format;
+    private final long totalBytes;
+    private final int maxReportedRejections;
+    private final Instant submittedAt = Instant.now();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final List<CustomerImportStatus.RejectedRow> rejected = new ArrayList<>();
+    private volatile CustomerImportStatus.State state = CustomerImportStatus.State.QUEUED;
+    private volatile long stagedRows;
+    private volatile long rejectedRows;
+    private volatile String error;
+    private volatile Instant finishedAt;
+
+    CustomerImportJob(CustomerImportFormat format, long totalBytes, int maxReportedRejections) {
+        this.format = format;
+        this.totalBytes = totalBytes;
+        this.maxReportedRejections = maxReportedRejections;
+    }
+
+    UUID getId() {
+        return id;
+    }
+
+    CustomerImportFormat getFormat() {
+        return format;
+    }
+
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    void setState(CustomerImportStatus.State state) {
+        this.state = state;
+    }
+
+    void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    void setStagedRows(long stagedRows) {
+        this.stagedRows = stagedRows;
+    }
+
+    synchronized void reject(long line, String email, String reason) {
+        rejectedRows++;
+        if (rejected.size() < maxReportedRejections) {
+            rejected.add(new CustomerImportStatus.RejectedRow(line, email, reason));
+        }
+    }
+
+    void complete() {
+        finishedAt = Instant.now();
+        state = CustomerImportStatus.State.COMPLETED;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        state = CustomerImportStatus.State.FAILED;
+    }
+
+    synchronized CustomerImportStatus toStatus() {
+        long inserted = state == CustomerImportStatus.State.COMPLETED ? stagedRows - rejectedRows : 0;
+        return new CustomerImportStatus(
+                id,
+                format,
+                state,
+                totalBytes,
+                bytesRead.get(),
+                stagedRows,
+                inserted,
+                rejectedRows,
+                List.copyOf(rejected),
+                error,
+                submittedAt,
+                finishedAt);
+    }
+}
@@ -0,0 +1,293 @@
+package com.kaiyicode.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.kaiyicode.exception.ResourceNotFoundException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class CustomerImportService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerImportService.class);
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_REPORTED_REJECTIONS = 1000;
+    private static final Duration FINISHED_JOB_RETENTION = Duration.ofHours(1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor taskExecutor;
+    private final ObjectReader registrationReader;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int fetchSize;
+    private final Map<UUID, CustomerImportJob> jobs = new ConcurrentHashMap<>();
+
+    public CustomerImportService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+                                 ObjectMapper objectMapper,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${customer.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskExecutor = taskExecutor;
+        this.registrationReader = objectMapper.readerFor(CustomerRegistrationRequest.class);
+        this.eventPublisher = eventPublisher;
+        this.fetchSize = fetchSize;
+    }
+
+    public CustomerImportStatus submitImport(CustomerImportFormat format, InputStream input) {
+        removeExpiredJobs();
+
+        // spool the upload to disk so the request can return while the job runs
+        Path file;
+        try {
+            file = Files.createTempFile("customer-import-", "." + format.name().toLowerCase());
+            Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not spool customer import", e);
+        }
+
+        CustomerImportJob job;
+        try {
+            job = new CustomerImportJob(format, Files.size(file), MAX_REPORTED_REJECTIONS);
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new UncheckedIOException("could not spool customer import", e);
+        }
+        jobs.put(job.getId(), job);
+        taskExecutor.execute(() -> runImport(job, file));
+        return job.toStatus();
+    }
+
+    public CustomerImportStatus getImportStatus(UUID jobId) {
+        CustomerImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("customer import [%s] not found".formatted(jobId));
+        }
+        return job.toStatus();
+    }
+
+    private void runImport(CustomerImportJob job, Path file) {
+        try (InputStream input = new ProgressInputStream(Files.newInputStream(file), job)) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.execute(
+                    (ConnectionCallback<Void>) connection -> {
+                        stage(connection, job, input);
+                        merge(job);
+                        return null;
+                    }));
+            job.complete();
+            CustomerImportStatus status = job.toStatus();
+            LOGGER.info("customer import {} finished: {}", job.getId(), status);
+            // rows were written around the DAO, let its decorators catch up
+            eventPublisher.publishEvent(new CustomerImportCompletedEvent(job.getId(), status.insertedRows()));
+        } catch (Exception e) {
+            LOGGER.error("customer import {} failed", job.getId(), e);
+            job.fail(e.getMessage());
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    private void stage(Connection connection, CustomerImportJob job, InputStream input) throws SQLException {
+        job.setState(CustomerImportStatus.State.COPYING);
+        jdbcTemplate.execute("""
+                CREATE TEMP TABLE customer_import_staging (
+                    line_no BIGINT GENERATED ALWAYS AS IDENTITY,
+                    name TEXT,
+                    email TEXT,
+                    age TEXT,
+                    gender TEXT
+                ) ON COMMIT DROP
+                """);
+
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        try {
+            long staged = switch (job.getFormat()) {
+                case CSV -> copyManager.copyIn("""
+                        COPY customer_import_staging (name, email, age, gender)
+                        FROM STDIN WITH (FORMAT csv, HEADER true)
+                        """, input, COPY_BUFFER_SIZE);
+                case NDJSON -> copyNdjson(copyManager, input);
+            };
+            job.setStagedRows(staged);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long copyNdjson(CopyManager copyManager, InputStream input) throws SQLException, IOException {
+        CopyIn copyIn = copyManager.copyIn("""
+                COPY customer_import_staging (name, email, age, gender)
+                FROM STDIN WITH (FORMAT csv)
+                """);
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(input, StandardCharsets.UTF_8), COPY_BUFFER_SIZE);
+            StringBuilder rows = new StringBuilder(COPY_BUFFER_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                CustomerRegistrationRequest request = parseNdjsonLine(line);
+                appendCsvField(rows, request == null ? null : request.name()).append(',');
+                appendCsvField(rows, request == null ? null : request.email()).append(',');
+                appendCsvField(rows, request == null ? null : Integer.toString(request.age())).append(',');
+                appendCsvField(rows, request == null || request.gender() == null
+                        ? null : request.gender().name()).append('\n');
+                if (rows.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copyIn, rows);
+                }
+            }
+            writeToCopy(copyIn, rows);
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private CustomerRegistrationRequest parseNdjsonLine(String line) {
+        try {
+            return registrationReader.readValue(line);
+        } catch (IOException e) {
+            // staged as an all-null row so it gets reported as INVALID with its line number
+            return null;
+        }
+    }
+
+    private static StringBuilder appendCsvField(StringBuilder rows, String value) {
+        if (value == null) {
+            return rows;
+        }
+        return rows.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    private void merge(CustomerImportJob job) {
+        job.setState(CustomerImportStatus.State.MERGING);
+        // one set-based statement: first occurrence of each valid email wins,
+        // customer_email_unique resolves clashes with existing rows, and every
+        // staged line that did not end up inserted is streamed back as rejected
+        var sql = """
+                WITH valid AS (
+                    SELECT line_no, name, email, age::int AS age, gender
+                    FROM customer_import_staging
+                    WHERE name <> ''
+                      AND email <> ''
+                      AND age ~ '^[0-9]{1,9}$'
+                      AND gender IN ('MALE', 'FEMALE')
+                ), candidates AS (
+                    SELECT DISTINCT ON (email) line_no, name, email, age, gender
+                    FROM valid
+                    ORDER BY email, line_no
+                ), inserted AS (
+                    INSERT INTO customer (name, email, age, gender)
+                    SELECT name, email, age, gender
+                    FROM candidates
+                    ORDER BY line_no
+                    ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                    RETURNING email
+                )
+                SELECT s.line_no,
+                       s.email,
+                       CASE WHEN v.line_no IS NULL THEN 'INVALID' ELSE 'DUPLICATE_EMAIL' END AS reason
+                FROM customer_import_staging s
+                LEFT JOIN valid v ON v.line_no = s.line_no
+                WHERE NOT EXISTS (
+                    SELECT 1
+                    FROM candidates c
+                    JOIN inserted i ON i.email = c.email
+                    WHERE c.line_no = s.line_no
+                )
+                ORDER BY s.line_no
+                """;
+        // every rejection is counted but only the first ones are kept: read through a
+        // cursor, a re-imported file would otherwise be buffered whole by the driver
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            job.reject(rs.getLong("line_no"), rs.getString("email"), rs.getString("reason"));
+        });
+    }
+
+    private void removeExpiredJobs() {
+        Instant cutoff = Instant.now().minus(FINISHED_JOB_RETENTION);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("could not delete customer import file {}", file, e);
+        }
+    }
+
+    private static class ProgressInputStream extends FilterInputStream {
+        private final CustomerImportJob job;
+
+        ProgressInputStream(InputStream in, CustomerImportJob job) {
+            super(in);
+            this.job = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                job.addBytesRead(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                job.addBytesRead(n);
+            }
+            return n;
+        }
+    }
+}
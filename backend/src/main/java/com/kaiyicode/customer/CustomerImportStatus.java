@@ -0,0 +1,35 @@
+package com.kaiyicode.customer;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public record CustomerImportStatus(
+        UUID id,
+        CustomerImportFormat format,
+        State state,
+        long totalBytes,
+        long bytesRead,
+        long stagedRows,
+        long insertedRows,
+        long rejectedRows,
+        List<RejectedRow> rejected,
+        String error,
+        Instant submittedAt,
+        Instant finishedAt
+) {
+    public enum State {
+        QUEUED,
+        COPYING,
+        MERGING,
+        COMPLETED,
+        FAILED
+    }
+
+    public record RejectedRow(
+            long line,
+            String email,
+            String reason
+    ) {
+    }
+}
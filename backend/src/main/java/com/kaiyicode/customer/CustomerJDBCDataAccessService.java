@@ -1,37 +1,166 @@
 package com.kaiyicode.customer;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDAO {
 
     private final JdbcTemplate jdbcTemplate;
     private final RowMapper<Customer> customerRowMapper;
+    private final int exportFetchSize;
 
     public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate,
-                                         RowMapper<Customer> customerRowMapper) {
+                                         RowMapper<Customer> customerRowMapper,
+                                         @Value("${customer.export.fetch-size:1000}") int exportFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
         this.customerRowMapper = customerRowMapper;
+        this.exportFetchSize = exportFetchSize;
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
         var sql = """
-                SELECT id, name, email, age, gender
+                SELECT id, name, email, age, gender, version
                 FROM customer
                 """;
         return jdbcTemplate.query(sql, customerRowMapper);
     }
 
+    @Override
+    public List<Customer> selectCustomersAfterId(int id, int limit) {
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, customerRowMapper, id, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        SelectQuery select = toSelectQuery(query);
+        return jdbcTemplate.query(select.sql(), customerRowMapper, select.args().toArray());
+    }
+
+    @Override
+    public List<CustomerCount> countCustomersByGenderAndAge() {
+        var sql = """
+                SELECT gender, age, count(*) AS count
+                FROM customer
+                GROUP BY gender, age
+                """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new CustomerCount(
+                Gender.valueOf(rs.getString("gender")),
+                rs.getInt("age"),
+                rs.getLong("count")));
+    }
+
+    record SelectQuery(String sql, List<Object> args) {
+    }
+
+    // column names come from the enum, values are always bind parameters; the
+    // (gender, age|name, id) and (age|name, id) indexes serve filter, order and keyset
+    static SelectQuery toSelectQuery(CustomerQuery query) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (query.gender() != null) {
+            conditions.add("gender = ?");
+            args.add(query.gender().name());
+        }
+        if (query.minAge() != null) {
+            conditions.add("age >= ?");
+            args.add(query.minAge());
+        }
+        if (query.maxAge() != null) {
+            conditions.add("age <= ?");
+            args.add(query.maxAge());
+        }
+        String direction = query.descending() ? "DESC" : "ASC";
+        String comparison = query.descending() ? "<" : ">";
+        String order = switch (query.sortBy()) {
+            case ID -> "id %s".formatted(direction);
+            case NAME -> "name %1$s, id %1$s".formatted(direction);
+            case AGE -> "age %1$s, id %1$s".formatted(direction);
+        };
+        Customer after = query.after();
+        if (after != null) {
+            // a row comparison is a single index condition, unlike the equivalent OR
+            switch (query.sortBy()) {
+                case ID -> conditions.add("id %s ?".formatted(comparison));
+                case NAME -> {
+                    conditions.add("(name, id) %s (?, ?)".formatted(comparison));
+                    args.add(after.getName());
+                }
+                case AGE -> {
+                    conditions.add("(age, id) %s (?, ?)".formatted(comparison));
+                    args.add(after.getAge());
+                }
+            }
+            args.add(after.getId());
+        }
+        args.add(query.limit());
+
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                %s
+                ORDER BY %s
+                LIMIT ?
+                """.formatted(
+                conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions),
+                order);
+        return new SelectQuery(sql, args);
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                ORDER BY id
+                """;
+        // pgjdbc only uses a server-side cursor when the fetch size is set
+        // and the caller runs inside a transaction (auto-commit off)
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(exportFetchSize);
+            return statement;
+        }, customerRowMapper);
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        var sql = """
+                SELECT email
+                FROM customer
+                """;
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(exportFetchSize);
+            return statement;
+        }, (rs, rowNum) -> rs.getString("email"));
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         var sql = """
-                SELECT id, name, email, age, gender
+                SELECT id, name, email, age, gender, version
                 FROM customer
                 WHERE id = ?
                 """;
@@ -42,21 +171,72 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                WHERE id = ANY(?)
+                """;
+        return jdbcTemplate.query(
+                sql,
+                statement -> statement.setArray(
+                        1,
+                        statement.getConnection().createArrayOf("int4", ids.toArray())),
+                customerRowMapper
+        );
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        // customer_email_unique decides, no pre-check query and no race
         var sql = """
                 INSERT INTO customer (name, email, age, gender)
                 VALUES (?, ?, ?, ?)
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING id, version
                 """;
 
-        int result = jdbcTemplate.update(
-                sql,
-                customer.getName(),
-                customer.getEmail(),
-                customer.getAge(),
-                customer.getGender().name()
-        );
+        return jdbcTemplate.query(
+                        sql,
+                        (rs, rowNum) -> {
+                            customer.setId(rs.getInt("id"));
+                            customer.setVersion(rs.getLong("version"));
+                            return customer;
+                        },
+                        customer.getName(),
+                        customer.getEmail(),
+                        customer.getAge(),
+                        customer.getGender().name())
+                .size() == 1;
+    }
 
-        System.out.println("insertCustomer = " + result);
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        // rows whose email was taken concurrently are skipped and reported as 0
+        var sql = """
+                INSERT INTO customer (name, email, age, gender)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                """;
+
+        return jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Customer customer = customers.get(i);
+                ps.setString(1, customer.getName());
+                ps.setString(2, customer.getEmail());
+                ps.setInt(3, customer.getAge());
+                ps.setString(4, customer.getGender().name());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return customers.size();
+            }
+        });
     }
 
     @Override
@@ -71,13 +251,35 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
     }
 
     @Override
-    public void deleteCustomerById(Integer id) {
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE email = ANY(?)
+                """;
+        List<String> existing = jdbcTemplate.query(
+                sql,
+                statement -> statement.setArray(
+                        1,
+                        statement.getConnection().createArrayOf("text", emails.toArray())),
+                (rs, rowNum) -> rs.getString("email")
+        );
+        return new HashSet<>(existing);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
         var sql = """
                 DELETE FROM customer
                 WHERE id = ?
+                RETURNING id, name, email, age, gender, version
                 """;
-        int result = jdbcTemplate.update(sql, id);
-        System.out.println("deleteCustomerById = " + result);
+        return jdbcTemplate.query(sql, customerRowMapper, id)
+                .stream()
+                .findFirst();
     }
 
     @Override
@@ -92,35 +294,55 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        if (customer.getName() != null) {
-            var sql = "UPDATE customer SET name = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    customer.getName(),
-                    customer.getId()
-            );
-            System.out.println("update customer name = " + result);
+    public Optional<CustomerUpdateResult> updateCustomer(Customer update) {
+        List<String> assignments = new ArrayList<>();
+        List<String> changes = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        if (update.getName() != null) {
+            assignments.add("name = ?");
+            changes.add("customer.name IS DISTINCT FROM ?");
+            values.add(update.getName());
         }
-
-        if (customer.getEmail() != null) {
-            var sql = "UPDATE customer SET email = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    customer.getEmail(),
-                    customer.getId()
-            );
-            System.out.println("update customer email = " + result);
+        if (update.getEmail() != null) {
+            assignments.add("email = ?");
+            changes.add("customer.email IS DISTINCT FROM ?");
+            values.add(update.getEmail());
+        }
+        if (update.getAge() != null) {
+            assignments.add("age = ?");
+            changes.add("customer.age IS DISTINCT FROM ?");
+            values.add(update.getAge());
+        }
+        if (assignments.isEmpty()) {
+            return Optional.empty();
         }
 
-        if (customer.getAge() != null) {
-            var sql = "UPDATE customer SET age = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    customer.getAge(),
-                    customer.getId()
-            );
-            System.out.println("update customer age = " + result);
+        // a single statement: only touched columns are written, rows where
+        // nothing would change or the version moved on are left alone; the locked
+        // read of the old row hands back the age it is replacing
+        var sql = """
+                UPDATE customer
+                SET %s, version = customer.version + 1
+                FROM (SELECT id, age FROM customer WHERE id = ? FOR UPDATE) previous
+                WHERE customer.id = previous.id%s
+                AND (%s)
+                RETURNING customer.id, customer.name, customer.email, customer.age, customer.gender,
+                          customer.version, previous.age AS previous_age
+                """.formatted(
+                String.join(", ", assignments),
+                update.getVersion() != null ? " AND customer.version = ?" : "",
+                String.join(" OR ", changes));
+
+        List<Object> args = new ArrayList<>(values);
+        args.add(update.getId());
+        if (update.getVersion() != null) {
+            args.add(update.getVersion());
         }
+        args.addAll(values);
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new CustomerUpdateResult(
+                        customerRowMapper.mapRow(rs, rowNum), rs.getInt("previous_age")), args.toArray())
+                .stream()
+                .findFirst();
     }
 }
@@ -1,30 +1,160 @@
 package com.kaiyicode.customer;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDAO {
     private final CustomerRepository customerRepository;
+    private final EntityManager entityManager;
+    private final int exportFetchSize;
 
-    public CustomerJPADataAccessService(CustomerRepository customerRepository) {
+    public CustomerJPADataAccessService(CustomerRepository customerRepository,
+                                        EntityManager entityManager,
+                                        @Value("${customer.export.fetch-size:1000}") int exportFetchSize) {
         this.customerRepository = customerRepository;
+        this.entityManager = entityManager;
+        this.exportFetchSize = exportFetchSize;
     }
+
     @Override
     public List<Customer> selectAllCustomers() {
         return customerRepository.findAll();
     }
 
+    @Override
+    public List<Customer> selectCustomersAfterId(int id, int limit) {
+        return customerRepository.findByIdGreaterThanOrderByIdAsc(id, Limit.of(limit));
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        // findBy with a limit: a single select, no count query like findAll(spec, pageable)
+        return customerRepository.findBy(
+                specification(query),
+                customers -> customers.sortBy(sort(query)).limit(query.limit()).all());
+    }
+
+    static Specification<Customer> specification(CustomerQuery query) {
+        return (root, criteriaQuery, criteriaBuilder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (query.gender() != null) {
+                predicates.add(criteriaBuilder.equal(root.get("gender"), query.gender()));
+            }
+            if (query.minAge() != null) {
+                predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("age"), query.minAge()));
+            }
+            if (query.maxAge() != null) {
+                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("age"), query.maxAge()));
+            }
+            Customer after = query.after();
+            if (after != null) {
+                Path<Integer> id = root.get("id");
+                predicates.add(switch (query.sortBy()) {
+                    case ID -> query.descending()
+                            ? criteriaBuilder.lessThan(id, after.getId())
+                            : criteriaBuilder.greaterThan(id, after.getId());
+                    case NAME -> keyset(criteriaBuilder, root.get("name"), after.getName(), id, after.getId(), query.descending());
+                    case AGE -> keyset(criteriaBuilder, root.get("age"), after.getAge(), id, after.getId(), query.descending());
+                });
+            }
+            return criteriaBuilder.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    static Sort sort(CustomerQuery query) {
+        Sort.Direction direction = query.descending() ? Sort.Direction.DESC : Sort.Direction.ASC;
+        return switch (query.sortBy()) {
+            case ID -> Sort.by(direction, "id");
+            case NAME -> Sort.by(direction, "name", "id");
+            case AGE -> Sort.by(direction, "age", "id");
+        };
+    }
+
+    // criteria has no row comparison; the redundant bound on the key keeps an index range scan
+    private static <T extends Comparable<? super T>> Predicate keyset(CriteriaBuilder criteriaBuilder,
+                                                                     Path<T> key, T value,
+                                                                     Path<Integer> id, Integer afterId,
+                                                                     boolean descending) {
+        if (descending) {
+            return criteriaBuilder.and(
+                    criteriaBuilder.lessThanOrEqualTo(key, value),
+                    criteriaBuilder.or(
+                            criteriaBuilder.lessThan(key, value),
+                            criteriaBuilder.lessThan(id, afterId)));
+        }
+        return criteriaBuilder.and(
+                criteriaBuilder.greaterThanOrEqualTo(key, value),
+                criteriaBuilder.or(
+                        criteriaBuilder.greaterThan(key, value),
+                        criteriaBuilder.greaterThan(id, afterId)));
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        // built here rather than on the repository, where a fetch size hint can only be a constant
+        return entityManager.createQuery("SELECT c FROM Customer c ORDER BY c.id", Customer.class)
+                .setHint(HINT_FETCH_SIZE, exportFetchSize)
+                .setHint(HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return entityManager.createQuery("SELECT c.email FROM Customer c", String.class)
+                .setHint(HINT_FETCH_SIZE, exportFetchSize)
+                .getResultStream();
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         return customerRepository.findById(id);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return customerRepository.findAllById(ids);
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        try {
+            customerRepository.save(customer);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            if (isEmailUniqueViolation(e)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] inserted = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            inserted[i] = insertCustomer(customers.get(i)) ? 1 : 0;
+        }
+        return inserted;
     }
 
     @Override
@@ -33,8 +163,13 @@ public class CustomerJPADataAccessService implements CustomerDAO {
     }
 
     @Override
-    public void deleteCustomerById(Integer id) {
-        customerRepository.deleteById(id);
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerRepository.findExistingEmails(emails);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return customerRepository.deleteCustomerById(id);
     }
 
     @Override
@@ -43,7 +178,42 @@ public class CustomerJPADataAccessService implements CustomerDAO {
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        customerRepository.save(customer);
+    public List<CustomerCount> countCustomersByGenderAndAge() {
+        return customerRepository.findCountsByGenderAndAge();
+    }
+
+    @Override
+    public Optional<CustomerUpdateResult> updateCustomer(Customer update) {
+        Customer customer = customerRepository.findById(update.getId()).orElse(null);
+        if (customer == null ||
+                (update.getVersion() != null && !update.getVersion().equals(customer.getVersion()))) {
+            return Optional.empty();
+        }
+
+        int previousAge = customer.getAge();
+        boolean changed = false;
+        if (update.getName() != null && !update.getName().equals(customer.getName())) {
+            customer.setName(update.getName());
+            changed = true;
+        }
+        if (update.getEmail() != null && !update.getEmail().equals(customer.getEmail())) {
+            customer.setEmail(update.getEmail());
+            changed = true;
+        }
+        if (update.getAge() != null && !update.getAge().equals(customer.getAge())) {
+            customer.setAge(update.getAge());
+            changed = true;
+        }
+        if (!changed) {
+            return Optional.empty();
+        }
+
+        // @Version turns a concurrent write in between into an optimistic locking failure
+        return Optional.of(new CustomerUpdateResult(customerRepository.save(customer), previousAge));
+    }
+
+    private static boolean isEmailUniqueViolation(DataIntegrityViolationException e) {
+        return e.getCause() instanceof ConstraintViolationException violation &&
+                "customer_email_unique".equals(violation.getConstraintName());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,224 @@
+package com.kaiyicode.customer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+
+// Customer payloads are written and read field by field instead of through bean
+// introspection. Field names are quoted and UTF-8 encoded once, the generator copies
+// the bytes; values the fast path does not expect (strings for numbers, unknown
+// genders) go to Jackson's own deserializers, so coercion and errors stay the same.
+// Output matches the reflective one: declaration order, nulls included.
+@JsonComponent
+public class CustomerJsonComponent {
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString AGE = new SerializedString("age");
+    private static final SerializedString GENDER = new SerializedString("gender");
+    private static final SerializedString VERSION = new SerializedString("version");
+    private static final SerializedString[] GENDER_NAMES = {
+            new SerializedString(Gender.MALE.name()),
+            new SerializedString(Gender.FEMALE.name())
+    };
+
+    public static class CustomerSerializer extends JsonSerializer<Customer> {
+        @Override
+        public void serialize(Customer customer, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(customer);
+            gen.writeFieldName(ID);
+            writeNumber(gen, customer.getId());
+            gen.writeFieldName(NAME);
+            gen.writeString(customer.getName());
+            gen.writeFieldName(EMAIL);
+            gen.writeString(customer.getEmail());
+            gen.writeFieldName(AGE);
+            writeNumber(gen, customer.getAge());
+            gen.writeFieldName(GENDER);
+            writeGender(gen, customer.getGender());
+            gen.writeFieldName(VERSION);
+            if (customer.getVersion() == null) {
+                gen.writeNull();
+            } else {
+                gen.writeNumber(customer.getVersion());
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    public static class CustomerDeserializer extends JsonDeserializer<Customer> {
+        @Override
+        public Customer deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            Customer customer = new Customer();
+            for (String field = firstFieldName(p, ctxt, Customer.class);
+                 field != null; field = p.nextFieldName()) {
+                p.nextToken();
+                switch (field) {
+                    case "id" -> customer.setId(readInteger(p, ctxt));
+                    case "name" -> customer.setName(readString(p, ctxt));
+                    case "email" -> customer.setEmail(readString(p, ctxt));
+                    case "age" -> customer.setAge(readInteger(p, ctxt));
+                    case "gender" -> customer.setGender(readGender(p, ctxt));
+                    case "version" -> customer.setVersion(readLong(p, ctxt));
+                    default -> ctxt.handleUnknownProperty(p, this, Customer.class, field);
+                }
+            }
+            return customer;
+        }
+    }
+
+    public static class RegistrationRequestSerializer extends JsonSerializer<CustomerRegistrationRequest> {
+        @Override
+        public void serialize(CustomerRegistrationRequest request, JsonGenerator gen,
+                              SerializerProvider provider) throws IOException {
+            gen.writeStartObject(request);
+            gen.writeFieldName(NAME);
+            gen.writeString(request.name());
+            gen.writeFieldName(EMAIL);
+            gen.writeString(request.email());
+            gen.writeFieldName(AGE);
+            gen.writeNumber(request.age());
+            gen.writeFieldName(GENDER);
+            writeGender(gen, request.gender());
+            gen.writeEndObject();
+        }
+    }
+
+    public static class RegistrationRequestDeserializer extends JsonDeserializer<CustomerRegistrationRequest> {
+        @Override
+        public CustomerRegistrationRequest deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String name = null;
+            String email = null;
+            Integer age = null;
+            Gender gender = null;
+            for (String field = firstFieldName(p, ctxt, CustomerRegistrationRequest.class);
+                 field != null; field = p.nextFieldName()) {
+                p.nextToken();
+                switch (field) {
+                    case "name" -> name = readString(p, ctxt);
+                    case "email" -> email = readString(p, ctxt);
+                    case "age" -> age = readInteger(p, ctxt);
+                    case "gender" -> gender = readGender(p, ctxt);
+                    default -> ctxt.handleUnknownProperty(p, this, CustomerRegistrationRequest.class, field);
+                }
+            }
+            // a missing or null age is 0, as for any primitive record component
+            return new CustomerRegistrationRequest(name, email, age == null ? 0 : age, gender);
+        }
+    }
+
+    public static class UpdateRequestSerializer extends JsonSerializer<CustomerUpdateRequest> {
+        @Override
+        public void serialize(CustomerUpdateRequest request, JsonGenerator gen,
+                              SerializerProvider provider) throws IOException {
+            gen.writeStartObject(request);
+            gen.writeFieldName(NAME);
+            gen.writeString(request.name());
+            gen.writeFieldName(EMAIL);
+            gen.writeString(request.email());
+            gen.writeFieldName(AGE);
+            writeNumber(gen, request.age());
+            gen.writeFieldName(VERSION);
+            if (request.version() == null) {
+                gen.writeNull();
+            } else {
+                gen.writeNumber(request.version());
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    public static class UpdateRequestDeserializer extends JsonDeserializer<CustomerUpdateRequest> {
+        @Override
+        public CustomerUpdateRequest deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String name = null;
+            String email = null;
+            Integer age = null;
+            Long version = null;
+            for (String field = firstFieldName(p, ctxt, CustomerUpdateRequest.class);
+                 field != null; field = p.nextFieldName()) {
+                p.nextToken();
+                switch (field) {
+                    case "name" -> name = readString(p, ctxt);
+                    case "email" -> email = readString(p, ctxt);
+                    case "age" -> age = readInteger(p, ctxt);
+                    case "version" -> version = readLong(p, ctxt);
+                    default -> ctxt.handleUnknownProperty(p, this, CustomerUpdateRequest.class, field);
+                }
+            }
+            return new CustomerUpdateRequest(name, email, age, version);
+        }
+    }
+
+    private static void writeNumber(JsonGenerator gen, Integer value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value.intValue());
+        }
+    }
+
+    private static void writeGender(JsonGenerator gen, Gender gender) throws IOException {
+        if (gender == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(GENDER_NAMES[gender.ordinal()]);
+        }
+    }
+
+    // null for {}; buffering callers (polymorphic types, @JsonUnwrapped) hand over the parser
+    // already on the first FIELD_NAME
+    private static String firstFieldName(JsonParser p, DeserializationContext ctxt, Class<?> type) throws IOException {
+        if (p.isExpectedStartObjectToken()) {
+            return p.nextFieldName();
+        }
+        if (p.currentToken() == JsonToken.FIELD_NAME) {
+            return p.currentName();
+        }
+        ctxt.handleUnexpectedToken(type, p);
+        return null;
+    }
+
+    private static String readString(JsonParser p, DeserializationContext ctxt) throws IOException {
+        return switch (p.currentToken()) {
+            case VALUE_STRING -> p.getText();
+            case VALUE_NULL -> null;
+            default -> ctxt.readValue(p, String.class);
+        };
+    }
+
+    private static Integer readInteger(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NUMBER_INT && p.getNumberType() == JsonParser.NumberType.INT) {
+            return p.getIntValue();
+        }
+        return p.currentToken() == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, Integer.class);
+    }
+
+    private static Long readLong(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NUMBER_INT && p.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+            return p.getLongValue();
+        }
+        return p.currentToken() == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, Long.class);
+    }
+
+    private static Gender readGender(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_STRING) {
+            String text = p.getText();
+            if ("MALE".equals(text)) {
+                return Gender.MALE;
+            }
+            if ("FEMALE".equals(text)) {
+                return Gender.FEMALE;
+            }
+        }
+        return p.currentToken() == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, Gender.class);
+    }
+}
@@ -1,69 +1,209 @@
 package com.kaiyicode.customer;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 @Repository("list")
 public class CustomerListDataAccessService implements CustomerDAO {
-    private static List<Customer> customers;
+    private final ConcurrentMap<Integer, Customer> customersById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    // ordered view for keyset paging and streaming, point lookups stay on the hash index
+    private final ConcurrentNavigableMap<Integer, Boolean> orderedIds = new ConcurrentSkipListMap<>();
+    private final AtomicInteger idSequence = new AtomicInteger();
 
-    static {
-        customers = new ArrayList<>();
-        Customer alex = new Customer(
-                1,
+    public CustomerListDataAccessService() {
+        insertCustomer(new Customer(
                 "Alex",
                 "alex@gmail.com",
                 21,
-                Gender.MALE);
-        customers.add(alex);
-        Customer jamila = new Customer(
-                2,
+                Gender.MALE));
+        insertCustomer(new Customer(
                 "Jamila",
                 "jamila@gmail.com",
                 19,
-                Gender.MALE);
-        customers.add(jamila);
+                Gender.MALE));
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customers;
+        return streamAllCustomers().toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(int id, int limit) {
+        return streamFrom(orderedIds.tailMap(id, false))
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        return query.applyTo(customersById.values())
+                .stream()
+                .map(CustomerListDataAccessService::copy)
+                .toList();
+    }
+
+    @Override
+    public List<CustomerCount> countCustomersByGenderAndAge() {
+        return CustomerCount.tally(customersById.values().stream());
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return streamFrom(orderedIds);
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return idsByEmail.keySet().stream();
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
-        return customers.stream()
-                .filter(customer -> customer.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(customersById.get(id)).map(CustomerListDataAccessService::copy);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customers.add(customer);
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        List<Customer> customers = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                customers.add(copy(customer));
+            }
+        }
+        return customers;
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        // like a database sequence, ids lost to a duplicate email are not reused
+        int id = idSequence.incrementAndGet();
+        if (idsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            return false;
+        }
+        customer.setId(id);
+        customer.setVersion(0L);
+        customersById.put(id, copy(customer));
+        orderedIds.put(id, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] inserted = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            inserted[i] = insertCustomer(customers.get(i)) ? 1 : 0;
+        }
+        return inserted;
     }
 
     @Override
     public boolean existsCustomerWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(customer -> customer.getEmail().equals(email));
+        return idsByEmail.containsKey(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        Set<String> existing = new HashSet<>();
+        for (String email : emails) {
+            if (idsByEmail.containsKey(email)) {
+                existing.add(email);
+            }
+        }
+        return existing;
     }
 
     @Override
-    public void deleteCustomerById(Integer id) {
-        customers.removeIf(customer -> customer.getId().equals(id));
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        Customer removed = customersById.remove(id);
+        if (removed == null) {
+            return Optional.empty();
+        }
+        orderedIds.remove(id);
+        idsByEmail.remove(removed.getEmail(), id);
+        return Optional.of(copy(removed));
     }
 
     @Override
     public boolean existsCustomerWithId(Integer id) {
-        return customers.stream()
-                .anyMatch(customer -> customer.getId().equals(id));
+        return customersById.containsKey(id);
     }
 
     @Override
-    public void updateCustomer(Customer customer) {
-        customers.add(customer);
+    public Optional<CustomerUpdateResult> updateCustomer(Customer update) {
+        CustomerUpdateResult[] updated = new CustomerUpdateResult[1];
+        // compute serializes writers of the same id, other ids are not blocked
+        customersById.computeIfPresent(update.getId(), (id, current) -> {
+            if (update.getVersion() != null && !update.getVersion().equals(current.getVersion())) {
+                return current;
+            }
+
+            Customer next = copy(current);
+            boolean changed = false;
+            if (update.getName() != null && !update.getName().equals(current.getName())) {
+                next.setName(update.getName());
+                changed = true;
+            }
+            if (update.getEmail() != null && !update.getEmail().equals(current.getEmail())) {
+                Integer owner = idsByEmail.putIfAbsent(update.getEmail(), id);
+                if (owner != null && !owner.equals(id)) {
+                    throw new DuplicateKeyException(
+                            "email [%s] already belongs to customer [%s]".formatted(update.getEmail(), owner));
+                }
+                next.setEmail(update.getEmail());
+                changed = true;
+            }
+            if (update.getAge() != null && !update.getAge().equals(current.getAge())) {
+                next.setAge(update.getAge());
+                changed = true;
+            }
+            if (!changed) {
+                return current;
+            }
+
+            if (!next.getEmail().equals(current.getEmail())) {
+                idsByEmail.remove(current.getEmail(), id);
+            }
+            next.setVersion(current.getVersion() + 1);
+            updated[0] = new CustomerUpdateResult(copy(next), current.getAge());
+            return next;
+        });
+        return Optional.ofNullable(updated[0]);
+    }
+
+    private Stream<Customer> streamFrom(ConcurrentNavigableMap<Integer, Boolean> ids) {
+        // weakly consistent: rows deleted while streaming are skipped
+        return ids.keySet()
+                .stream()
+                .map(customersById::get)
+                .filter(Objects::nonNull)
+                .map(CustomerListDataAccessService::copy);
+    }
+
+    // stored customers are never handed out, callers get their own copy to mutate
+    private static Customer copy(Customer customer) {
+        return new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getGender(),
+                customer.getVersion());
     }
 }
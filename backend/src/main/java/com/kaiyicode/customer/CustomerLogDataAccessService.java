@@ -0,0 +1,735 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Customers live in memory and every change is appended to a local log before
+// the caller returns. Frames are [payload length int | crc32c int | payload];
+// recovery loads the latest snapshot, replays the log and cuts off a torn tail.
+// A change becomes visible to readers only once the log is forced past it; until
+// then writers see it through the unsynced overlay.
+@Lazy
+@Repository("log")
+public class CustomerLogDataAccessService implements CustomerDAO, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerLogDataAccessService.class);
+
+    static final String LOG_FILE = "customers.log";
+    static final String SNAPSHOT_FILE = "customers.snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x43555354;
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final int FRAME_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final Gender[] GENDERS = Gender.values();
+
+    private final Path directory;
+    private final long compactionThreshold;
+    private final Timer syncTimer;
+    private final DistributionSummary syncBatch;
+
+    private final NavigableMap<Integer, Customer> customersById = new TreeMap<>();
+    private final Map<String, Integer> idsByEmail = new HashMap<>();
+    // appended but not yet forced, in log order; a null customer is a delete, a null id
+    // a released email. Guarded by the write lock like the maps above
+    private final ArrayDeque<Unsynced> unsynced = new ArrayDeque<>();
+    private final Map<Integer, Customer> unsyncedById = new HashMap<>();
+    private final Map<String, Integer> unsyncedIdsByEmail = new HashMap<>();
+    private int idSequence;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    private final FileChannel logChannel;
+    private volatile long logBytes;
+    // total bytes ever appended and ever forced, survive log truncation on compaction
+    private volatile long appendedBytes;
+    private long syncedBytes;
+    private boolean syncing;
+    // after a failed force the page cache may have dropped what it held, so nothing
+    // appended since can be trusted to be durable; writes fail until a restart
+    private volatile boolean fenced;
+    // not a monitor: followers park for the length of a force, and Object.wait
+    // would pin their virtual threads to the carriers meanwhile
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncDone = syncLock.newCondition();
+
+    public CustomerLogDataAccessService(MeterRegistry meterRegistry,
+                                        @Value("${customer.log.directory:data/customers}") Path directory,
+                                        @Value("${customer.log.compaction-threshold:64MB}") DataSize compactionThreshold) {
+        this.directory = directory;
+        this.compactionThreshold = compactionThreshold.toBytes();
+        this.syncTimer = Timer.builder("customer.log.sync")
+                .register(meterRegistry);
+        this.syncBatch = DistributionSummary.builder("customer.log.sync.batch")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        try {
+            Files.createDirectories(directory);
+            loadSnapshot();
+            logBytes = replayLog();
+            logChannel = FileChannel.open(
+                    directory.resolve(LOG_FILE),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("could not open customer log in " + directory, e);
+        }
+        customersById.values().forEach(c -> idsByEmail.put(c.getEmail(), c.getId()));
+        LOGGER.info("recovered {} customers from {}", customersById.size(), directory);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        lock.readLock().lock();
+        try {
+            return customersById.values().stream().map(CustomerLogDataAccessService::copy).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(int id, int limit) {
+        lock.readLock().lock();
+        try {
+            return customersById.tailMap(id, false)
+                    .values()
+                    .stream()
+                    .limit(limit)
+                    .map(CustomerLogDataAccessService::copy)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        lock.readLock().lock();
+        try {
+            return query.applyTo(customersById.values())
+                    .stream()
+                    .map(CustomerLogDataAccessService::copy)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CustomerCount> countCustomersByGenderAndAge() {
+        lock.readLock().lock();
+        try {
+            return CustomerCount.tally(customersById.values().stream());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        return selectAllCustomers().stream();
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(idsByEmail.keySet()).stream();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(customersById.get(id)).map(CustomerLogDataAccessService::copy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        lock.readLock().lock();
+        try {
+            List<Customer> customers = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                Customer customer = customersById.get(id);
+                if (customer != null) {
+                    customers.add(copy(customer));
+                }
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        return insertCustomers(List.of(customer))[0] == 1;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        customers.forEach(CustomerLogDataAccessService::requireFields);
+        int[] inserted = new int[customers.size()];
+        long appended;
+        lock.writeLock().lock();
+        try {
+            requireNotFenced();
+            for (int i = 0; i < customers.size(); i++) {
+                Customer customer = customers.get(i);
+                if (ownerOf(customer.getEmail()) != null) {
+                    continue;
+                }
+                Customer stored = copy(customer);
+                stored.setId(idSequence + 1);
+                stored.setVersion(0L);
+                append(encodePut(stored));
+                idSequence = stored.getId();
+                stage(stored.getId(), stored, null);
+                customer.setId(stored.getId());
+                customer.setVersion(0L);
+                inserted[i] = 1;
+            }
+            appended = appendedBytes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // one fsync covers the whole batch and whatever other writers appended meanwhile
+        commit(appended);
+        compactIfNeeded();
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        lock.readLock().lock();
+        try {
+            return idsByEmail.containsKey(email);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        lock.readLock().lock();
+        try {
+            Set<String> existing = new HashSet<>();
+            for (String email : emails) {
+                if (idsByEmail.containsKey(email)) {
+                    existing.add(email);
+                }
+            }
+            return existing;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        Customer current;
+        long appended;
+        lock.writeLock().lock();
+        try {
+            requireNotFenced();
+            current = current(id);
+            if (current == null) {
+                return Optional.empty();
+            }
+            append(encodeDelete(id));
+            stage(id, null, current.getEmail());
+            appended = appendedBytes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(appended);
+        compactIfNeeded();
+        return Optional.of(copy(current));
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        lock.readLock().lock();
+        try {
+            return customersById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<CustomerUpdateResult> updateCustomer(Customer update) {
+        Customer next;
+        int previousAge;
+        long appended;
+        lock.writeLock().lock();
+        try {
+            requireNotFenced();
+            Customer current = current(update.getId());
+            if (current == null
+                    || (update.getVersion() != null && !update.getVersion().equals(current.getVersion()))) {
+                return Optional.empty();
+            }
+
+            next = copy(current);
+            previousAge = current.getAge();
+            boolean changed = false;
+            if (update.getName() != null && !update.getName().equals(current.getName())) {
+                next.setName(update.getName());
+                changed = true;
+            }
+            if (update.getEmail() != null && !update.getEmail().equals(current.getEmail())) {
+                if (ownerOf(update.getEmail()) != null) {
+                    throw new DuplicateKeyException("email [%s] already exists".formatted(update.getEmail()));
+                }
+                next.setEmail(update.getEmail());
+                changed = true;
+            }
+            if (update.getAge() != null && !update.getAge().equals(current.getAge())) {
+                next.setAge(update.getAge());
+                changed = true;
+            }
+            if (!changed) {
+                return Optional.empty();
+            }
+
+            next.setVersion(current.getVersion() + 1);
+            append(encodePut(next));
+            stage(next.getId(), next, current.getEmail());
+            appended = appendedBytes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(appended);
+        compactIfNeeded();
+        return Optional.of(new CustomerUpdateResult(copy(next), previousAge));
+    }
+
+    // writes a snapshot of the current state and truncates the log it supersedes;
+    // writers wait for the duration, readers are not blocked
+    public void compact() {
+        compactionLock.lock();
+        lock.readLock().lock();
+        try {
+            Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel snapshot = FileChannel.open(
+                    temporary,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_FORMAT).putInt(idSequence);
+                // the log about to be truncated holds the unsynced changes too, the
+                // snapshot must carry them; forcing it makes them durable
+                NavigableMap<Integer, Customer> latest = new TreeMap<>(customersById);
+                unsyncedById.forEach((id, customer) -> {
+                    if (customer == null) {
+                        latest.remove(id);
+                    } else {
+                        latest.put(id, customer);
+                    }
+                });
+                for (Customer customer : latest.values()) {
+                    ByteBuffer frame = encodePut(customer);
+                    if (buffer.remaining() < frame.remaining()) {
+                        writeFully(snapshot, buffer.flip());
+                        buffer.clear();
+                    }
+                    if (buffer.remaining() < frame.remaining()) {
+                        writeFully(snapshot, frame);
+                    } else {
+                        buffer.put(frame);
+                    }
+                }
+                writeFully(snapshot, buffer.flip());
+                snapshot.force(true);
+            }
+            Files.move(temporary, directory.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            forceDirectory();
+
+            // a crash before this point replays the old log over the new snapshot,
+            // which converges on the same state because every PUT carries the full row
+            logChannel.truncate(0);
+            logChannel.force(true);
+            logBytes = 0;
+            syncLock.lock();
+            try {
+                syncedBytes = Math.max(syncedBytes, appendedBytes);
+                syncDone.signalAll();
+            } finally {
+                syncLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("could not compact customer log in " + directory, e);
+        } finally {
+            lock.readLock().unlock();
+            compactionLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        logChannel.close();
+    }
+
+    private void compactIfNeeded() {
+        if (logBytes > compactionThreshold && compactionLock.tryLock()) {
+            try {
+                if (logBytes > compactionThreshold) {
+                    compact();
+                }
+            } finally {
+                compactionLock.unlock();
+            }
+        }
+    }
+
+    // group commit: the first writer to arrive forces the channel, writers that
+    // append while that force is running wait and share the next one
+    private void sync(long upTo) {
+        long target;
+        long from;
+        syncLock.lock();
+        try {
+            while (syncing && syncedBytes < upTo && !fenced) {
+                // keeps the interrupt flag set for the caller, like the write it follows
+                syncDone.awaitUninterruptibly();
+            }
+            if (syncedBytes >= upTo) {
+                return;
+            }
+            requireNotFenced();
+            syncing = true;
+            target = appendedBytes;
+            from = syncedBytes;
+        } finally {
+            syncLock.unlock();
+        }
+
+        boolean synced = false;
+        try {
+            syncTimer.record(() -> {
+                try {
+                    forceLog();
+                } catch (IOException e) {
+                    throw new DataAccessResourceFailureException("could not sync customer log", e);
+                }
+            });
+            synced = true;
+        } finally {
+            syncLock.lock();
+            try {
+                if (synced) {
+                    syncedBytes = Math.max(syncedBytes, target);
+                    syncBatch.record(target - from);
+                } else {
+                    fenced = true;
+                }
+                syncing = false;
+                syncDone.signalAll();
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    void forceLog() throws IOException {
+        logChannel.force(false);
+    }
+
+    // returns once the change appended up to the given position is durable and visible;
+    // whoever gets here first publishes the other changes the same force covered
+    private void commit(long appended) {
+        try {
+            sync(appended);
+        } finally {
+            publishSynced();
+        }
+    }
+
+    private void publishSynced() {
+        long synced;
+        syncLock.lock();
+        try {
+            synced = syncedBytes;
+        } finally {
+            syncLock.unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            while (!unsynced.isEmpty() && unsynced.peek().end() <= synced) {
+                publish(unsynced.poll());
+            }
+            if (fenced) {
+                // the force failed, what is left was never acknowledged
+                unsynced.clear();
+            }
+            unsyncedById.clear();
+            unsyncedIdsByEmail.clear();
+            unsynced.forEach(this::overlay);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds the write lock, after the change's frame was appended
+    private void stage(int id, Customer customer, String previousEmail) {
+        Unsynced change = new Unsynced(appendedBytes, id, customer, previousEmail);
+        unsynced.add(change);
+        overlay(change);
+    }
+
+    private void overlay(Unsynced change) {
+        unsyncedById.put(change.id(), change.customer());
+        if (change.previousEmail() != null) {
+            unsyncedIdsByEmail.put(change.previousEmail(), null);
+        }
+        if (change.customer() != null) {
+            unsyncedIdsByEmail.put(change.customer().getEmail(), change.id());
+        }
+    }
+
+    private void publish(Unsynced change) {
+        if (change.previousEmail() != null) {
+            idsByEmail.remove(change.previousEmail());
+        }
+        if (change.customer() == null) {
+            customersById.remove(change.id());
+        } else {
+            customersById.put(change.id(), change.customer());
+            idsByEmail.put(change.customer().getEmail(), change.id());
+        }
+    }
+
+    // what writers check against: the published state with the unsynced changes on top
+    private Customer current(int id) {
+        return unsyncedById.containsKey(id) ? unsyncedById.get(id) : customersById.get(id);
+    }
+
+    private Integer ownerOf(String email) {
+        return unsyncedIdsByEmail.containsKey(email) ? unsyncedIdsByEmail.get(email) : idsByEmail.get(email);
+    }
+
+    private void requireNotFenced() {
+        if (fenced) {
+            throw new DataAccessResourceFailureException("customer log could not be synced, restart to recover");
+        }
+    }
+
+    // caller holds the write lock
+    private void append(ByteBuffer frame) {
+        int length = frame.remaining();
+        try {
+            writeFully(logChannel, frame);
+        } catch (IOException e) {
+            try {
+                // drop the partial frame so later appends are not hidden behind it on recovery
+                logChannel.truncate(logBytes);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new DataAccessResourceFailureException("could not append to customer log", e);
+        }
+        logBytes += length;
+        appendedBytes += length;
+    }
+
+    private void loadSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return;
+        }
+        MappedByteBuffer buffer = map(snapshot);
+        if (buffer.remaining() < 3 * Integer.BYTES
+                || buffer.getInt() != SNAPSHOT_MAGIC
+                || buffer.getInt() != SNAPSHOT_FORMAT) {
+            throw new IllegalStateException("unrecognised customer snapshot " + snapshot);
+        }
+        idSequence = buffer.getInt();
+        // snapshots are renamed into place only once complete, so any bad frame is corruption
+        if (readFrames(buffer, this::apply) != buffer.limit()) {
+            throw new IllegalStateException("corrupt customer snapshot " + snapshot);
+        }
+    }
+
+    private long replayLog() throws IOException {
+        Path logFile = directory.resolve(LOG_FILE);
+        if (!Files.exists(logFile)) {
+            return 0;
+        }
+        MappedByteBuffer buffer = map(logFile);
+        int valid = readFrames(buffer, this::apply);
+        if (valid < buffer.limit()) {
+            LOGGER.warn("discarding {} bytes of torn customer log tail in {}", buffer.limit() - valid, logFile);
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+                channel.force(true);
+            }
+        }
+        return valid;
+    }
+
+    // returns the position after the last intact frame
+    private static int readFrames(ByteBuffer buffer, Consumer<ByteBuffer> consumer) {
+        CRC32C crc = new CRC32C();
+        while (buffer.remaining() >= FRAME_HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return start;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return start;
+            }
+            consumer.accept(payload);
+            buffer.position(buffer.position() + length);
+        }
+        return buffer.position();
+    }
+
+    private void apply(ByteBuffer payload) {
+        byte type = payload.get();
+        int id = payload.getInt();
+        idSequence = Math.max(idSequence, id);
+        if (type == DELETE) {
+            customersById.remove(id);
+            return;
+        }
+        long version = payload.getLong();
+        int age = payload.getInt();
+        Gender gender = GENDERS[payload.get()];
+        String name = readString(payload);
+        String email = readString(payload);
+        customersById.put(id, new Customer(id, name, email, age, gender, version));
+    }
+
+    private static ByteBuffer encodePut(Customer customer) {
+        byte[] name = customer.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + Integer.BYTES + Long.BYTES + Integer.BYTES + 1
+                + Integer.BYTES + name.length + Integer.BYTES + email.length);
+        payload.put(PUT)
+                .putInt(customer.getId())
+                .putLong(customer.getVersion())
+                .putInt(customer.getAge())
+                .put((byte) customer.getGender().ordinal())
+                .putInt(name.length).put(name)
+                .putInt(email.length).put(email);
+        return frame(payload.flip());
+    }
+
+    private static ByteBuffer encodeDelete(int id) {
+        return frame(ByteBuffer.allocate(1 + Integer.BYTES).put(DELETE).putInt(id).flip());
+    }
+
+    private static ByteBuffer frame(ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return ByteBuffer.allocate(FRAME_HEADER_BYTES + payload.remaining())
+                .putInt(payload.remaining())
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+    }
+
+    private static String readString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException(file + " is too large to map, compact more often");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // makes the snapshot rename durable before the log it replaces is truncated
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not every platform allows opening a directory, the rename is still atomic there
+            LOGGER.debug("could not force directory {}", directory, e);
+        }
+    }
+
+    private static void requireFields(Customer customer) {
+        if (customer.getName() == null || customer.getEmail() == null
+                || customer.getAge() == null || customer.getGender() == null) {
+            throw new DataIntegrityViolationException("customer name, email, age and gender are required");
+        }
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getGender(),
+                customer.getVersion());
+    }
+
+    private record Unsynced(long end, int id, Customer customer, String previousEmail) {
+    }
+}
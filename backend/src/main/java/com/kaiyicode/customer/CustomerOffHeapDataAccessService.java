@@ -0,0 +1,508 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+@Repository("offheap")
+public class CustomerOffHeapDataAccessService implements CustomerDAO {
+    // record layout: id int | age int | version long | name length short |
+    // email length short | gender byte | 3 bytes padding | name utf-8 | email utf-8
+    private static final int ID = 0;
+    private static final int AGE = 4;
+    private static final int VERSION = 8;
+    private static final int NAME_LENGTH = 16;
+    private static final int EMAIL_LENGTH = 18;
+    private static final int GENDER = 20;
+    private static final int HEADER_BYTES = 24;
+    private static final int ALIGNMENT = 16;
+    private static final int MAX_STRING_BYTES = 1024;
+    private static final int MAX_RECORD_BYTES = align(HEADER_BYTES + 2 * MAX_STRING_BYTES);
+    private static final int STREAM_PAGE_SIZE = 1000;
+    private static final Gender[] GENDERS = Gender.values();
+
+    private final int slabSize;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private int slabPosition;
+    // freed slots per size class (record bytes / ALIGNMENT), reused before bumping
+    private final long[][] freeSlots = new long[MAX_RECORD_BYTES / ALIGNMENT + 1][];
+    private final int[] freeSlotCounts = new int[MAX_RECORD_BYTES / ALIGNMENT + 1];
+
+    private final IntLongHashIndex idIndex;
+    private final EmailHashIndex emailIndex;
+    // ordered view of live ids for keyset paging
+    private final BitSet liveIds = new BitSet();
+    private int idSequence;
+    private long liveRecordBytes;
+
+    private final StampedLock lock = new StampedLock();
+
+    public CustomerOffHeapDataAccessService(MeterRegistry meterRegistry,
+                                            @Value("${customer.offheap.slab-size:67108864}") int slabSize,
+                                            @Value("${customer.offheap.expected-customers:1024}") int expectedCustomers) {
+        if (slabSize < MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("slab size must hold at least one record of " + MAX_RECORD_BYTES + " bytes");
+        }
+        this.slabSize = slabSize;
+        this.idIndex = new IntLongHashIndex(expectedCustomers);
+        this.emailIndex = new EmailHashIndex(expectedCustomers);
+
+        Gauge.builder("customer.offheap.records", this, dao -> dao.footprint().records())
+                .register(meterRegistry);
+        Gauge.builder("customer.offheap.slab.bytes", this, dao -> dao.footprint().slabBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("customer.offheap.index.bytes", this, dao -> dao.footprint().indexBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("customer.offheap.bytes.per.record", this, dao -> dao.footprint().bytesPerRecord())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public record Footprint(
+            long records,
+            long slabBytes,
+            long liveRecordBytes,
+            long indexBytes,
+            double bytesPerRecord
+    ) {
+    }
+
+    public Footprint footprint() {
+        long stamp = lock.readLock();
+        try {
+            long records = idIndex.size();
+            long indexBytes = idIndex.memoryBytes() + emailIndex.memoryBytes() + liveIds.size() / Byte.SIZE;
+            return new Footprint(
+                    records,
+                    (long) slabs.size() * slabSize,
+                    liveRecordBytes,
+                    indexBytes,
+                    records == 0 ? 0 : (double) (liveRecordBytes + indexBytes) / records);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return streamAllCustomers().toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(int id, int limit) {
+        // nothing follows the largest id, id + 1 would wrap around to the first page
+        if (id == Integer.MAX_VALUE) {
+            return List.of();
+        }
+        long stamp = lock.readLock();
+        try {
+            List<Customer> customers = new ArrayList<>(Math.min(limit, idIndex.size()));
+            for (int next = liveIds.nextSetBit(Math.max(0, id + 1));
+                 next >= 0 && customers.size() < limit;
+                 next = next == Integer.MAX_VALUE ? -1 : liveIds.nextSetBit(next + 1)) {
+                customers.add(decode(idIndex.get(next)));
+            }
+            return customers;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerQuery query) {
+        // no secondary indexes off-heap, every record is decoded and filtered
+        return query.applyTo(selectAllCustomers());
+    }
+
+    @Override
+    public List<CustomerCount> countCustomersByGenderAndAge() {
+        try (Stream<Customer> customers = streamAllCustomers()) {
+            return CustomerCount.tally(customers);
+        }
+    }
+
+    @Override
+    public Stream<Customer> streamAllCustomers() {
+        // page by page so the lock is never held while the caller consumes the stream
+        Iterator<Customer> pages = new Iterator<>() {
+            private Iterator<Customer> page = List.<Customer>of().iterator();
+            private int lastId;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if (!page.hasNext() && !exhausted) {
+                    List<Customer> next = selectCustomersAfterId(lastId, STREAM_PAGE_SIZE);
+                    exhausted = next.size() < STREAM_PAGE_SIZE;
+                    if (!next.isEmpty()) {
+                        lastId = next.get(next.size() - 1).getId();
+                    }
+                    page = next.iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public Customer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL),
+                false);
+    }
+
+    @Override
+    public Stream<String> streamAllEmails() {
+        return streamAllCustomers().map(Customer::getEmail);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        long stamp = lock.readLock();
+        try {
+            long address = idIndex.get(id);
+            return address == IntLongHashIndex.MISSING ? Optional.empty() : Optional.of(decode(address));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        long stamp = lock.readLock();
+        try {
+            List<Customer> customers = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                long address = idIndex.get(id);
+                if (address != IntLongHashIndex.MISSING) {
+                    customers.add(decode(address));
+                }
+            }
+            return customers;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        byte[] name = encode(customer.getName(), "name");
+        byte[] email = encode(customer.getEmail(), "email");
+        if (customer.getAge() == null || customer.getGender() == null) {
+            throw new DataIntegrityViolationException("customer age and gender are required");
+        }
+        long emailHash = hash(email);
+
+        long stamp = lock.writeLock();
+        try {
+            if (findEmail(emailHash, email) != EmailHashIndex.MISSING) {
+                return false;
+            }
+            int id = ++idSequence;
+            long address = allocate(recordBytes(name, email));
+            write(address, id, name, email, customer.getAge(), customer.getGender(), 0L);
+            idIndex.put(id, address);
+            emailIndex.add(emailHash, address);
+            liveIds.set(id);
+            customer.setId(id);
+            customer.setVersion(0L);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] inserted = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            inserted[i] = insertCustomer(customers.get(i)) ? 1 : 0;
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(bytes);
+        long stamp = lock.readLock();
+        try {
+            return findEmail(hash, bytes) != EmailHashIndex.MISSING;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        Set<String> existing = new HashSet<>();
+        long stamp = lock.readLock();
+        try {
+            for (String email : emails) {
+                byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+                if (findEmail(hash(bytes), bytes) != EmailHashIndex.MISSING) {
+                    existing.add(email);
+                }
+            }
+            return existing;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        long stamp = lock.writeLock();
+        try {
+            long address = idIndex.remove(id);
+            if (address == IntLongHashIndex.MISSING) {
+                return Optional.empty();
+            }
+            Customer deleted = decode(address);
+            byte[] email = readEmail(address);
+            emailIndex.remove(hash(email), address);
+            liveIds.clear(id);
+            free(address, recordBytes(address));
+            return Optional.of(deleted);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        long stamp = lock.readLock();
+        try {
+            return idIndex.get(id) != IntLongHashIndex.MISSING;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Optional<CustomerUpdateResult> updateCustomer(Customer update) {
+        byte[] newName = update.getName() == null ? null : encode(update.getName(), "name");
+        byte[] newEmail = update.getEmail() == null ? null : encode(update.getEmail(), "email");
+
+        long stamp = lock.writeLock();
+        try {
+            long address = idIndex.get(update.getId());
+            if (address == IntLongHashIndex.MISSING) {
+                return Optional.empty();
+            }
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            long version = slab.getLong(offset + VERSION);
+            if (update.getVersion() != null && update.getVersion() != version) {
+                return Optional.empty();
+            }
+
+            byte[] name = readName(address);
+            byte[] email = readEmail(address);
+            int age = slab.getInt(offset + AGE);
+            Gender gender = GENDERS[slab.get(offset + GENDER)];
+
+            boolean emailChanged = newEmail != null && !Arrays.equals(newEmail, email);
+            boolean changed = emailChanged
+                    || (newName != null && !Arrays.equals(newName, name))
+                    || (update.getAge() != null && update.getAge() != age);
+            if (!changed) {
+                return Optional.empty();
+            }
+            long newEmailHash = emailChanged ? hash(newEmail) : 0;
+            if (emailChanged && findEmail(newEmailHash, newEmail) != EmailHashIndex.MISSING) {
+                throw new DuplicateKeyException("email [%s] already exists".formatted(update.getEmail()));
+            }
+
+            byte[] nextName = newName != null ? newName : name;
+            byte[] nextEmail = emailChanged ? newEmail : email;
+            int nextAge = update.getAge() != null ? update.getAge() : age;
+            int oldBytes = recordBytes(address);
+            int newBytes = recordBytes(nextName, nextEmail);
+            long nextAddress = address;
+            if (align(newBytes) != align(oldBytes)) {
+                free(address, oldBytes);
+                nextAddress = allocate(newBytes);
+                idIndex.put(update.getId(), nextAddress);
+            } else {
+                liveRecordBytes += newBytes - oldBytes;
+            }
+            write(nextAddress, update.getId(), nextName, nextEmail, nextAge, gender, version + 1);
+
+            long oldEmailHash = hash(email);
+            if (emailChanged) {
+                emailIndex.remove(oldEmailHash, address);
+                emailIndex.add(newEmailHash, nextAddress);
+            } else if (nextAddress != address) {
+                emailIndex.replace(oldEmailHash, address, nextAddress);
+            }
+            return Optional.of(new CustomerUpdateResult(decode(nextAddress), age));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private long findEmail(long hash, byte[] email) {
+        return emailIndex.find(hash, address -> emailEquals(address, email));
+    }
+
+    private boolean emailEquals(long address, byte[] email) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        int nameLength = slab.getShort(offset + NAME_LENGTH);
+        int emailLength = slab.getShort(offset + EMAIL_LENGTH);
+        if (emailLength != email.length) {
+            return false;
+        }
+        int start = offset + HEADER_BYTES + nameLength;
+        for (int i = 0; i < emailLength; i++) {
+            if (slab.get(start + i) != email[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the only place a Customer object is created from stored bytes
+    private Customer decode(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        return new Customer(
+                slab.getInt(offset + ID),
+                new String(readName(address), StandardCharsets.UTF_8),
+                new String(readEmail(address), StandardCharsets.UTF_8),
+                slab.getInt(offset + AGE),
+                GENDERS[slab.get(offset + GENDER)],
+                slab.getLong(offset + VERSION));
+    }
+
+    private byte[] readName(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        byte[] name = new byte[slab.getShort(offset + NAME_LENGTH)];
+        slab.get(offset + HEADER_BYTES, name);
+        return name;
+    }
+
+    private byte[] readEmail(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        int nameLength = slab.getShort(offset + NAME_LENGTH);
+        byte[] email = new byte[slab.getShort(offset + EMAIL_LENGTH)];
+        slab.get(offset + HEADER_BYTES + nameLength, email);
+        return email;
+    }
+
+    private void write(long address, int id, byte[] name, byte[] email, int age, Gender gender, long version) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        slab.putInt(offset + ID, id);
+        slab.putInt(offset + AGE, age);
+        slab.putLong(offset + VERSION, version);
+        slab.putShort(offset + NAME_LENGTH, (short) name.length);
+        slab.putShort(offset + EMAIL_LENGTH, (short) email.length);
+        slab.put(offset + GENDER, (byte) gender.ordinal());
+        slab.put(offset + HEADER_BYTES, name);
+        slab.put(offset + HEADER_BYTES + name.length, email);
+    }
+
+    private long allocate(int recordBytes) {
+        int size = align(recordBytes);
+        int sizeClass = size / ALIGNMENT;
+        liveRecordBytes += recordBytes;
+        if (freeSlotCounts[sizeClass] > 0) {
+            return freeSlots[sizeClass][--freeSlotCounts[sizeClass]];
+        }
+        if (slabs.isEmpty() || slabPosition + size > slabSize) {
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            slabPosition = 0;
+        }
+        long address = (long) (slabs.size() - 1) * slabSize + slabPosition;
+        slabPosition += size;
+        return address;
+    }
+
+    private void free(long address, int recordBytes) {
+        int sizeClass = align(recordBytes) / ALIGNMENT;
+        liveRecordBytes -= recordBytes;
+        long[] slots = freeSlots[sizeClass];
+        if (slots == null) {
+            slots = freeSlots[sizeClass] = new long[16];
+        } else if (freeSlotCounts[sizeClass] == slots.length) {
+            slots = freeSlots[sizeClass] = Arrays.copyOf(slots, slots.length * 2);
+        }
+        slots[freeSlotCounts[sizeClass]++] = address;
+    }
+
+    private int recordBytes(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        return HEADER_BYTES + slab.getShort(offset + NAME_LENGTH) + slab.getShort(offset + EMAIL_LENGTH);
+    }
+
+    private static int recordBytes(byte[] name, byte[] email) {
+        return HEADER_BYTES + name.length + email.length;
+    }
+
+    private ByteBuffer slab(long address) {
+        return slabs.get((int) (address / slabSize));
+    }
+
+    private int offset(long address) {
+        return (int) (address % slabSize);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static byte[] encode(String value, String field) {
+        if (value == null) {
+            throw new DataIntegrityViolationException("customer %s is required".formatted(field));
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new DataIntegrityViolationException(
+                    "customer %s is longer than %s bytes".formatted(field, MAX_STRING_BYTES));
+        }
+        return bytes;
+    }
+
+    private static long hash(byte[] bytes) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : bytes) {
+            h = (h ^ b) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
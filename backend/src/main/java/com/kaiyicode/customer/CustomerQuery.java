@@ -0,0 +1,58 @@
+package com.kaiyicode.customer;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+public record CustomerQuery(
+        Gender gender,
+        Integer minAge,
+        Integer maxAge,
+        SortField sortBy,
+        boolean descending,
+        Customer after,
+        int limit
+) {
+    public enum SortField {
+        ID, NAME, AGE
+    }
+
+    public CustomerQuery {
+        if (sortBy == null) {
+            throw new IllegalArgumentException("sort field is required");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        // keyset position: the last row of the previous page, id plus the sort value
+        if (after != null && (after.getId() == null
+                || sortBy == SortField.NAME && after.getName() == null
+                || sortBy == SortField.AGE && after.getAge() == null)) {
+            throw new IllegalArgumentException("cursor must carry the id and the %s of the last customer"
+                    .formatted(sortBy.name().toLowerCase()));
+        }
+    }
+
+    // id is always the tie breaker, so every order is total and a keyset never skips or repeats rows
+    public Comparator<Customer> order() {
+        Comparator<Customer> order = switch (sortBy) {
+            case ID -> Comparator.comparing(Customer::getId);
+            case NAME -> Comparator.comparing(Customer::getName).thenComparing(Customer::getId);
+            case AGE -> Comparator.comparing(Customer::getAge).thenComparing(Customer::getId);
+        };
+        return descending ? order.reversed() : order;
+    }
+
+    // for backends without secondary indexes: a full scan, names compare by code point
+    public List<Customer> applyTo(Collection<Customer> customers) {
+        Comparator<Customer> order = order();
+        return customers.stream()
+                .filter(customer -> (gender == null || gender == customer.getGender())
+                        && (minAge == null || customer.getAge() >= minAge)
+                        && (maxAge == null || customer.getAge() <= maxAge)
+                        && (after == null || order.compare(customer, after) > 0))
+                .sorted(order)
+                .limit(limit)
+                .toList();
+    }
+}
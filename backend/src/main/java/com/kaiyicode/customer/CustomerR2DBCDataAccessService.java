@@ -0,0 +1,228 @@
+package com.kaiyicode.customer;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Repository("r2dbc")
+@ConditionalOnProperty(name = "customer.reactive.enabled", havingValue = "true")
+public class CustomerR2DBCDataAccessService implements CustomerReactiveDAO, AutoCloseable {
+    private static final String JDBC_PREFIX = "jdbc:postgresql:";
+
+    // a pool of its own: R2DBC auto-configuration is excluded so that the JPA
+    // transaction manager stays the only one, and no servlet code can pick it up
+    private final ConnectionPool pool;
+    private final DatabaseClient databaseClient;
+    private final int exportFetchSize;
+
+    public CustomerR2DBCDataAccessService(@Value("${spring.datasource.url}") String url,
+                                          @Value("${spring.datasource.username}") String username,
+                                          @Value("${spring.datasource.password}") String password,
+                                          @Value("${customer.reactive.pool-size:10}") int poolSize,
+                                          @Value("${customer.reactive.acquire-timeout:3s}") Duration acquireTimeout,
+                                          @Value("${customer.export.fetch-size:1000}") int exportFetchSize) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(toR2dbcUrl(url))
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name("customer-reactive")
+                .initialSize(0)
+                .maxSize(poolSize)
+                .maxAcquireTime(acquireTimeout)
+                .build());
+        this.databaseClient = DatabaseClient.create(pool);
+        this.exportFetchSize = exportFetchSize;
+    }
+
+    // the same database as the JDBC pool; driver options in the query string are pgjdbc's
+    static String toR2dbcUrl(String jdbcUrl) {
+        if (!jdbcUrl.startsWith(JDBC_PREFIX)) {
+            throw new IllegalArgumentException("not a PostgreSQL JDBC url [%s]".formatted(jdbcUrl));
+        }
+        int query = jdbcUrl.indexOf('?');
+        return "r2dbc:postgresql:" + jdbcUrl.substring(JDBC_PREFIX.length(), query < 0 ? jdbcUrl.length() : query);
+    }
+
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                ORDER BY id
+                """;
+        // a fetch size makes the driver read the portal in batches as the
+        // subscriber requests rows, so a slow client holds back the query
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(exportFetchSize))
+                .map(CustomerR2DBCDataAccessService::toCustomer)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomers(CustomerQuery query) {
+        CustomerJDBCDataAccessService.SelectQuery select = CustomerJDBCDataAccessService.toSelectQuery(query);
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(toBindMarkers(select.sql()));
+        List<Object> args = select.args();
+        for (int i = 0; i < args.size(); i++) {
+            spec = spec.bind(i, args.get(i));
+        }
+        return spec.map(CustomerR2DBCDataAccessService::toCustomer).all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Integer id) {
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                WHERE id = $1
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(CustomerR2DBCDataAccessService::toCustomer)
+                .one();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                WHERE id = ANY($1)
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, ids.toArray(Integer[]::new))
+                .map(CustomerR2DBCDataAccessService::toCustomer)
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> insertCustomer(Customer customer) {
+        var sql = """
+                INSERT INTO customer (name, email, age, gender)
+                VALUES ($1, $2, $3, $4)
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING id, name, email, age, gender, version
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, customer.getName())
+                .bind(1, customer.getEmail())
+                .bind(2, customer.getAge())
+                .bind(3, customer.getGender().name())
+                .map(CustomerR2DBCDataAccessService::toCustomer)
+                .one();
+    }
+
+    @Override
+    public Mono<Customer> deleteCustomerById(Integer id) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = $1
+                RETURNING id, name, email, age, gender, version
+                """;
+        return databaseClient.sql(sql)
+                .bind(0, id)
+                .map(CustomerR2DBCDataAccessService::toCustomer)
+                .one();
+    }
+
+    @Override
+    public Mono<CustomerUpdateResult> updateCustomer(Customer update) {
+        List<String> assignments = new ArrayList<>();
+        List<String> changes = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        if (update.getName() != null) {
+            assignments.add("name = ?");
+            changes.add("customer.name IS DISTINCT FROM ?");
+            values.add(update.getName());
+        }
+        if (update.getEmail() != null) {
+            assignments.add("email = ?");
+            changes.add("customer.email IS DISTINCT FROM ?");
+            values.add(update.getEmail());
+        }
+        if (update.getAge() != null) {
+            assignments.add("age = ?");
+            changes.add("customer.age IS DISTINCT FROM ?");
+            values.add(update.getAge());
+        }
+        if (assignments.isEmpty()) {
+            return Mono.empty();
+        }
+
+        // the same single statement as the JDBC backend, the age it replaces included
+        var sql = """
+                UPDATE customer
+                SET %s, version = customer.version + 1
+                FROM (SELECT id, age FROM customer WHERE id = ? FOR UPDATE) previous
+                WHERE customer.id = previous.id%s
+                AND (%s)
+                RETURNING customer.id, customer.name, customer.email, customer.age, customer.gender,
+                          customer.version, previous.age AS previous_age
+                """.formatted(
+                String.join(", ", assignments),
+                update.getVersion() != null ? " AND customer.version = ?" : "",
+                String.join(" OR ", changes));
+
+        List<Object> args = new ArrayList<>(values);
+        args.add(update.getId());
+        if (update.getVersion() != null) {
+            args.add(update.getVersion());
+        }
+        args.addAll(values);
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(toBindMarkers(sql));
+        for (int i = 0; i < args.size(); i++) {
+            spec = spec.bind(i, args.get(i));
+        }
+        return spec.map(row -> new CustomerUpdateResult(toCustomer(row), row.get("previous_age", Integer.class)))
+                .one();
+    }
+
+    @Override
+    public void close() {
+        pool.dispose();
+    }
+
+    // statements built with JDBC placeholders; none of them has a ? inside a literal
+    static String toBindMarkers(String sql) {
+        StringBuilder converted = new StringBuilder(sql.length() + 16);
+        int marker = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                converted.append('$').append(++marker);
+            } else {
+                converted.append(c);
+            }
+        }
+        return converted.toString();
+    }
+
+    private static Customer toCustomer(Readable row) {
+        return new Customer(
+                row.get("id", Integer.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class),
+                Gender.valueOf(row.get("gender", String.class)),
+                row.get("version", Long.class));
+    }
+}
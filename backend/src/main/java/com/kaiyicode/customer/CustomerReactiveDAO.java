@@ -0,0 +1,19 @@
+package com.kaiyicode.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface CustomerReactiveDAO {
+    Flux<Customer> selectAllCustomers();
+    Flux<Customer> selectCustomers(CustomerQuery query);
+    Mono<Customer> selectCustomerById(Integer id);
+    Flux<Customer> selectCustomersByIds(Collection<Integer> ids);
+    // empty when the email address is taken
+    Mono<Customer> insertCustomer(Customer customer);
+    // the deleted row, empty when there was none
+    Mono<Customer> deleteCustomerById(Integer id);
+    // empty when nothing changed, the row is gone or its version moved on
+    Mono<CustomerUpdateResult> updateCustomer(Customer update);
+}
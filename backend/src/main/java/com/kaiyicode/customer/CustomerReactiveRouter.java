@@ -0,0 +1,197 @@
+package com.kaiyicode.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// mirrors CustomerController on the reactive server; search, suggestions and the
+// bulk registration stay on the servlet API
+@Component
+@ConditionalOnProperty(name = "customer.reactive.enabled", havingValue = "true")
+public class CustomerReactiveRouter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerReactiveRouter.class);
+    private static final String CUSTOMER_PATH = "/api/v1/customer";
+
+    private final CustomerReactiveService customerService;
+    private final CustomerChangeTracker changeTracker;
+
+    public CustomerReactiveRouter(CustomerReactiveService customerService,
+                                  CustomerChangeTracker changeTracker) {
+        this.customerService = customerService;
+        this.changeTracker = changeTracker;
+    }
+
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .GET(CUSTOMER_PATH, this::getCustomers)
+                .GET(CUSTOMER_PATH + "/page", this::getCustomerPage)
+                .GET(CUSTOMER_PATH + "/stats", request -> ServerResponse.ok().bodyValue(customerService.getCustomerStats()))
+                .GET(CUSTOMER_PATH + "/batch", this::getCustomersByIds)
+                .GET(CUSTOMER_PATH + "/export", this::exportCustomers)
+                .GET(CUSTOMER_PATH + "/{customerId}", this::getCustomer)
+                .POST(CUSTOMER_PATH, this::registerCustomer)
+                .DELETE(CUSTOMER_PATH + "/{customerId}", this::deleteCustomer)
+                .PUT(CUSTOMER_PATH + "/{customerId}", this::updateCustomer)
+                // deferred so that parameters failing to parse before a Mono exists end up here too
+                .filter((request, next) -> Mono.defer(() -> next.handle(request))
+                        .onErrorResume(e -> error(e, request)))
+                .build();
+    }
+
+    private Mono<ServerResponse> getCustomers(ServerRequest request) {
+        // the tag is read before the data: a racing write costs a refetch, never a stale 304;
+        // it is read over JDBC, which must stay off the event loop
+        return Mono.fromCallable(changeTracker::customersETag)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(eTag -> request.checkNotModified(eTag)
+                        // rows are encoded into the JSON array as the database hands them over
+                        .switchIfEmpty(Mono.defer(() -> ServerResponse.ok()
+                                .cacheControl(CacheControl.noCache())
+                                .eTag(eTag)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .body(customerService.getAllCustomers(), Customer.class))));
+    }
+
+    private Mono<ServerResponse> getCustomerPage(ServerRequest request) {
+        return customerService.getCustomers(
+                        request.queryParam("cursor").orElse(null),
+                        intParam(request, "size", 50),
+                        request.queryParam("gender").map(CustomerReactiveRouter::gender).orElse(null),
+                        optionalIntParam(request, "minAge"),
+                        optionalIntParam(request, "maxAge"),
+                        request.queryParam("sort").orElse("id"),
+                        request.queryParam("direction").orElse("asc"))
+                .flatMap(page -> ServerResponse.ok().bodyValue(page));
+    }
+
+    private Mono<ServerResponse> getCustomersByIds(ServerRequest request) {
+        List<Integer> ids = request.queryParams().getOrDefault("ids", List.of()).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(id -> parseInt("ids", id))
+                .toList();
+        return customerService.getCustomersByIds(ids)
+                .flatMap(response -> ServerResponse.ok().bodyValue(response));
+    }
+
+    // newline-delimited documents are flushed one by one, Netty only asks the
+    // database for more rows once the client has taken what was sent
+    private Mono<ServerResponse> exportCustomers(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(customerService.getAllCustomers(), Customer.class);
+    }
+
+    private Mono<ServerResponse> getCustomer(ServerRequest request) {
+        int customerId = customerId(request);
+        // the tag is read before the row and without it, see CustomerController.getCustomer
+        return Mono.fromCallable(() -> changeTracker.customerTag(customerId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(tag -> tag.map(customerTag -> request.checkNotModified(customerTag.eTag()))
+                        .orElseGet(Mono::empty)
+                        .switchIfEmpty(Mono.defer(() -> customerService.getCustomer(customerId)
+                                .flatMap(customer -> {
+                                    ServerResponse.BodyBuilder response = ServerResponse.ok()
+                                            .cacheControl(CacheControl.noCache());
+                                    tag.filter(customerTag -> customerTag.describes(customer))
+                                            .ifPresent(customerTag -> response.eTag(customerTag.eTag()));
+                                    return response.bodyValue(customer);
+                                }))));
+    }
+
+    private Mono<ServerResponse> registerCustomer(ServerRequest request) {
+        return request.bodyToMono(CustomerRegistrationRequest.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("customer registration request is required")))
+                .flatMap(customerService::addCustomer)
+                .then(ServerResponse.ok().build());
+    }
+
+    private Mono<ServerResponse> deleteCustomer(ServerRequest request) {
+        return customerService.deleteCustomerById(customerId(request))
+                .then(ServerResponse.ok().build());
+    }
+
+    private Mono<ServerResponse> updateCustomer(ServerRequest request) {
+        int customerId = customerId(request);
+        return request.bodyToMono(CustomerUpdateRequest.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("customer update request is required")))
+                .flatMap(update -> customerService.updateCustomer(customerId, update))
+                .flatMap(customer -> ServerResponse.ok().bodyValue(customer));
+    }
+
+    // the same body as Spring Boot's servlet error page
+    private Mono<ServerResponse> error(Throwable e, ServerRequest request) {
+        HttpStatusCode status = statusOf(e);
+        if (status.is5xxServerError()) {
+            LOGGER.error("{} {} failed", request.method(), request.path(), e);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", Instant.now());
+        body.put("status", status.value());
+        body.put("error", HttpStatus.valueOf(status.value()).getReasonPhrase());
+        body.put("message", e instanceof ResponseStatusException responseStatus
+                ? responseStatus.getReason()
+                : e.getMessage());
+        body.put("path", request.path());
+        return ServerResponse.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body);
+    }
+
+    static HttpStatusCode statusOf(Throwable e) {
+        if (e instanceof ResponseStatusException responseStatus) {
+            return responseStatus.getStatusCode();
+        }
+        ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class);
+        return responseStatus != null ? responseStatus.code() : HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    private static int customerId(ServerRequest request) {
+        return parseInt("customerId", request.pathVariable("customerId"));
+    }
+
+    private static int intParam(ServerRequest request, String name, int defaultValue) {
+        return request.queryParam(name).map(value -> parseInt(name, value)).orElse(defaultValue);
+    }
+
+    private static Integer optionalIntParam(ServerRequest request, String name) {
+        return request.queryParam(name).map(value -> parseInt(name, value)).orElse(null);
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("%s must be a number, not [%s]".formatted(name, value));
+        }
+    }
+
+    private static Gender gender(String value) {
+        try {
+            return Gender.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new ServerWebInputException("gender must be one of %s, not [%s]"
+                    .formatted(Arrays.toString(Gender.values()), value));
+        }
+    }
+}
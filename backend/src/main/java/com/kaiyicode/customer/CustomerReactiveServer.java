@@ -0,0 +1,113 @@
+package com.kaiyicode.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.List;
+
+// the servlet container keeps serving the main port; this Netty server runs next to
+// it on its own port with a handful of event loop threads, however many clients wait
+@Component
+@ConditionalOnProperty(name = "customer.reactive.enabled", havingValue = "true")
+public class CustomerReactiveServer implements SmartLifecycle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerReactiveServer.class);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final CustomerReactiveRouter router;
+    private final ObjectMapper objectMapper;
+    private final int port;
+    private final int eventLoopThreads;
+    private final List<String> allowedOrigins;
+    private final List<String> allowedMethods;
+
+    private volatile DisposableServer server;
+    private LoopResources loops;
+
+    public CustomerReactiveServer(CustomerReactiveRouter router,
+                                  ObjectMapper objectMapper,
+                                  @Value("${customer.reactive.port:8081}") int port,
+                                  @Value("${customer.reactive.event-loop-threads:0}") int eventLoopThreads,
+                                  @Value("#{'${cors.allowed-origins}'.split(',')}") List<String> allowedOrigins,
+                                  @Value("#{'${cors.allowed-methods}'.split(',')}") List<String> allowedMethods) {
+        this.router = router;
+        this.objectMapper = objectMapper;
+        this.port = port;
+        // 0 means one per core, Netty's own default
+        this.eventLoopThreads = eventLoopThreads > 0
+                ? eventLoopThreads
+                : Runtime.getRuntime().availableProcessors();
+        this.allowedOrigins = allowedOrigins;
+        this.allowedMethods = allowedMethods;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (server != null) {
+            return;
+        }
+        CorsConfiguration cors = new CorsConfiguration();
+        allowedOrigins.forEach(cors::addAllowedOrigin);
+        allowedMethods.forEach(cors::addAllowedMethod);
+        UrlBasedCorsConfigurationSource corsSource = new UrlBasedCorsConfigurationSource();
+        corsSource.registerCorsConfiguration("/api/**", cors);
+
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    // the application's ObjectMapper, so both APIs render customers alike
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .webFilter(new CorsWebFilter(corsSource))
+                .build();
+
+        loops = LoopResources.create("customer-reactive", eventLoopThreads, true);
+        server = HttpServer.create()
+                .port(port)
+                .runOn(loops)
+                .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(router.routes(), strategies)))
+                .bindNow();
+        LOGGER.info("reactive customer API listening on port {} with {} event loop threads",
+                server.port(), eventLoopThreads);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.disposeNow(SHUTDOWN_TIMEOUT);
+        loops.disposeLater().block(SHUTDOWN_TIMEOUT);
+        server = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    // the bound port, customer.reactive.port may be 0
+    public int getPort() {
+        DisposableServer current = server;
+        if (current == null) {
+            throw new IllegalStateException("reactive customer server is not running");
+        }
+        return current.port();
+    }
+}
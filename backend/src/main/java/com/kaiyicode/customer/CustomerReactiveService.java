@@ -0,0 +1,136 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.exception.DuplicateResourceException;
+import com.kaiyicode.exception.NoDataChangeException;
+import com.kaiyicode.exception.ResourceNotFoundException;
+import com.kaiyicode.exception.StaleResourceException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// the non-blocking counterpart of CustomerService; the suggestions and statistics are
+// updated the same way, the servlet caches learn about these writes from the
+// customer_changed notifications like they do for writes by other instances
+@Service
+@ConditionalOnProperty(name = "customer.reactive.enabled", havingValue = "true")
+public class CustomerReactiveService {
+
+    private final CustomerReactiveDAO customerDAO;
+    private final CustomerSuggestionIndex suggestionIndex;
+    private final CustomerStatistics statistics;
+
+    public CustomerReactiveService(CustomerReactiveDAO customerDAO,
+                                   CustomerSuggestionIndex suggestionIndex,
+                                   CustomerStatistics statistics) {
+        this.customerDAO = customerDAO;
+        this.suggestionIndex = suggestionIndex;
+        this.statistics = statistics;
+    }
+
+    public Flux<Customer> getAllCustomers() {
+        return customerDAO.selectAllCustomers();
+    }
+
+    public Mono<CustomerPage> getCustomers(String cursor, int size,
+                                           Gender gender, Integer minAge, Integer maxAge,
+                                           String sort, String direction) {
+        return Mono.fromCallable(() -> CustomerService.pageQuery(
+                        cursor, size, gender, minAge, maxAge,
+                        CustomerService.parseSortField(sort),
+                        CustomerService.parseDescending(direction)))
+                .flatMap(query -> customerDAO.selectCustomers(query)
+                        .collectList()
+                        .map(customers -> CustomerService.toPage(customers, size, query.sortBy())));
+    }
+
+    public CustomerStats getCustomerStats() {
+        return statistics.snapshot();
+    }
+
+    public Mono<Customer> getCustomer(int id) {
+        return customerDAO.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> customerNotFound(id)));
+    }
+
+    public Mono<CustomerBatchResponse> getCustomersByIds(List<Integer> ids) {
+        return Mono.fromCallable(() -> CustomerService.batchIds(ids))
+                .flatMap(requestedIds -> customerDAO.selectCustomersByIds(requestedIds)
+                        .collectList()
+                        .map(found -> CustomerService.toBatchResponse(requestedIds, found)));
+    }
+
+    public Mono<Void> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = new Customer(
+                customerRegistrationRequest.name(),
+                customerRegistrationRequest.email(),
+                customerRegistrationRequest.age(),
+                customerRegistrationRequest.gender());
+
+        return customerDAO.insertCustomer(customer)
+                .switchIfEmpty(Mono.error(() -> new DuplicateResourceException("email address already exists")))
+                .doOnNext(inserted -> {
+                    suggestionIndex.customerSaved(inserted);
+                    statistics.customerAdded(inserted);
+                })
+                .then();
+    }
+
+    public Mono<Void> deleteCustomerById(int id) {
+        // the deleted row comes back with the delete, no read first
+        return customerDAO.deleteCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> customerNotFound(id)))
+                .doOnNext(deleted -> {
+                    suggestionIndex.customerDeleted(id);
+                    statistics.customerDeleted(deleted);
+                })
+                .then();
+    }
+
+    public Mono<Customer> updateCustomer(int customerId, CustomerUpdateRequest customerUpdateRequest) {
+        if (customerUpdateRequest.name() == null &&
+                customerUpdateRequest.email() == null &&
+                customerUpdateRequest.age() == null) {
+            return Mono.error(new NoDataChangeException("no data changes found"));
+        }
+
+        Customer update = new Customer();
+        update.setId(customerId);
+        update.setName(customerUpdateRequest.name());
+        update.setEmail(customerUpdateRequest.email());
+        update.setAge(customerUpdateRequest.age());
+        update.setVersion(customerUpdateRequest.version());
+
+        // the age the update replaced comes back with it, no read first
+        return customerDAO.updateCustomer(update)
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new DuplicateResourceException("email address already exists"))
+                .doOnNext(result -> {
+                    Customer customer = result.customer();
+                    suggestionIndex.customerSaved(customer);
+                    // only an age change moves a customer between histogram buckets
+                    if (result.previousAge() != customer.getAge()) {
+                        statistics.customerAgeChanged(customer.getGender(), result.previousAge(), customer.getAge());
+                    }
+                })
+                .map(CustomerUpdateResult::customer)
+                // only a failed update pays for a second query to explain why
+                .switchIfEmpty(Mono.defer(() -> customerDAO.selectCustomerById(customerId)
+                        .switchIfEmpty(Mono.error(() -> customerNotFound(customerId)))
+                        .flatMap(current -> {
+                            if (customerUpdateRequest.version() != null &&
+                                    !customerUpdateRequest.version().equals(current.getVersion())) {
+                                return Mono.error(new StaleResourceException(
+                                        "customer with [%s] was modified concurrently".formatted(customerId)));
+                            }
+                            return Mono.error(new NoDataChangeException("no data changes found"));
+                        })));
+    }
+
+    private static ResourceNotFoundException customerNotFound(int id) {
+        return new ResourceNotFoundException("customer with [%s] not found".formatted(id));
+    }
+}
@@ -0,0 +1,272 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.exception.DuplicateResourceException;
+import com.kaiyicode.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Registrations are acknowledged once queued and written behind by a single thread:
+// whatever piled up since the last commit goes into the next one, so a burst of
+// signups costs a few batched transactions instead of one connection per request.
+// Reported down on /actuator/health once the writer has died, admission stops with it.
+@Component
+@ConditionalOnProperty(name = "customer.registration.write-behind.enabled")
+public class CustomerRegistrationQueue implements SmartLifecycle, HealthIndicator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerRegistrationQueue.class);
+    static final String WRITER_NAME = "customer-registration-writer";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5_000;
+
+    private final CustomerDAO customerDAO;
+    private final TransactionTemplate transactionTemplate;
+    private final CustomerSuggestionIndex suggestionIndex;
+    private final CustomerStatistics statistics;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration drainTimeout;
+    private final DistributionSummary batchSizes;
+    private final Timer commitTimer;
+    private final Counter overloaded;
+    private final Counter conflicts;
+
+    private final Queue<Customer> queue = new ConcurrentLinkedQueue<>();
+    // counts registrations from admission until they are taken off the queue, which
+    // is what bounds the queue; reserved before enqueueing so the writer cannot miss one
+    private final AtomicInteger depth = new AtomicInteger();
+    // emails queued or in flight, released once their batch is committed
+    private final Set<String> pendingEmails = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    // set when the writer died of something it could not retry, nothing drains the queue then
+    private volatile Throwable writerFailure;
+    private Thread writer;
+
+    public CustomerRegistrationQueue(@Qualifier("cached") CustomerDAO customerDAO,
+                                     PlatformTransactionManager transactionManager,
+                                     CustomerSuggestionIndex suggestionIndex,
+                                     CustomerStatistics statistics,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${customer.registration.write-behind.capacity:10000}") int capacity,
+                                     @Value("${customer.registration.write-behind.batch-size:500}") int batchSize,
+                                     @Value("${customer.registration.write-behind.drain-timeout:30s}") Duration drainTimeout) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("write-behind capacity and batch size must be positive");
+        }
+        this.customerDAO = customerDAO;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.suggestionIndex = suggestionIndex;
+        this.statistics = statistics;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.drainTimeout = drainTimeout;
+
+        Gauge.builder("customer.registration.queue.depth", depth, AtomicInteger::get)
+                .baseUnit("customers")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("customer.registration.batch")
+                .baseUnit("customers")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("customer.registration.commit")
+                .register(meterRegistry);
+        this.overloaded = Counter.builder("customer.registration.overloaded")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("customer.registration.conflicts")
+                .register(meterRegistry);
+    }
+
+    public void submit(Customer customer) {
+        if (writerFailure != null) {
+            overloaded.increment();
+            throw new ServiceOverloadedException("customer registrations are not being written, try again later");
+        }
+        String email = customer.getEmail();
+        if (!pendingEmails.add(email)) {
+            throw new DuplicateResourceException("email address already exists");
+        }
+        // checked after reserving: a pending email is only released once its row is committed
+        if (customerDAO.existsCustomerWithEmail(email)) {
+            pendingEmails.remove(email);
+            throw new DuplicateResourceException("email address already exists");
+        }
+        if (depth.incrementAndGet() > capacity || !running) {
+            depth.decrementAndGet();
+            pendingEmails.remove(email);
+            overloaded.increment();
+            throw new ServiceOverloadedException("too many registrations in flight, try again later");
+        }
+        queue.offer(customer);
+        LockSupport.unpark(writer);
+    }
+
+    public int depth() {
+        return depth.get();
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = writerFailure == null ? Health.up() : Health.down().withException(writerFailure);
+        return health.withDetail("depth", depth.get()).build();
+    }
+
+    // stops after the web server, which finishes its requests first, and before the datasource closes
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        writer = new Thread(this::run, WRITER_NAME);
+        writer.setDaemon(true);
+        writer.setUncaughtExceptionHandler((thread, e) -> {
+            writerFailure = e;
+            LOGGER.error("customer registration writer died, {} queued registrations are lost", depth.get(), e);
+        });
+        // published by the volatile write, submit() reads running before it unparks the writer
+        running = true;
+        writer.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(drainTimeout.toMillis());
+            if (writer.isAlive()) {
+                writer.interrupt();
+                writer.join(MAX_RETRY_BACKOFF_MILLIS);
+                LOGGER.error("gave up on {} queued customer registrations after {}", depth.get(), drainTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        List<Customer> batch = new ArrayList<>(batchSize);
+        // once stopped, nothing new is admitted: an empty queue is a drained one
+        while (running || depth.get() > 0) {
+            Customer customer;
+            while (batch.size() < batchSize && (customer = queue.poll()) != null) {
+                depth.decrementAndGet();
+                batch.add(customer);
+            }
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            if (!write(batch)) {
+                break;
+            }
+            batch.clear();
+        }
+    }
+
+    // retries until the batch is committed, returns false when interrupted meanwhile
+    private boolean write(List<Customer> batch) {
+        int[] inserted;
+        long backoffMillis = 100;
+        while (true) {
+            try {
+                inserted = commitTimer.record(() -> insert(batch));
+                break;
+            } catch (RuntimeException e) {
+                // not only DataAccessException: a database that is down fails to begin the
+                // transaction with a TransactionException
+                LOGGER.warn("could not write {} customer registrations, retrying in {} ms",
+                        batch.size(), backoffMillis, e);
+            }
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                return false;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_RETRY_BACKOFF_MILLIS);
+        }
+        batchSizes.record(batch.size());
+        written(batch, inserted);
+        return true;
+    }
+
+    private int[] insert(List<Customer> batch) {
+        try {
+            return transactionTemplate.execute(status -> customerDAO.insertCustomers(batch));
+        } catch (DataIntegrityViolationException e) {
+            // one bad row must not hold back the others, find it row by row
+            int[] inserted = new int[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    inserted[i] = customerDAO.insertCustomers(List.of(batch.get(i)))[0];
+                } catch (DataIntegrityViolationException rowViolation) {
+                    inserted[i] = Statement.EXECUTE_FAILED;
+                    LOGGER.error("dropped customer registration for {}", batch.get(i).getEmail(), rowViolation);
+                }
+            }
+            return inserted;
+        }
+    }
+
+    // the batch is committed and must not be written again, whatever fails in here
+    private void written(List<Customer> batch, int[] inserted) {
+        List<Customer> added = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Customer customer = batch.get(i);
+            if (inserted[i] > 0) {
+                added.add(customer);
+            } else if (inserted[i] == 0) {
+                // taken by a synchronous path between admission and commit
+                conflicts.increment();
+                LOGGER.warn("queued customer registration for {} lost to a concurrent one", customer.getEmail());
+            }
+            pendingEmails.remove(customer.getEmail());
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        try {
+            added.forEach(statistics::customerAdded);
+            suggestionIndex.customersAdded();
+        } catch (RuntimeException e) {
+            LOGGER.error("wrote {} customer registrations but could not publish them", added.size(), e);
+        }
+    }
+}
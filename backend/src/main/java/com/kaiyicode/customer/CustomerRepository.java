@@ -1,8 +1,39 @@
 package com.kaiyicode.customer;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 public interface CustomerRepository
-        extends JpaRepository<Customer, Integer> {
+        extends JpaRepository<Customer, Integer>, JpaSpecificationExecutor<Customer> {
     boolean existsCustomerByEmail(String email);
+
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    Set<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    // native for RETURNING: the deleted row comes back from the same statement
+    @Transactional
+    @Query(value = """
+            DELETE FROM customer
+            WHERE id = :id
+            RETURNING id, name, email, age, gender, version
+            """, nativeQuery = true)
+    Optional<Customer> deleteCustomerById(@Param("id") Integer id);
+
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Integer id, Limit limit);
+
+    @Query("""
+            SELECT new com.kaiyicode.customer.CustomerCount(c.gender, c.age, count(c))
+            FROM Customer c
+            GROUP BY c.gender, c.age
+            """)
+    List<CustomerCount> findCountsByGenderAndAge();
 }
@@ -16,6 +16,7 @@ public class CustomerRowMapper implements RowMapper<Customer> {
                 rs.getString("name"),
                 rs.getString("email"),
                 rs.getInt("age"),
-                Gender.valueOf(rs.getString("gender")));
+                Gender.valueOf(rs.getString("gender")),
+                rs.getLong("version"));
     }
 }
@@ -0,0 +1,7 @@
+package com.kaiyicode.customer;
+
+import java.util.List;
+
+public interface CustomerSearchDAO {
+    List<Customer> searchCustomers(String query, int offset, int limit);
+}
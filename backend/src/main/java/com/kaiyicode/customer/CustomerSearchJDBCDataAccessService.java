@@ -0,0 +1,50 @@
+package com.kaiyicode.customer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public class CustomerSearchJDBCDataAccessService implements CustomerSearchDAO {
+    // substring matches rank above fuzzy ones; both predicates are served by the
+    // gin_trgm_ops indexes on name and email from V6
+    static final String SEARCH_SQL = """
+            SELECT id, name, email, age, gender, version
+            FROM customer
+            WHERE name ILIKE ? OR email ILIKE ?
+               OR name %> ? OR email %> ?
+            ORDER BY (name ILIKE ? OR email ILIKE ?) DESC,
+                     greatest(word_similarity(?, name), word_similarity(?, email)) DESC,
+                     id
+            LIMIT ? OFFSET ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RowMapper<Customer> customerRowMapper;
+
+    public CustomerSearchJDBCDataAccessService(JdbcTemplate jdbcTemplate,
+                                               RowMapper<Customer> customerRowMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerRowMapper = customerRowMapper;
+    }
+
+    @Override
+    public List<Customer> searchCustomers(String query, int offset, int limit) {
+        String pattern = "%" + escapeLike(query) + "%";
+        return jdbcTemplate.query(SEARCH_SQL, customerRowMapper,
+                pattern, pattern,
+                query, query,
+                pattern, pattern,
+                query, query,
+                limit, offset);
+    }
+
+    // backslash is the default LIKE escape character in Postgres
+    private static String escapeLike(String query) {
+        return query.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
@@ -0,0 +1,10 @@
+package com.kaiyicode.customer;
+
+import java.util.List;
+
+public record CustomerSearchPage(
+        List<Customer> customers,
+        int page,
+        boolean hasNext
+) {
+}
@@ -0,0 +1,69 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.exception.RequestValidationException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class CustomerSearchService {
+    // trigram indexes cannot narrow down shorter terms
+    private static final int MIN_QUERY_LENGTH = 3;
+    private static final int MAX_QUERY_LENGTH = 255;
+    private static final int MAX_PAGE_SIZE = 100;
+    // ranked results are paged by offset, keep deep pages from scanning the whole match set
+    private static final int MAX_RESULT_WINDOW = 1000;
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private final CustomerSearchDAO customerSearchDAO;
+    private final CustomerSuggestionIndex suggestionIndex;
+
+    public CustomerSearchService(CustomerSearchDAO customerSearchDAO,
+                                 CustomerSuggestionIndex suggestionIndex) {
+        this.customerSearchDAO = customerSearchDAO;
+        this.suggestionIndex = suggestionIndex;
+    }
+
+    public CustomerSearchPage searchCustomers(String query, int page, int size) {
+        String term = validQuery(query);
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new RequestValidationException(
+                    "page size must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+        if (page < 0 || (long) (page + 1) * size > MAX_RESULT_WINDOW) {
+            throw new RequestValidationException(
+                    "only the first %s search results can be paged through".formatted(MAX_RESULT_WINDOW));
+        }
+
+        List<Customer> customers = customerSearchDAO.searchCustomers(term, page * size, size + 1);
+        if (customers.size() <= size) {
+            return new CustomerSearchPage(customers, page, false);
+        }
+        return new CustomerSearchPage(customers.subList(0, size), page, true);
+    }
+
+    public List<CustomerSuggestion> suggestCustomers(String query, int limit) {
+        String term = validQuery(query);
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new RequestValidationException(
+                    "suggestion limit must be between 1 and %s".formatted(MAX_SUGGESTIONS));
+        }
+        if (suggestionIndex.isReady()) {
+            return suggestionIndex.suggest(term, limit);
+        }
+        // while the index is still building after startup
+        return customerSearchDAO.searchCustomers(term, 0, limit)
+                .stream()
+                .map(c -> new CustomerSuggestion(c.getId(), c.getName(), c.getEmail()))
+                .toList();
+    }
+
+    private static String validQuery(String query) {
+        String term = query == null ? "" : query.strip();
+        if (term.length() < MIN_QUERY_LENGTH || term.length() > MAX_QUERY_LENGTH) {
+            throw new RequestValidationException(
+                    "search query must be between %s and %s characters".formatted(MIN_QUERY_LENGTH, MAX_QUERY_LENGTH));
+        }
+        return term;
+    }
+}
@@ -2,84 +2,415 @@ package com.kaiyicode.customer;
 
 import com.kaiyicode.exception.DuplicateResourceException;
 import com.kaiyicode.exception.NoDataChangeException;
+import com.kaiyicode.exception.RequestValidationException;
 import com.kaiyicode.exception.ResourceNotFoundException;
+import com.kaiyicode.exception.StaleResourceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CustomerService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerService.class);
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_BATCH_IDS = 1000;
+
     private final CustomerDAO customerDAO;
+    private final CustomerSuggestionIndex suggestionIndex;
+    private final CustomerStatistics statistics;
+    private final int bulkChunkSize;
+    // null unless customer.registration.write-behind.enabled
+    private final CustomerRegistrationQueue registrationQueue;
 
-    public CustomerService(@Qualifier("jdbc") CustomerDAO customerDAO) {
+    public CustomerService(@Qualifier("cached") CustomerDAO customerDAO,
+                           CustomerSuggestionIndex suggestionIndex,
+                           CustomerStatistics statistics,
+                           @Value("${customer.bulk.chunk-size:500}") int bulkChunkSize,
+                           Optional<CustomerRegistrationQueue> registrationQueue) {
         this.customerDAO = customerDAO;
+        this.suggestionIndex = suggestionIndex;
+        this.statistics = statistics;
+        this.bulkChunkSize = bulkChunkSize;
+        this.registrationQueue = registrationQueue.orElse(null);
     }
 
     public List<Customer> getAllCustomers() {
         return customerDAO.selectAllCustomers();
     }
 
+    public CustomerPage getCustomers(String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new RequestValidationException(
+                    "page size must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+
+        int afterId = cursor == null || cursor.isBlank() ? 0 : decodeCursor(cursor);
+        List<Customer> customers = customerDAO.selectCustomersAfterId(afterId, size + 1);
+        if (customers.size() <= size) {
+            return new CustomerPage(customers, null);
+        }
+
+        List<Customer> page = customers.subList(0, size);
+        return new CustomerPage(page, encodeCursor(page.get(size - 1).getId()));
+    }
+
+    public CustomerPage getCustomers(String cursor, int size,
+                                     Gender gender, Integer minAge, Integer maxAge,
+                                     String sort, String direction) {
+        CustomerQuery.SortField sortBy = parseSortField(sort);
+        boolean descending = parseDescending(direction);
+        if (gender == null && minAge == null && maxAge == null
+                && sortBy == CustomerQuery.SortField.ID && !descending) {
+            return getCustomers(cursor, size);
+        }
+        CustomerQuery query = pageQuery(cursor, size, gender, minAge, maxAge, sortBy, descending);
+        return toPage(customerDAO.selectCustomers(query), size, sortBy);
+    }
+
+    // shared with CustomerReactiveService, which pages with the same cursors
+    static CustomerQuery pageQuery(String cursor, int size,
+                                   Gender gender, Integer minAge, Integer maxAge,
+                                   CustomerQuery.SortField sortBy, boolean descending) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new RequestValidationException(
+                    "page size must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+        if (minAge != null && maxAge != null && minAge > maxAge) {
+            throw new RequestValidationException(
+                    "minAge [%s] must not be greater than maxAge [%s]".formatted(minAge, maxAge));
+        }
+
+        Customer after = cursor == null || cursor.isBlank() ? null : decodeCursor(cursor, sortBy);
+        // one extra row tells whether there is a next page
+        return new CustomerQuery(gender, minAge, maxAge, sortBy, descending, after, size + 1);
+    }
+
+    static CustomerPage toPage(List<Customer> customers, int size, CustomerQuery.SortField sortBy) {
+        if (customers.size() <= size) {
+            return new CustomerPage(customers, null);
+        }
+
+        List<Customer> page = customers.subList(0, size);
+        return new CustomerPage(page, encodeCursor(page.get(size - 1), sortBy));
+    }
+
+    public CustomerStats getCustomerStats() {
+        return statistics.snapshot();
+    }
+
+    @Transactional(readOnly = true)
+    public void exportCustomers(Consumer<Customer> consumer) {
+        try (Stream<Customer> customers = customerDAO.streamAllCustomers()) {
+            customers.forEach(consumer);
+        }
+    }
+
     public Customer getCustomer(int id) {
         return customerDAO
                 .selectCustomerById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("customer with [%s] not found".formatted(id)));
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
-        String email = customerRegistrationRequest.email();
-        if (customerDAO.existsCustomerWithEmail(email)) {
-            throw new DuplicateResourceException("email address already exists");
+    public CustomerBatchResponse getCustomersByIds(List<Integer> ids) {
+        Set<Integer> requestedIds = batchIds(ids);
+        return toBatchResponse(requestedIds, customerDAO.selectCustomersByIds(requestedIds));
+    }
+
+    static Set<Integer> batchIds(List<Integer> ids) {
+        Set<Integer> requestedIds = new LinkedHashSet<>(ids);
+        if (requestedIds.size() > MAX_BATCH_IDS) {
+            throw new RequestValidationException(
+                    "at most %s customer ids can be requested at once".formatted(MAX_BATCH_IDS));
+        }
+        return requestedIds;
+    }
+
+    static CustomerBatchResponse toBatchResponse(Set<Integer> requestedIds, Collection<Customer> customersFound) {
+        Map<Integer, Customer> found = customersFound
+                .stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+
+        List<Customer> customers = new ArrayList<>(found.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : requestedIds) {
+            Customer customer = found.get(id);
+            if (customer != null) {
+                customers.add(customer);
+            } else {
+                missingIds.add(id);
+            }
         }
+        return new CustomerBatchResponse(customers, missingIds);
+    }
 
+    // true once the customer is stored, false when it was queued to be written behind
+    public boolean addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
         Customer customer =  new Customer(
                 customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
                 customerRegistrationRequest.age(),
                 customerRegistrationRequest.gender());
 
-        customerDAO.insertCustomer(customer);
+        if (registrationQueue != null) {
+            // a row the database rejects later would fail with its whole batch
+            if (isBlank(customer.getName()) || isBlank(customer.getEmail()) || customer.getGender() == null) {
+                throw new RequestValidationException("name, email and gender are required");
+            }
+            registrationQueue.submit(customer);
+            return false;
+        }
+
+        if (!customerDAO.insertCustomer(customer)) {
+            throw new DuplicateResourceException("email address already exists");
+        }
+        suggestionIndex.customerSaved(customer);
+        statistics.customerAdded(customer);
+        return true;
     }
 
-    public void deleteCustomerById(int id) {
-        if (!customerDAO.existsCustomerWithId(id)) {
-            throw new ResourceNotFoundException("customer with [%s] not found".formatted(id));
+    public CustomerBulkRegistrationResponse addCustomers(
+            Iterator<CustomerRegistrationRequest> registrationRequests) {
+        long start = System.nanoTime();
+        List<CustomerBulkRegistrationResult> results = new ArrayList<>();
+        List<CustomerRegistrationRequest> chunk = new ArrayList<>(bulkChunkSize);
+        int index = 0;
+        while (registrationRequests.hasNext()) {
+            chunk.add(registrationRequests.next());
+            if (chunk.size() == bulkChunkSize) {
+                addCustomerChunk(index, chunk, results);
+                index += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            addCustomerChunk(index, chunk, results);
         }
 
-        customerDAO.deleteCustomerById(id);
+        int created = (int) results.stream()
+                .filter(result -> result.status() == CustomerBulkRegistrationResult.Status.CREATED)
+                .count();
+        if (created > 0) {
+            suggestionIndex.customersAdded();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        LOGGER.info("bulk registration of {} customers took {} ms ({} customers/s)",
+                results.size(), elapsedMillis, results.size() * 1000L / elapsedMillis);
+        return new CustomerBulkRegistrationResponse(created, results.size() - created, results);
     }
 
-    public void updateCustomer(int customerId, CustomerUpdateRequest customerUpdateRequest) {
-        Customer customer = customerDAO
-                .selectCustomerById(customerId)
-                .orElseThrow(() -> new ResourceNotFoundException("customer with [%s] not found".formatted(customerId)));
+    private void addCustomerChunk(int firstIndex,
+                                  List<CustomerRegistrationRequest> chunk,
+                                  List<CustomerBulkRegistrationResult> results) {
+        Set<String> existingEmails = customerDAO.selectExistingEmails(
+                chunk.stream()
+                        .map(CustomerRegistrationRequest::email)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet()));
 
-        boolean changed = false;
-        if (customerUpdateRequest.name() != null &&
-                !customerUpdateRequest.name().equals(customer.getName())) {
-            changed = true;
-            customer.setName(customerUpdateRequest.name());
+        CustomerBulkRegistrationResult[] chunkResults = new CustomerBulkRegistrationResult[chunk.size()];
+        List<Customer> customers = new ArrayList<>(chunk.size());
+        List<Integer> positions = new ArrayList<>(chunk.size());
+        Set<String> seenEmails = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            CustomerRegistrationRequest request = chunk.get(i);
+            int index = firstIndex + i;
+            if (request == null || isBlank(request.name()) || isBlank(request.email())
+                    || request.gender() == null) {
+                chunkResults[i] = new CustomerBulkRegistrationResult(
+                        index, request == null ? null : request.email(),
+                        CustomerBulkRegistrationResult.Status.INVALID,
+                        "name, email and gender are required");
+            } else if (existingEmails.contains(request.email()) || !seenEmails.add(request.email())) {
+                chunkResults[i] = new CustomerBulkRegistrationResult(
+                        index, request.email(),
+                        CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL,
+                        "email address already exists");
+            } else {
+                customers.add(new Customer(
+                        request.name(),
+                        request.email(),
+                        request.age(),
+                        request.gender()));
+                positions.add(i);
+            }
         }
 
-        if (customerUpdateRequest.email() != null &&
-                !customerUpdateRequest.email().equals(customer.getEmail())) {
-            if (customerDAO.existsCustomerWithEmail(customerUpdateRequest.email())) {
-                throw new DuplicateResourceException("email address already exists");
+        if (!customers.isEmpty()) {
+            int[] inserted = customerDAO.insertCustomers(customers);
+            for (int j = 0; j < inserted.length; j++) {
+                int i = positions.get(j);
+                String email = customers.get(j).getEmail();
+                if (inserted[j] > 0) {
+                    statistics.customerAdded(customers.get(j));
+                }
+                chunkResults[i] = inserted[j] > 0
+                        ? new CustomerBulkRegistrationResult(
+                                firstIndex + i, email,
+                                CustomerBulkRegistrationResult.Status.CREATED, null)
+                        : new CustomerBulkRegistrationResult(
+                                firstIndex + i, email,
+                                CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL,
+                                "email address already exists");
             }
-            changed = true;
-            customer.setEmail(customerUpdateRequest.email());
         }
 
-        if (customerUpdateRequest.age() != null &&
-                !customerUpdateRequest.age().equals(customer.getAge())) {
-            changed = true;
-            customer.setAge(customerUpdateRequest.age());
-        }
+        results.addAll(Arrays.asList(chunkResults));
+    }
 
-        if (!changed) {
+    public void deleteCustomerById(int id) {
+        // the deleted row comes back with the delete, the counters need its gender and age
+        Customer deleted = customerDAO.deleteCustomerById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("customer with [%s] not found".formatted(id)));
+        suggestionIndex.customerDeleted(id);
+        statistics.customerDeleted(deleted);
+    }
+
+    public Customer updateCustomer(int customerId, CustomerUpdateRequest customerUpdateRequest) {
+        if (customerUpdateRequest.name() == null &&
+                customerUpdateRequest.email() == null &&
+                customerUpdateRequest.age() == null) {
             throw new NoDataChangeException("no data changes found");
         }
 
-        customerDAO.updateCustomer(customer);
+        Customer update = new Customer();
+        update.setId(customerId);
+        update.setName(customerUpdateRequest.name());
+        update.setEmail(customerUpdateRequest.email());
+        update.setAge(customerUpdateRequest.age());
+        update.setVersion(customerUpdateRequest.version());
+
+        Optional<CustomerUpdateResult> updated;
+        try {
+            updated = customerDAO.updateCustomer(update);
+        } catch (OptimisticLockingFailureException e) {
+            throw staleCustomer(customerId);
+        } catch (DataIntegrityViolationException e) {
+            throw new DuplicateResourceException("email address already exists");
+        }
+        updated.ifPresent(result -> {
+            Customer customer = result.customer();
+            suggestionIndex.customerSaved(customer);
+            // only an age change moves a customer between histogram buckets
+            if (result.previousAge() != customer.getAge()) {
+                statistics.customerAgeChanged(customer.getGender(), result.previousAge(), customer.getAge());
+            }
+        });
+
+        // only a failed update pays for a second query to explain why
+        return updated.map(CustomerUpdateResult::customer).orElseThrow(() -> {
+            Customer current = customerDAO
+                    .selectCustomerById(customerId)
+                    .orElseThrow(() -> new ResourceNotFoundException("customer with [%s] not found".formatted(customerId)));
+            if (customerUpdateRequest.version() != null &&
+                    !customerUpdateRequest.version().equals(current.getVersion())) {
+                return staleCustomer(customerId);
+            }
+            return new NoDataChangeException("no data changes found");
+        });
+    }
+
+    private static StaleResourceException staleCustomer(int customerId) {
+        return new StaleResourceException(
+                "customer with [%s] was modified concurrently".formatted(customerId));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static String encodeCursor(int id) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(Integer.toString(id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static CustomerQuery.SortField parseSortField(String sort) {
+        try {
+            return CustomerQuery.SortField.valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException(
+                    "sort must be one of id, name or age, not [%s]".formatted(sort));
+        }
+    }
+
+    static boolean parseDescending(String direction) {
+        if ("asc".equalsIgnoreCase(direction)) {
+            return false;
+        }
+        if ("desc".equalsIgnoreCase(direction)) {
+            return true;
+        }
+        throw new RequestValidationException(
+                "direction must be asc or desc, not [%s]".formatted(direction));
+    }
+
+    // "id" when sorting by id, "id:value" otherwise; the value is the keyset position
+    private static String encodeCursor(Customer last, CustomerQuery.SortField sortBy) {
+        String position = switch (sortBy) {
+            case ID -> Integer.toString(last.getId());
+            case NAME -> last.getId() + ":" + last.getName();
+            case AGE -> last.getId() + ":" + last.getAge();
+        };
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Customer decodeCursor(String cursor, CustomerQuery.SortField sortBy) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            Customer after = new Customer();
+            if (sortBy == CustomerQuery.SortField.ID) {
+                after.setId(Integer.parseInt(position));
+                return after;
+            }
+            int separator = position.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("cursor has no sort value");
+            }
+            after.setId(Integer.parseInt(position.substring(0, separator)));
+            String value = position.substring(separator + 1);
+            if (sortBy == CustomerQuery.SortField.NAME) {
+                after.setName(value);
+            } else {
+                after.setAge(Integer.parseInt(value));
+            }
+            return after;
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException("invalid cursor [%s]".formatted(cursor));
+        }
+    }
+
+    private static int decodeCursor(String cursor) {
+        try {
+            byte[] decoded = Base64.getUrlDecoder().decode(cursor);
+            return Integer.parseInt(new String(decoded, StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException("invalid cursor [%s]".formatted(cursor));
+        }
     }
 }
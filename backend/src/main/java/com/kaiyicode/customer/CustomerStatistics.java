@@ -0,0 +1,189 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+public class CustomerStatistics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerStatistics.class);
+    private static final int OPEN_BUCKET_MIN_AGE = 100;
+    private static final Gender[] GENDERS = Gender.values();
+
+    // aggregates the backend directly, the cache layer only forwards the query
+    private final CustomerDAO customerDAO;
+    private final TaskExecutor taskExecutor;
+    private final int bucketWidth;
+    private final int buckets;
+    // one adder per gender and age bucket; concurrent writers add to per-thread
+    // stripes instead of contending on a single counter
+    private final LongAdder[] cells;
+    private final Timer reconcileTimer;
+    private final DistributionSummary reconcileDrift;
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+
+    // null until the counters were reconciled once, before that they only hold deltas
+    private volatile Instant reconciledAt;
+
+    public CustomerStatistics(BeanFactory beanFactory,
+                              @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+                              MeterRegistry meterRegistry,
+                              @Value("${customer.cache.backend:jdbc}") String backend,
+                              @Value("${customer.stats.age-bucket-width:10}") int bucketWidth) {
+        if (bucketWidth < 1 || bucketWidth > OPEN_BUCKET_MIN_AGE) {
+            throw new IllegalArgumentException(
+                    "age bucket width must be between 1 and %s".formatted(OPEN_BUCKET_MIN_AGE));
+        }
+        this.customerDAO = beanFactory.getBean(backend, CustomerDAO.class);
+        this.taskExecutor = taskExecutor;
+        this.bucketWidth = bucketWidth;
+        // closed buckets cover ages below 100, rounded up to whole buckets, then one open-ended bucket
+        this.buckets = (OPEN_BUCKET_MIN_AGE + bucketWidth - 1) / bucketWidth + 1;
+        this.cells = new LongAdder[GENDERS.length * buckets];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new LongAdder();
+        }
+
+        this.reconcileTimer = Timer.builder("customer.stats.reconcile")
+                .register(meterRegistry);
+        this.reconcileDrift = DistributionSummary.builder("customer.stats.reconcile.drift")
+                .baseUnit("customers")
+                .register(meterRegistry);
+    }
+
+    public void customerAdded(Customer customer) {
+        // backends without NOT NULL columns are left to the next reconciliation
+        if (customer.getGender() != null && customer.getAge() != null) {
+            cell(customer.getGender(), customer.getAge()).increment();
+        }
+    }
+
+    public void customerDeleted(Customer customer) {
+        if (customer.getGender() != null && customer.getAge() != null) {
+            cell(customer.getGender(), customer.getAge()).decrement();
+        }
+    }
+
+    public void customerAgeChanged(Gender gender, int fromAge, int toAge) {
+        LongAdder from = cell(gender, fromAge);
+        LongAdder to = cell(gender, toAge);
+        if (from != to) {
+            from.decrement();
+            to.increment();
+        }
+    }
+
+    // genders times buckets cells, independent of the number of customers
+    public CustomerStats snapshot() {
+        long total = 0;
+        Map<Gender, Long> byGender = new EnumMap<>(Gender.class);
+        long[] histogram = new long[buckets];
+        for (Gender gender : GENDERS) {
+            long genderTotal = 0;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                // a delete racing ahead of its reconciled insert can dip below zero
+                long count = Math.max(0, cells[gender.ordinal() * buckets + bucket].sum());
+                genderTotal += count;
+                histogram[bucket] += count;
+            }
+            byGender.put(gender, genderTotal);
+            total += genderTotal;
+        }
+        List<CustomerStats.AgeBucket> ageHistogram = new ArrayList<>(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            ageHistogram.add(new CustomerStats.AgeBucket(
+                    bucket * bucketWidth,
+                    bucket == buckets - 1 ? null : (bucket + 1) * bucketWidth - 1,
+                    histogram[bucket]));
+        }
+        return new CustomerStats(total, byGender, ageHistogram, reconciledAt);
+    }
+
+    @EventListener
+    public void onImportCompleted(CustomerImportCompletedEvent event) {
+        // imports bypass CustomerService, their rows are only seen by a reconciliation
+        if (event.insertedRows() > 0) {
+            taskExecutor.execute(this::reconcile);
+        }
+    }
+
+    @EventListener
+    public void onCustomersChanged(CustomerChangedEvent event) {
+        // single-row notifications also echo this instance's own writes, only
+        // table-wide changes are worth an early reconciliation
+        if (event.allCustomers()) {
+            taskExecutor.execute(this::reconcile);
+        }
+    }
+
+    // writes by other instances and lost races are corrected here
+    @Scheduled(fixedDelayString = "${customer.stats.reconcile-interval:5m}")
+    public void reconcile() {
+        if (!reconciling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            // counters are read before the aggregate query and corrected by the difference,
+            // so increments landing while it runs are kept rather than overwritten. Not exact:
+            // a write committed before the query's snapshot whose increment lands after the
+            // counters were read is in both and counted twice, one customer per such write,
+            // until the next reconciliation; which snapshot a commit made it into is not
+            // visible from here
+            long[] counted = new long[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                counted[i] = cells[i].sum();
+            }
+            long[] actual = new long[cells.length];
+            for (CustomerCount count : customerDAO.countCustomersByGenderAndAge()) {
+                actual[index(count.gender(), count.age())] += count.count();
+            }
+            long drift = 0;
+            for (int i = 0; i < cells.length; i++) {
+                long delta = actual[i] - counted[i];
+                cells[i].add(delta);
+                drift += Math.abs(delta);
+            }
+            boolean first = reconciledAt == null;
+            reconciledAt = Instant.now();
+            reconcileTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!first) {
+                reconcileDrift.record(drift);
+                if (drift > 0) {
+                    LOGGER.info("customer statistics were off by {} customers, reconciled", drift);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("customer statistics reconciliation failed, counters keep their incremental values", e);
+        } finally {
+            reconciling.set(false);
+        }
+    }
+
+    private LongAdder cell(Gender gender, int age) {
+        return cells[index(gender, age)];
+    }
+
+    private int index(Gender gender, int age) {
+        int bucket = Math.min(Math.max(age, 0) / bucketWidth, buckets - 1);
+        return gender.ordinal() * buckets + bucket;
+    }
+}
@@ -0,0 +1,20 @@
+package com.kaiyicode.customer;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+public record CustomerStats(
+        long total,
+        Map<Gender, Long> byGender,
+        List<AgeBucket> ageHistogram,
+        Instant reconciledAt
+) {
+    // maxAge is inclusive and null for the open-ended last bucket
+    public record AgeBucket(
+            int minAge,
+            Integer maxAge,
+            long count
+    ) {
+    }
+}
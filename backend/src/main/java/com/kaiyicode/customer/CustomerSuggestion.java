@@ -0,0 +1,8 @@
+package com.kaiyicode.customer;
+
+public record CustomerSuggestion(
+        int id,
+        String name,
+        String email
+) {
+}
@@ -0,0 +1,184 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Component
+public class CustomerSuggestionIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerSuggestionIndex.class);
+    private static final int CATCH_UP_PAGE_SIZE = 1000;
+
+    // reads the backend directly, a cached row could be older than the write being indexed
+    private final CustomerDAO customerDAO;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TaskExecutor taskExecutor;
+    private final Timer rebuildTimer;
+
+    // null until the first build finished: suggestions fall back to the database
+    private volatile TrigramIndex index;
+    // receives concurrent writes while a rebuild streams the customer table
+    private volatile TrigramIndex building;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicBoolean catchingUp = new AtomicBoolean();
+
+    public CustomerSuggestionIndex(BeanFactory beanFactory,
+                                   PlatformTransactionManager transactionManager,
+                                   @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${customer.cache.backend:jdbc}") String backend) {
+        this.customerDAO = beanFactory.getBean(backend, CustomerDAO.class);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.taskExecutor = taskExecutor;
+
+        this.rebuildTimer = Timer.builder("customer.suggest.index.rebuild")
+                .register(meterRegistry);
+        Gauge.builder("customer.suggest.index.customers", this,
+                        suggestionIndex -> suggestionIndex.index == null ? 0 : suggestionIndex.index.size())
+                .register(meterRegistry);
+        Gauge.builder("customer.suggest.index.memory", this,
+                        suggestionIndex -> suggestionIndex.index == null ? 0 : suggestionIndex.index.memoryBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        taskExecutor.execute(this::rebuild);
+    }
+
+    @EventListener
+    public void onImportCompleted(CustomerImportCompletedEvent event) {
+        // imports only append rows, so reading past the highest indexed id finds them all
+        if (event.insertedRows() > 0) {
+            customersAdded();
+        }
+    }
+
+    @EventListener
+    public void onCustomersChanged(CustomerChangedEvent event) {
+        if (index == null && building == null) {
+            return;
+        }
+        if (event.allCustomers()) {
+            taskExecutor.execute(this::rebuild);
+            return;
+        }
+        // rows written by other instances never went through customerSaved()
+        taskExecutor.execute(() -> {
+            Set<Integer> missing = new HashSet<>(event.ids());
+            for (Customer customer : customerDAO.selectCustomersByIds(event.ids())) {
+                missing.remove(customer.getId());
+                customerSaved(customer);
+            }
+            missing.forEach(this::customerDeleted);
+        });
+    }
+
+    public boolean isReady() {
+        return index != null;
+    }
+
+    public List<CustomerSuggestion> suggest(String query, int limit) {
+        TrigramIndex current = index;
+        if (current == null) {
+            throw new IllegalStateException("suggestion index is not built yet");
+        }
+        return current.search(query, limit);
+    }
+
+    public void customerSaved(Customer customer) {
+        if (customer.getId() == null) {
+            // batch inserts do not return generated ids
+            customersAdded();
+            return;
+        }
+        apply(next -> next.put(customer));
+    }
+
+    public void customerDeleted(int id) {
+        apply(next -> next.remove(id));
+    }
+
+    public void customersAdded() {
+        taskExecutor.execute(this::catchUp);
+    }
+
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            TrigramIndex next = new TrigramIndex();
+            // publish before reading so a write committed after the snapshot still lands in it
+            building = next;
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Customer> customers = customerDAO.streamAllCustomers()) {
+                    customers.forEach(next::put);
+                }
+            });
+            index = next;
+            long elapsed = System.nanoTime() - start;
+            rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            LOGGER.info("suggestion index built with {} customers in {} ms",
+                    next.size(), elapsed / 1_000_000);
+        } catch (RuntimeException e) {
+            LOGGER.error("suggestion index rebuild failed, suggestions keep going to the database", e);
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+        // batch inserts that committed after the snapshot have no ids to apply
+        catchUp();
+    }
+
+    private void catchUp() {
+        TrigramIndex current = index;
+        if (current == null || !catchingUp.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Customer> page;
+            do {
+                page = customerDAO.selectCustomersAfterId(current.highestId(), CATCH_UP_PAGE_SIZE);
+                page.forEach(customer -> apply(next -> next.put(customer)));
+            } while (page.size() == CATCH_UP_PAGE_SIZE);
+        } catch (RuntimeException e) {
+            LOGGER.warn("suggestion index catch-up failed, new customers show up after the next change", e);
+        } finally {
+            catchingUp.set(false);
+        }
+    }
+
+    private void apply(Consumer<TrigramIndex> change) {
+        TrigramIndex current = index;
+        if (current != null) {
+            change.accept(current);
+        }
+        TrigramIndex next = building;
+        if (next != null && next != current) {
+            change.accept(next);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.kaiyicode.customer;
 public record CustomerUpdateRequest (
         String name,
         String email,
-        Integer age
+        Integer age,
+        Long version
 ) {
 }
@@ -0,0 +1,8 @@
+package com.kaiyicode.customer;
+
+// the row as written, and the age it had before; the age histogram needs both
+public record CustomerUpdateResult(
+        Customer customer,
+        int previousAge
+) {
+}
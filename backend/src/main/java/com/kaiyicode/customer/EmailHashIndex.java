@@ -0,0 +1,120 @@
+package com.kaiyicode.customer;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+// open addressing 64-bit email hash -> record address multimap; equal hashes
+// are allowed, callers confirm a candidate against the stored email bytes
+class EmailHashIndex {
+    static final long MISSING = -1;
+    private static final double LOAD_FACTOR = 0.6;
+
+    private long[] hashes;
+    private long[] addresses;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    EmailHashIndex(int expectedSize) {
+        allocate(Integer.highestOneBit(
+                Math.max(16, (int) Math.ceil(Math.max(16, expectedSize) / LOAD_FACTOR)) - 1) << 1);
+    }
+
+    long find(long hash, LongPredicate matches) {
+        for (int i = slot(hash); addresses[i] != MISSING; i = (i + 1) & mask) {
+            if (hashes[i] == hash && matches.test(addresses[i])) {
+                return addresses[i];
+            }
+        }
+        return MISSING;
+    }
+
+    void add(long hash, long address) {
+        if (size >= resizeAt) {
+            resize();
+        }
+        int i = slot(hash);
+        while (addresses[i] != MISSING) {
+            i = (i + 1) & mask;
+        }
+        hashes[i] = hash;
+        addresses[i] = address;
+        size++;
+    }
+
+    boolean replace(long hash, long oldAddress, long newAddress) {
+        int i = indexOf(hash, oldAddress);
+        if (i < 0) {
+            return false;
+        }
+        addresses[i] = newAddress;
+        return true;
+    }
+
+    boolean remove(long hash, long address) {
+        int i = indexOf(hash, address);
+        if (i < 0) {
+            return false;
+        }
+        shiftBack(i);
+        size--;
+        return true;
+    }
+
+    long memoryBytes() {
+        return (long) hashes.length * Long.BYTES * 2;
+    }
+
+    private int indexOf(long hash, long address) {
+        for (int i = slot(hash); addresses[i] != MISSING; i = (i + 1) & mask) {
+            if (hashes[i] == hash && addresses[i] == address) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void shiftBack(int gap) {
+        for (int j = (gap + 1) & mask; addresses[j] != MISSING; j = (j + 1) & mask) {
+            int home = slot(hashes[j]);
+            boolean movable = j > gap
+                    ? home <= gap || home > j
+                    : home <= gap && home > j;
+            if (movable) {
+                hashes[gap] = hashes[j];
+                addresses[gap] = addresses[j];
+                gap = j;
+            }
+        }
+        hashes[gap] = 0;
+        addresses[gap] = MISSING;
+    }
+
+    private void resize() {
+        long[] oldHashes = hashes;
+        long[] oldAddresses = addresses;
+        allocate(hashes.length * 2);
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldAddresses[i] != MISSING) {
+                int j = slot(oldHashes[i]);
+                while (addresses[j] != MISSING) {
+                    j = (j + 1) & mask;
+                }
+                hashes[j] = oldHashes[i];
+                addresses[j] = oldAddresses[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        addresses = new long[capacity];
+        Arrays.fill(addresses, MISSING);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
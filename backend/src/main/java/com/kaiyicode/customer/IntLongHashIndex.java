@@ -0,0 +1,131 @@
+package com.kaiyicode.customer;
+
+// open addressing int -> long map with linear probing; 0 marks an empty slot,
+// so keys must be positive (customer ids are)
+class IntLongHashIndex {
+    static final long MISSING = -1;
+    private static final double LOAD_FACTOR = 0.6;
+
+    private int[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    IntLongHashIndex(int expectedSize) {
+        allocate(tableSizeFor((int) Math.ceil(Math.max(16, expectedSize) / LOAD_FACTOR)));
+    }
+
+    long get(int key) {
+        if (key <= 0) {
+            // would match an empty slot
+            return MISSING;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == 0) {
+                return MISSING;
+            }
+        }
+    }
+
+    void put(int key, long value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("keys must be positive");
+        }
+        if (size >= resizeAt) {
+            resize();
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                values[i] = value;
+                return;
+            }
+            if (k == 0) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+        }
+    }
+
+    long remove(int key) {
+        if (key <= 0) {
+            return MISSING;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == 0) {
+                return MISSING;
+            }
+            if (k == key) {
+                long value = values[i];
+                shiftBack(i);
+                size--;
+                return value;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long memoryBytes() {
+        return (long) keys.length * (Integer.BYTES + Long.BYTES);
+    }
+
+    // backward shift deletion keeps probe chains intact without tombstones
+    private void shiftBack(int gap) {
+        for (int j = (gap + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            boolean movable = j > gap
+                    ? home <= gap || home > j
+                    : home <= gap && home > j;
+            if (movable) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = slot(oldKeys[i]);
+                while (keys[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int tableSizeFor(int size) {
+        return Integer.highestOneBit(Math.max(16, size) - 1) << 1;
+    }
+}
@@ -0,0 +1,232 @@
+package com.kaiyicode.customer;
+
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// inverted trigram index over lower-cased name and email; posting lists are
+// roaring bitmaps of customer ids, which stay close to one bit per id for the
+// trigrams every email shares ("gma", "com") and to two bytes per id for rare ones
+class TrigramIndex {
+    static final int GRAM = 3;
+    private static final long DELETED = -1;
+    private static final byte SEPARATOR = 0;
+    private static final int DOCUMENT_OVERHEAD = 16;
+    private static final int POSTING_OVERHEAD = 48;
+
+    private final Map<Long, RoaringBitmap> postings = new HashMap<>();
+    // indexed by customer id: "name\0email" as utf-8, and version + 1 (0 when unknown)
+    private byte[][] documents = new byte[1024][];
+    private long[] versions = new long[1024];
+    private int size;
+    private int highestId;
+    // kept up to date by the writers, so the gauge does not walk the index
+    private volatile long memoryBytes = (long) documents.length * Integer.BYTES + (long) versions.length * Long.BYTES;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // stale versions are ignored and deleted ids stay deleted, so a streaming
+    // rebuild can race with live writes without resurrecting or rolling back rows
+    void put(Customer customer) {
+        int id = customer.getId();
+        long version = customer.getVersion() == null ? 1 : customer.getVersion() + 1;
+        byte[] document = encode(customer.getName(), customer.getEmail());
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(id);
+            long current = versions[id];
+            if (current == DELETED || version < current) {
+                return;
+            }
+            byte[] previous = documents[id];
+            Set<Long> oldGrams = previous == null ? Set.of() : grams(previous);
+            Set<Long> newGrams = grams(document);
+            for (Long gram : oldGrams) {
+                if (!newGrams.contains(gram)) {
+                    removePosting(gram, id);
+                }
+            }
+            for (Long gram : newGrams) {
+                if (!oldGrams.contains(gram)) {
+                    addPosting(gram, id);
+                }
+            }
+            if (previous == null) {
+                size++;
+                memoryBytes += DOCUMENT_OVERHEAD;
+            } else {
+                memoryBytes -= previous.length;
+            }
+            memoryBytes += document.length;
+            documents[id] = document;
+            versions[id] = version;
+            highestId = Math.max(highestId, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(id);
+            byte[] previous = documents[id];
+            if (previous != null) {
+                for (Long gram : grams(previous)) {
+                    removePosting(gram, id);
+                }
+                documents[id] = null;
+                size--;
+                memoryBytes -= previous.length + DOCUMENT_OVERHEAD;
+            }
+            versions[id] = DELETED;
+            highestId = Math.max(highestId, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<CustomerSuggestion> search(String query, int limit) {
+        String term = query.toLowerCase(Locale.ROOT);
+        Set<Long> queryGrams = grams(term);
+        if (queryGrams.isEmpty()) {
+            throw new IllegalArgumentException("queries need at least %s characters".formatted(GRAM));
+        }
+
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> lists = new ArrayList<>(queryGrams.size());
+            for (Long gram : queryGrams) {
+                RoaringBitmap posting = postings.get(gram);
+                if (posting == null) {
+                    return List.of();
+                }
+                lists.add(posting);
+            }
+            lists.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+
+            // intersect the two rarest lists container by container, then probe the rest lazily
+            RoaringBitmap candidates = lists.size() == 1
+                    ? lists.get(0)
+                    : RoaringBitmap.and(lists.get(0), lists.get(1));
+            List<CustomerSuggestion> suggestions = new ArrayList<>(Math.min(limit, 64));
+            PeekableIntIterator ids = candidates.getIntIterator();
+            candidates:
+            while (ids.hasNext() && suggestions.size() < limit) {
+                int id = ids.next();
+                for (int i = 2; i < lists.size(); i++) {
+                    if (!lists.get(i).contains(id)) {
+                        continue candidates;
+                    }
+                }
+                // all trigrams present does not mean they are adjacent
+                CustomerSuggestion suggestion = decode(id, documents[id]);
+                if (suggestion.name().toLowerCase(Locale.ROOT).contains(term)
+                        || suggestion.email().toLowerCase(Locale.ROOT).contains(term)) {
+                    suggestions.add(suggestion);
+                }
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int highestId() {
+        lock.readLock().lock();
+        try {
+            return highestId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long memoryBytes() {
+        return memoryBytes;
+    }
+
+    // caller holds the write lock
+    private void addPosting(long gram, int id) {
+        RoaringBitmap posting = postings.get(gram);
+        if (posting == null) {
+            posting = new RoaringBitmap();
+            postings.put(gram, posting);
+            memoryBytes += POSTING_OVERHEAD;
+        } else {
+            memoryBytes -= posting.getLongSizeInBytes();
+        }
+        posting.add(id);
+        memoryBytes += posting.getLongSizeInBytes();
+    }
+
+    // caller holds the write lock
+    private void removePosting(long gram, int id) {
+        RoaringBitmap posting = postings.get(gram);
+        memoryBytes -= posting.getLongSizeInBytes();
+        posting.remove(id);
+        if (posting.isEmpty()) {
+            postings.remove(gram);
+            memoryBytes -= POSTING_OVERHEAD;
+        } else {
+            memoryBytes += posting.getLongSizeInBytes();
+        }
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("customer ids must not be negative");
+        }
+        if (id >= documents.length) {
+            int capacity = Math.max(id + 1, documents.length + (documents.length >> 1));
+            memoryBytes += (long) (capacity - documents.length) * (Integer.BYTES + Long.BYTES);
+            documents = Arrays.copyOf(documents, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+        }
+    }
+
+    private static byte[] encode(String name, String email) {
+        return (name + (char) SEPARATOR + email).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static CustomerSuggestion decode(int id, byte[] document) {
+        String text = new String(document, StandardCharsets.UTF_8);
+        int separator = text.indexOf((char) SEPARATOR);
+        return new CustomerSuggestion(id, text.substring(0, separator), text.substring(separator + 1));
+    }
+
+    private static Set<Long> grams(byte[] document) {
+        CustomerSuggestion fields = decode(0, document);
+        Set<Long> grams = grams(fields.name().toLowerCase(Locale.ROOT));
+        grams.addAll(grams(fields.email().toLowerCase(Locale.ROOT)));
+        return grams;
+    }
+
+    // grams never span name and email, each field is windowed on its own
+    private static Set<Long> grams(String text) {
+        Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,90 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// a virtual thread that blocks while pinned (inside synchronized, Object.wait or a
+// native frame) keeps its carrier, and with only as many carriers as cores a few
+// pinned JDBC round trips stall every other request
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    static final String OTHER_LOCATION = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+
+    private volatile RecordingStream recording;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${customer.pinning.threshold:20ms}") Duration threshold) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (recording != null) {
+            return;
+        }
+        RecordingStream recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::pinned);
+        recording.startAsync();
+        this.recording = recording;
+        LOGGER.info("reporting virtual threads pinned for longer than {}", threshold);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (recording == null) {
+            return;
+        }
+        recording.close();
+        recording = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return recording != null;
+    }
+
+    private void pinned(RecordedEvent event) {
+        String location = location(event.getStackTrace());
+        Timer.builder("customer.dao.pinned")
+                .tag("location", location)
+                .register(meterRegistry)
+                .record(event.getDuration());
+        LOGGER.warn("virtual thread pinned to its carrier for {} ms in {}",
+                event.getDuration().toMillis(), location);
+    }
+
+    // the innermost data access frame, so the tag stays bounded to DAO methods
+    static String location(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return OTHER_LOCATION;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith(CustomerDAO.class.getPackageName() + ".")
+                    && type.endsWith("DataAccessService")) {
+                return type.substring(type.lastIndexOf('.') + 1) + "." + frame.getMethod().getName();
+            }
+        }
+        return OTHER_LOCATION;
+    }
+}
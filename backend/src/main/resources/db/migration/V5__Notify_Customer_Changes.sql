@@ -0,0 +1,35 @@
+CREATE FUNCTION notify_customer_changed() RETURNS TRIGGER AS
+$$
+DECLARE
+    changed_ids TEXT;
+BEGIN
+    -- one notification per statement; pg_notify payloads are capped at 8000 bytes,
+    -- so large statements ask listeners to drop everything instead of listing ids
+    SELECT CASE WHEN count(*) > 500 THEN '*' ELSE string_agg(id::TEXT, ',') END
+    INTO changed_ids
+    FROM changed_rows;
+
+    IF changed_ids IS NOT NULL THEN
+        PERFORM pg_notify('customer_changed', changed_ids);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_inserted
+    AFTER INSERT ON customer
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION notify_customer_changed();
+
+CREATE TRIGGER customer_updated
+    AFTER UPDATE ON customer
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION notify_customer_changed();
+
+CREATE TRIGGER customer_deleted
+    AFTER DELETE ON customer
+    REFERENCING OLD TABLE AS changed_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION notify_customer_changed();
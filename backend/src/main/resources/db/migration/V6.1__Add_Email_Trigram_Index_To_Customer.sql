@@ -0,0 +1,2 @@
+CREATE INDEX CONCURRENTLY customer_email_trgm_idx
+ON customer USING gin (email gin_trgm_ops);
@@ -0,0 +1,8 @@
+-- index migrations run outside a transaction (see the .conf next to each script) so
+-- CONCURRENTLY can build them without blocking writes to customer; one index per
+-- migration, a failed build leaves an invalid index behind that has to be dropped
+-- before the migration is repaired and retried
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX CONCURRENTLY customer_name_trgm_idx
+ON customer USING gin (name gin_trgm_ops);
@@ -0,0 +1,2 @@
+CREATE INDEX CONCURRENTLY customer_gender_name_id_idx
+ON customer (gender, name, id);
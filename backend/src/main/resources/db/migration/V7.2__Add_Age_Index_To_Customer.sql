@@ -0,0 +1,2 @@
+CREATE INDEX CONCURRENTLY customer_age_id_idx
+ON customer (age, id);
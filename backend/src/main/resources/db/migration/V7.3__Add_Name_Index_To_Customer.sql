@@ -0,0 +1,2 @@
+CREATE INDEX CONCURRENTLY customer_name_id_idx
+ON customer (name, id);
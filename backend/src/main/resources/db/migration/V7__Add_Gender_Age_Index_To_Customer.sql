@@ -0,0 +1,2 @@
+CREATE INDEX CONCURRENTLY customer_gender_age_id_idx
+ON customer (gender, age, id);
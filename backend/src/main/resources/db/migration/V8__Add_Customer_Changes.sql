@@ -0,0 +1,33 @@
+-- every statement that changes customers appends a row instead of bumping a shared
+-- counter: inserts never wait for each other, so a slow import or a long transaction
+-- holds up nobody else's writes. A snapshot counts exactly the changes it can see,
+-- whatever order their transactions committed in, which makes the count a list ETag
+CREATE TABLE customer_change (
+    id BIGSERIAL PRIMARY KEY
+);
+
+-- changes folded away by CustomerChangeTracker, so customer_change stays short
+CREATE TABLE customer_change_folded (
+    changes BIGINT NOT NULL
+);
+
+INSERT INTO customer_change_folded (changes) VALUES (0);
+
+CREATE OR REPLACE FUNCTION notify_customer_changed() RETURNS TRIGGER AS
+$$
+DECLARE
+    changed_ids TEXT;
+BEGIN
+    -- one notification per statement; pg_notify payloads are capped at 8000 bytes,
+    -- so large statements ask listeners to drop everything instead of listing ids
+    SELECT CASE WHEN count(*) > 500 THEN '*' ELSE string_agg(id::TEXT, ',') END
+    INTO changed_ids
+    FROM changed_rows;
+
+    IF changed_ids IS NOT NULL THEN
+        INSERT INTO customer_change DEFAULT VALUES;
+        PERFORM pg_notify('customer_changed', changed_ids);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -12,17 +12,19 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import javax.sql.DataSource;
+import java.util.Map;
 
 @Testcontainers
 public abstract class AbstractTestcontainers {
 
     @BeforeAll
     static void beforeAll() {
+        // index migrations build CONCURRENTLY, which waits forever on a lock held in a transaction
         Flyway flyway = Flyway.configure().dataSource(
                 postgreSQLContainer.getJdbcUrl(),
                 postgreSQLContainer.getUsername(),
                 postgreSQLContainer.getPassword()
-        ).load();
+        ).configuration(Map.of("flyway.postgresql.transactional.lock", "false")).load();
         flyway.migrate();
     }
 
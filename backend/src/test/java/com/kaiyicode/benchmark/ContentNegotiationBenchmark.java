@@ -0,0 +1,129 @@
+package com.kaiyicode.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.kaiyicode.customer.Customer;
+import com.kaiyicode.customer.CustomerJsonComponent;
+import com.kaiyicode.customer.CustomerRegistrationRequest;
+import com.kaiyicode.customer.Gender;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// not picked up by surefire, run explicitly:
+//   mvn test -Dtest=ContentNegotiationBenchmark -Dbenchmark.customers=10000 -Dbenchmark.duration=20s
+// the two bodies that grow with the data, a large customer list and a bulk registration,
+// in both encodings the API negotiates, through the mappers the message converters use
+class ContentNegotiationBenchmark {
+    private static final int CUSTOMERS = Integer.getInteger("benchmark.customers", 10_000);
+    private static final Duration WARMUP = LoadGenerator.duration("benchmark.warmup", "5s");
+    private static final Duration MEASURE = LoadGenerator.duration("benchmark.duration", "10s");
+    private static final TypeReference<List<Customer>> CUSTOMER_LIST = new TypeReference<>() {};
+    private static final TypeReference<List<CustomerRegistrationRequest>> REQUEST_LIST = new TypeReference<>() {};
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void jsonAgainstCbor() throws Exception {
+        List<Customer> customers = customers();
+        List<CustomerRegistrationRequest> requests = customers.stream()
+                .map(c -> new CustomerRegistrationRequest(c.getName(), c.getEmail(), c.getAge(), c.getGender()))
+                .toList();
+        ObjectMapper json;
+        ObjectMapper cbor;
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(
+                JacksonAutoConfiguration.class, CustomerJsonComponent.class)) {
+            json = context.getBean(ObjectMapper.class);
+            cbor = context.getBean(Jackson2ObjectMapperBuilder.class).factory(new CBORFactory()).build();
+        }
+        byte[] jsonList = json.writeValueAsBytes(customers);
+        byte[] cborList = cbor.writeValueAsBytes(customers);
+        byte[] jsonRequests = json.writeValueAsBytes(requests);
+        byte[] cborRequests = cbor.writeValueAsBytes(requests);
+        assertThat(cbor.readValue(cborList, CUSTOMER_LIST)).isEqualTo(customers);
+
+        List<Measurement> measurements = List.of(
+                measure("write list", "json", () -> json.writeValue(OutputStream.nullOutputStream(), customers)),
+                measure("write list", "cbor", () -> cbor.writeValue(OutputStream.nullOutputStream(), customers)),
+                measure("read list", "json", () -> json.readValue(jsonList, CUSTOMER_LIST)),
+                measure("read list", "cbor", () -> cbor.readValue(cborList, CUSTOMER_LIST)),
+                measure("read bulk", "json", () -> json.readValue(jsonRequests, REQUEST_LIST)),
+                measure("read bulk", "cbor", () -> cbor.readValue(cborRequests, REQUEST_LIST)));
+
+        System.out.printf("%n%d customers, %s measured%n", CUSTOMERS, MEASURE);
+        System.out.println("body       encoding     KB  KB gzipped");
+        System.out.println(size("list", "json", jsonList));
+        System.out.println(size("list", "cbor", cborList));
+        System.out.println(size("bulk", "json", jsonRequests));
+        System.out.println(size("bulk", "cbor", cborRequests));
+        System.out.println("operation  encoding   ops/s     ms/op    KB allocated/op");
+        measurements.forEach(System.out::println);
+    }
+
+    // compression is negotiated separately and applies to either encoding
+    private static String size(String body, String encoding, byte[] bytes) throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        }
+        return "%-10s %-8s %6.1f %11.1f".formatted(body, encoding, bytes.length / 1024.0, compressed.size() / 1024.0);
+    }
+
+    private Measurement measure(String operation, String encoding, Operation body) throws Exception {
+        long warmupEnd = System.nanoTime() + WARMUP.toNanos();
+        while (System.nanoTime() < warmupEnd) {
+            body.run();
+        }
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long end = start + MEASURE.toNanos();
+        long operations = 0;
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            body.run();
+            operations++;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        double seconds = (now - start) / 1e9;
+        return new Measurement(operation, encoding, operations / seconds,
+                seconds * 1000 / operations, allocated / 1024.0 / operations);
+    }
+
+    private static List<Customer> customers() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Customer> customers = new ArrayList<>(CUSTOMERS);
+        for (int i = 1; i <= CUSTOMERS; i++) {
+            customers.add(new Customer(i, "Customer " + i, "customer-" + i + "@example.com",
+                    random.nextInt(18, 91), random.nextBoolean() ? Gender.MALE : Gender.FEMALE, (long) i % 5));
+        }
+        return customers;
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    private record Measurement(String operation, String encoding, double opsPerSecond,
+                               double millisPerOp, double kilobytesPerOp) {
+        @Override
+        public String toString() {
+            return "%-10s %-8s %7.1f %9.2f %18.1f".formatted(
+                    operation, encoding, opsPerSecond, millisPerOp, kilobytesPerOp);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.kaiyicode.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaiyicode.customer.Customer;
+import com.kaiyicode.customer.CustomerJsonComponent;
+import com.kaiyicode.customer.Gender;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// not picked up by surefire, run explicitly:
+//   mvn test -Dtest=JsonSerializationBenchmark -Dbenchmark.customers=10000 -Dbenchmark.duration=20s
+// a list response the size of a large page, written to a discarding stream the way
+// the message converter writes it, and read back from its bytes
+class JsonSerializationBenchmark {
+    private static final int CUSTOMERS = Integer.getInteger("benchmark.customers", 10_000);
+    private static final Duration WARMUP = LoadGenerator.duration("benchmark.warmup", "5s");
+    private static final Duration MEASURE = LoadGenerator.duration("benchmark.duration", "10s");
+    private static final TypeReference<List<Customer>> CUSTOMER_LIST = new TypeReference<>() {};
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void componentAgainstReflectiveJackson() throws Exception {
+        List<Customer> customers = customers();
+        ObjectMapper reflective = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper component;
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(
+                JacksonAutoConfiguration.class, CustomerJsonComponent.class)) {
+            component = context.getBean(ObjectMapper.class);
+        }
+        byte[] json = reflective.writeValueAsBytes(customers);
+        assertThat(component.writeValueAsBytes(customers)).isEqualTo(json);
+
+        List<Measurement> measurements = List.of(
+                measure("write", "reflective", () -> reflective.writeValue(OutputStream.nullOutputStream(), customers)),
+                measure("write", "component", () -> component.writeValue(OutputStream.nullOutputStream(), customers)),
+                measure("read", "reflective", () -> reflective.readValue(json, CUSTOMER_LIST)),
+                measure("read", "component", () -> component.readValue(json, CUSTOMER_LIST)));
+
+        System.out.printf("%n%d customers, %d KB of JSON, %s measured%n", CUSTOMERS, json.length / 1024, MEASURE);
+        System.out.println("operation  mapper       ops/s     ms/op    KB allocated/op");
+        measurements.forEach(System.out::println);
+    }
+
+    private Measurement measure(String operation, String mapper, Operation body) throws Exception {
+        long warmupEnd = System.nanoTime() + WARMUP.toNanos();
+        while (System.nanoTime() < warmupEnd) {
+            body.run();
+        }
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long end = start + MEASURE.toNanos();
+        long operations = 0;
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            body.run();
+            operations++;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        double seconds = (now - start) / 1e9;
+        return new Measurement(operation, mapper, operations / seconds,
+                seconds * 1000 / operations, allocated / 1024.0 / operations);
+    }
+
+    private static List<Customer> customers() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Customer> customers = new ArrayList<>(CUSTOMERS);
+        for (int i = 1; i <= CUSTOMERS; i++) {
+            customers.add(new Customer(i, "Customer " + i, "customer-" + i + "@example.com",
+                    random.nextInt(18, 91), random.nextBoolean() ? Gender.MALE : Gender.FEMALE, (long) i % 5));
+        }
+        return customers;
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    private record Measurement(String operation, String mapper, double opsPerSecond,
+                               double millisPerOp, double kilobytesPerOp) {
+        @Override
+        public String toString() {
+            return "%-10s %-10s %7.1f %9.2f %18.1f".formatted(
+                    operation, mapper, opsPerSecond, millisPerOp, kilobytesPerOp);
+        }
+    }
+}
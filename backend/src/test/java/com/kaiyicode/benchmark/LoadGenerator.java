@@ -0,0 +1,167 @@
+package com.kaiyicode.benchmark;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+// closed-loop HTTP load shared by the benchmarks: every client is a virtual thread
+// that sends a request, waits for the answer and thinks before the next one
+final class LoadGenerator {
+    static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private LoadGenerator() {
+    }
+
+    static int[] seedCustomers(JdbcTemplate jdbcTemplate, int customers) {
+        jdbcTemplate.update("""
+                INSERT INTO customer (name, email, age, gender)
+                SELECT md5(n::text), 'benchmark-' || n || '@example.com', 18 + n % 73,
+                       CASE WHEN n % 2 = 0 THEN 'MALE' ELSE 'FEMALE' END
+                FROM generate_series(1, ?) AS n
+                ON CONFLICT (email) DO NOTHING
+                """, customers);
+        return jdbcTemplate.queryForList("SELECT id FROM customer", Integer.class)
+                .stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+
+    static Result run(String mode, String baseUrl, int[] ids, int clients,
+                      Duration warmup, Duration measure, Duration thinkTime) throws Exception {
+        return run(mode, clients, warmup, measure, thinkTime, reads(baseUrl, ids));
+    }
+
+    static Result run(String mode, int clients, Duration warmup, Duration measure, Duration thinkTime,
+                      Function<ThreadLocalRandom, HttpRequest> requests) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        try (HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+             ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            long warmupEnd = System.nanoTime() + warmup.toNanos();
+            long measureEnd = warmupEnd + measure.toNanos();
+            List<Future<Latencies>> futures = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                futures.add(workers.submit(() -> load(client, requests, warmupEnd, measureEnd, thinkTime)));
+            }
+            LockSupport.parkNanos(Math.max(0, warmupEnd - System.nanoTime()));
+            // virtual threads are not counted, this is what the server needs
+            threads.resetPeakThreadCount();
+            Latencies all = new Latencies();
+            for (Future<Latencies> future : futures) {
+                all.addAll(future.get());
+            }
+            return all.toResult(mode, measure, threads.getPeakThreadCount());
+        }
+    }
+
+    // 80% single customer reads, 20% filtered pages
+    static Function<ThreadLocalRandom, HttpRequest> reads(String baseUrl, int[] ids) {
+        return random -> {
+            String path = random.nextInt(10) < 8
+                    ? String.valueOf(ids[random.nextInt(ids.length)])
+                    : "page?size=20&sort=name&gender=" + (random.nextBoolean() ? "MALE" : "FEMALE")
+                            + "&minAge=" + random.nextInt(18, 60) + "&maxAge=" + random.nextInt(60, 91);
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(REQUEST_TIMEOUT)
+                    .build();
+        };
+    }
+
+    private static Latencies load(HttpClient client, Function<ThreadLocalRandom, HttpRequest> requests,
+                                  long warmupEnd, long measureEnd, Duration thinkTime) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Latencies latencies = new Latencies();
+        long now;
+        while ((now = System.nanoTime()) < measureEnd) {
+            HttpRequest request = requests.apply(random);
+            boolean ok;
+            try {
+                ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() / 100 == 2;
+            } catch (Exception e) {
+                ok = false;
+            }
+            long end = System.nanoTime();
+            if (now >= warmupEnd && end <= measureEnd) {
+                latencies.add(end - now, ok);
+            }
+            if (!thinkTime.isZero()) {
+                LockSupport.parkNanos(thinkTime.toNanos());
+            }
+        }
+        return latencies;
+    }
+
+    private static final class Latencies {
+        private long[] nanos = new long[1024];
+        private int size;
+        private long errors;
+
+        void add(long latency, boolean ok) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latency;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        void addAll(Latencies other) {
+            if (size + other.size > nanos.length) {
+                nanos = Arrays.copyOf(nanos, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.nanos, 0, nanos, size, other.size);
+            size += other.size;
+            errors += other.errors;
+        }
+
+        Result toResult(String mode, Duration measured, int peakThreads) {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            return new Result(mode, size, errors,
+                    size / (measured.toMillis() / 1000.0),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    size == 0 ? 0 : sorted[size - 1] / 1_000_000.0,
+                    peakThreads);
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+
+    record Result(String mode, long requests, long errors, double throughput,
+                  double p50Millis, double p99Millis, double maxMillis, int peakThreads) {
+        static final String HEADER = "mode       requests   errors   req/s      p50 ms   p99 ms   max ms    threads";
+
+        @Override
+        public String toString() {
+            return "%-10s %-10d %-8d %-10.0f %-8.1f %-8.1f %-9.1f %d".formatted(
+                    mode, requests, errors, throughput, p50Millis, p99Millis, maxMillis, peakThreads);
+        }
+    }
+}
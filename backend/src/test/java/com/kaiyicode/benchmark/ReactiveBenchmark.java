@@ -0,0 +1,65 @@
+package com.kaiyicode.benchmark;
+
+import com.kaiyicode.AbstractTestcontainers;
+import com.kaiyicode.Main;
+import com.kaiyicode.customer.CustomerReactiveServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// not picked up by surefire, run explicitly:
+//   mvn test -Dtest=ReactiveBenchmark -Dbenchmark.clients=10000 -Dbenchmark.think-time=500ms
+// one application serves both APIs from the same database with equally sized pools;
+// the servlet cache is turned off so that both sides pay for every read
+class ReactiveBenchmark extends AbstractTestcontainers {
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 5000);
+    private static final Duration WARMUP = LoadGenerator.duration("benchmark.warmup", "10s");
+    private static final Duration MEASURE = LoadGenerator.duration("benchmark.duration", "30s");
+    // slow clients: mostly idle connections, each asking now and then
+    private static final Duration THINK_TIME = LoadGenerator.duration("benchmark.think-time", "200ms");
+    private static final int CUSTOMERS = 20_000;
+    private static final int POOL_SIZE = 20;
+
+    @Test
+    void reactiveAgainstServlet() throws Exception {
+        int[] ids = LoadGenerator.seedCustomers(getJdbcTemplate(), CUSTOMERS);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + postgreSQLContainer.getJdbcUrl(),
+                "--spring.datasource.username=" + postgreSQLContainer.getUsername(),
+                "--spring.datasource.password=" + postgreSQLContainer.getPassword(),
+                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "--spring.jpa.properties.hibernate.show_sql=false",
+                "--customer.change-listener.enabled=false",
+                "--customer.cache.backend=jdbc",
+                "--customer.cache.maximum-size=0",
+                "--customer.reactive.enabled=true",
+                "--customer.reactive.port=0",
+                "--customer.reactive.pool-size=" + POOL_SIZE)) {
+            int servletPort = ((WebServerApplicationContext) context).getWebServer().getPort();
+            int reactivePort = context.getBean(CustomerReactiveServer.class).getPort();
+
+            LoadGenerator.Result servlet = LoadGenerator.run("servlet",
+                    "http://localhost:" + servletPort + "/api/v1/customer/",
+                    ids, CLIENTS, WARMUP, MEASURE, THINK_TIME);
+            LoadGenerator.Result reactive = LoadGenerator.run("reactive",
+                    "http://localhost:" + reactivePort + "/api/v1/customer/",
+                    ids, CLIENTS, WARMUP, MEASURE, THINK_TIME);
+
+            System.out.printf("%n%d clients thinking %s, %s measured, pools of %d connections%n",
+                    CLIENTS, THINK_TIME, MEASURE, POOL_SIZE);
+            System.out.println(LoadGenerator.Result.HEADER);
+            System.out.println(servlet);
+            System.out.println(reactive);
+
+            assertThat(servlet.requests()).isPositive();
+            assertThat(reactive.requests()).isPositive();
+        }
+    }
+}
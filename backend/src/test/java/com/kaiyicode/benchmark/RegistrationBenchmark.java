@@ -0,0 +1,89 @@
+package com.kaiyicode.benchmark;
+
+import com.kaiyicode.AbstractTestcontainers;
+import com.kaiyicode.Main;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// not picked up by surefire, run explicitly:
+//   mvn test -Dtest=RegistrationBenchmark -Dbenchmark.clients=400 -Dbenchmark.duration=60s
+// a signup burst against synchronous inserts and against the write-behind queue;
+// rows are counted once the application is closed, so the queue is drained by then
+class RegistrationBenchmark extends AbstractTestcontainers {
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 400);
+    private static final Duration WARMUP = LoadGenerator.duration("benchmark.warmup", "10s");
+    private static final Duration MEASURE = LoadGenerator.duration("benchmark.duration", "30s");
+    private static final int POOL_SIZE = 20;
+    private static final AtomicLong REGISTRATIONS = new AtomicLong();
+
+    @Test
+    void writeBehindAgainstSynchronousInserts() throws Exception {
+        Registrations synchronous = run(false);
+        Registrations writeBehind = run(true);
+
+        System.out.printf("%n%d clients, %s measured, pool of %d connections%n", CLIENTS, MEASURE, POOL_SIZE);
+        System.out.println(LoadGenerator.Result.HEADER);
+        System.out.println(synchronous.load());
+        System.out.println(writeBehind.load());
+        System.out.println(synchronous);
+        System.out.println(writeBehind);
+
+        assertThat(synchronous.rows()).isPositive();
+        assertThat(writeBehind.rows()).isPositive();
+    }
+
+    private Registrations run(boolean writeBehind) throws Exception {
+        String mode = writeBehind ? "queued" : "sync";
+        long rowsBefore = countCustomers();
+        long start;
+        LoadGenerator.Result load;
+        // arguments, unlike builder properties, take precedence over application.yml
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + postgreSQLContainer.getJdbcUrl(),
+                "--spring.datasource.username=" + postgreSQLContainer.getUsername(),
+                "--spring.datasource.password=" + postgreSQLContainer.getPassword(),
+                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "--spring.jpa.properties.hibernate.show_sql=false",
+                "--customer.change-listener.enabled=false",
+                "--customer.registration.write-behind.enabled=" + writeBehind)) {
+            URI uri = URI.create("http://localhost:"
+                    + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api/v1/customer");
+            start = System.nanoTime();
+            load = LoadGenerator.run(mode, CLIENTS, WARMUP, MEASURE, Duration.ZERO,
+                    random -> HttpRequest.newBuilder(uri)
+                            .timeout(LoadGenerator.REQUEST_TIMEOUT)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString("""
+                                    {"name": "Registration %1$d", "email": "registration-%1$d@example.com",
+                                     "age": %2$d, "gender": "%3$s"}
+                                    """.formatted(REGISTRATIONS.incrementAndGet(), random.nextInt(18, 91),
+                                    random.nextBoolean() ? "MALE" : "FEMALE")))
+                            .build());
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        return new Registrations(mode, load, countCustomers() - rowsBefore, elapsed);
+    }
+
+    private long countCustomers() {
+        return getJdbcTemplate().queryForObject("SELECT count(*) FROM customer", Long.class);
+    }
+
+    // committed rows from the first request on: warmup, measurement and draining on close
+    private record Registrations(String mode, LoadGenerator.Result load, long rows, Duration elapsed) {
+        @Override
+        public String toString() {
+            return "%-10s %d rows committed in %.1f s, %.0f inserts/s".formatted(
+                    mode, rows, elapsed.toMillis() / 1000.0, rows / (elapsed.toMillis() / 1000.0));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.kaiyicode.benchmark;
+
+import com.kaiyicode.AbstractTestcontainers;
+import com.kaiyicode.Main;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// not picked up by surefire, run explicitly:
+//   mvn test -Dtest=VirtualThreadBenchmark -Dbenchmark.clients=2000 -Dbenchmark.duration=60s
+// both modes serve the same database with the same connection pool, only the
+// request threads differ
+class VirtualThreadBenchmark extends AbstractTestcontainers {
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 1000);
+    private static final Duration WARMUP = LoadGenerator.duration("benchmark.warmup", "10s");
+    private static final Duration MEASURE = LoadGenerator.duration("benchmark.duration", "30s");
+    private static final int CUSTOMERS = 20_000;
+    private static final int POOL_SIZE = 20;
+
+    @Test
+    void virtualThreadsAgainstPlatformThreads() throws Exception {
+        int[] ids = LoadGenerator.seedCustomers(getJdbcTemplate(), CUSTOMERS);
+
+        LoadGenerator.Result platform = run(false, ids);
+        LoadGenerator.Result virtual = run(true, ids);
+
+        System.out.printf("%n%d clients, %s measured, pool of %d connections%n", CLIENTS, MEASURE, POOL_SIZE);
+        System.out.println(LoadGenerator.Result.HEADER);
+        System.out.println(platform);
+        System.out.println(virtual);
+
+        assertThat(platform.requests()).isPositive();
+        assertThat(virtual.requests()).isPositive();
+    }
+
+    private LoadGenerator.Result run(boolean virtualThreads, int[] ids) throws Exception {
+        // arguments, unlike builder properties, take precedence over application.yml
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=" + postgreSQLContainer.getJdbcUrl(),
+                "--spring.datasource.username=" + postgreSQLContainer.getUsername(),
+                "--spring.datasource.password=" + postgreSQLContainer.getPassword(),
+                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--spring.jpa.properties.hibernate.show_sql=false",
+                "--customer.change-listener.enabled=false",
+                "--customer.cache.backend=jdbc")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            return LoadGenerator.run(virtualThreads ? "virtual" : "platform",
+                    "http://localhost:" + port + "/api/v1/customer/",
+                    ids, CLIENTS, WARMUP, MEASURE, Duration.ZERO);
+        }
+    }
+}
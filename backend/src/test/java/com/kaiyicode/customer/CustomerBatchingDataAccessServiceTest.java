@@ -0,0 +1,214 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerBatchingDataAccessServiceTest {
+
+    @Mock
+    private CustomerDAO delegate;
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutorService callers;
+    private CustomerBatchingDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        callers = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (underTest != null) {
+            underTest.close();
+        }
+    }
+
+    @Test
+    void concurrentLookupsOfTheSameIdShareOneQuery() throws Exception {
+        // Given
+        underTest = batching(Duration.ZERO, 100);
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        CountDownLatch querying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.selectCustomerById(1)).thenAnswer(invocation -> {
+            querying.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(alex);
+        });
+        Future<Optional<Customer>> first = callers.submit(() -> underTest.selectCustomerById(1));
+        assertThat(querying.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        List<Future<Optional<Customer>>> followers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            followers.add(callers.submit(() -> underTest.selectCustomerById(1)));
+        }
+        while (meterRegistry.get("customer.batching.coalesced").counter().count() < 10) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        // Then
+        assertThat(first.get(5, TimeUnit.SECONDS)).contains(alex);
+        for (Future<Optional<Customer>> follower : followers) {
+            assertThat(follower.get(5, TimeUnit.SECONDS)).contains(alex);
+        }
+        verify(delegate, times(1)).selectCustomerById(1);
+        assertThat(meterRegistry.get("customer.batching.saved.queries").functionCounter().count()).isEqualTo(10);
+    }
+
+    @Test
+    void lookupAfterAnUpdateDoesNotJoinAnOlderLoad() throws Exception {
+        // Given
+        underTest = batching(Duration.ZERO, 100);
+        Customer before = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE, 0L);
+        Customer after = new Customer(1, "Alex", "alex@gmail.com", 20, Gender.MALE, 1L);
+        CountDownLatch querying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.selectCustomerById(1))
+                .thenAnswer(invocation -> {
+                    querying.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return Optional.of(before);
+                })
+                .thenReturn(Optional.of(after));
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(20);
+        when(delegate.updateCustomer(update)).thenReturn(Optional.of(new CustomerUpdateResult(after, 19)));
+        Future<Optional<Customer>> older = callers.submit(() -> underTest.selectCustomerById(1));
+        assertThat(querying.await(5, TimeUnit.SECONDS)).isTrue();
+        underTest.updateCustomer(update);
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(actual).contains(after);
+        release.countDown();
+        assertThat(older.get(5, TimeUnit.SECONDS)).contains(before);
+        verify(delegate, times(2)).selectCustomerById(1);
+        assertThat(meterRegistry.get("customer.batching.coalesced").counter().count()).isZero();
+    }
+
+    @Test
+    void distinctIdsWithinTheWindowAreLoadedTogether() throws Exception {
+        // Given
+        underTest = batching(Duration.ofMillis(200), 100);
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 21, Gender.FEMALE);
+        when(delegate.selectCustomersByIds(anyCollection())).thenReturn(List.of(alex, jamila));
+
+        // When
+        Future<Optional<Customer>> first = callers.submit(() -> underTest.selectCustomerById(1));
+        Future<Optional<Customer>> second = callers.submit(() -> underTest.selectCustomerById(2));
+        Future<Optional<Customer>> missing = callers.submit(() -> underTest.selectCustomerById(3));
+
+        // Then
+        assertThat(first.get(5, TimeUnit.SECONDS)).contains(alex);
+        assertThat(second.get(5, TimeUnit.SECONDS)).contains(jamila);
+        assertThat(missing.get(5, TimeUnit.SECONDS)).isEmpty();
+        ArgumentCaptor<Collection<Integer>> ids = ArgumentCaptor.captor();
+        verify(delegate).selectCustomersByIds(ids.capture());
+        assertThat(ids.getValue()).containsExactlyInAnyOrder(1, 2, 3);
+        verifyNoMoreInteractions(delegate);
+        assertThat(meterRegistry.get("customer.batching.batch.size").summary().max()).isEqualTo(3);
+    }
+
+    @Test
+    void fullBatchIsLoadedWithoutWaitingForTheWindow() throws Exception {
+        // Given
+        underTest = batching(Duration.ofMinutes(1), 2);
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        when(delegate.selectCustomersByIds(anyCollection())).thenReturn(List.of(alex));
+
+        // When
+        Future<Optional<Customer>> first = callers.submit(() -> underTest.selectCustomerById(1));
+        Future<Optional<Customer>> second = callers.submit(() -> underTest.selectCustomerById(2));
+
+        // Then
+        assertThat(first.get(5, TimeUnit.SECONDS)).contains(alex);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    @Test
+    void failedQueryFailsEveryWaiterAndIsNotRemembered() {
+        // Given
+        underTest = batching(Duration.ZERO, 100);
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        when(delegate.selectCustomerById(1))
+                .thenThrow(new QueryTimeoutException("too slow"))
+                .thenReturn(Optional.of(alex));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.selectCustomerById(1))
+                .isInstanceOf(QueryTimeoutException.class);
+        assertThat(underTest.selectCustomerById(1)).contains(alex);
+    }
+
+    @Test
+    void errorInABatchFailsEveryWaiterInsteadOfLeavingThemHanging() {
+        // Given
+        underTest = batching(Duration.ofMillis(200), 100);
+        when(delegate.selectCustomersByIds(anyCollection())).thenThrow(new StackOverflowError());
+
+        // When
+        Future<Optional<Customer>> first = callers.submit(() -> underTest.selectCustomerById(1));
+        Future<Optional<Customer>> second = callers.submit(() -> underTest.selectCustomerById(2));
+
+        // Then
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(StackOverflowError.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(StackOverflowError.class);
+    }
+
+    @Test
+    void otherCallsAreForwarded() {
+        // Given
+        underTest = batching(Duration.ofMillis(2), 100);
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        when(delegate.selectCustomersByIds(List.of(1))).thenReturn(List.of(alex));
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1));
+
+        // Then
+        assertThat(actual).containsExactly(alex);
+        assertThat(meterRegistry.get("customer.batching.lookups").counter().count()).isZero();
+    }
+
+    private CustomerBatchingDataAccessService batching(Duration window, int maxBatchSize) {
+        return new CustomerBatchingDataAccessService(delegate, meterRegistry, window, maxBatchSize);
+    }
+}
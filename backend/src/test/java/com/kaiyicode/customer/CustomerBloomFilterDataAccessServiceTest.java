@@ -0,0 +1,253 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerBloomFilterDataAccessServiceTest {
+
+    private CustomerBloomFilterDataAccessService underTest;
+    private MeterRegistry meterRegistry;
+    private AutoCloseable autoCloseable;
+    @Mock private CustomerDAO delegate;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new CustomerBloomFilterDataAccessService(
+                delegate, transactionManager, new SyncTaskExecutor(), meterRegistry, 1000, 0.01);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void existsCustomerWithEmailGoesToDelegateBeforeFirstRebuild() {
+        // Given
+        when(delegate.existsCustomerWithEmail("alex@gmail.com")).thenReturn(true);
+
+        // When
+        boolean actual = underTest.existsCustomerWithEmail("alex@gmail.com");
+
+        // Then
+        assertThat(actual).isTrue();
+        verify(delegate).existsCustomerWithEmail("alex@gmail.com");
+    }
+
+    @Test
+    void existsCustomerWithEmailSkipsDelegateWhenDefinitelyAbsent() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.of("alex@gmail.com"));
+        underTest.rebuild();
+
+        // When
+        boolean actual = underTest.existsCustomerWithEmail("jamila@gmail.com");
+
+        // Then
+        assertThat(actual).isFalse();
+        verify(delegate, never()).existsCustomerWithEmail(anyString());
+        assertThat(meterRegistry.get("customer.email.filter.lookups").tag("result", "absent").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void existsCustomerWithEmailAsksDelegateWhenPossiblyPresent() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.of("alex@gmail.com"));
+        when(delegate.existsCustomerWithEmail("alex@gmail.com")).thenReturn(true);
+        underTest.rebuild();
+
+        // When
+        boolean actual = underTest.existsCustomerWithEmail("alex@gmail.com");
+
+        // Then
+        assertThat(actual).isTrue();
+        verify(delegate).existsCustomerWithEmail("alex@gmail.com");
+    }
+
+    @Test
+    void selectExistingEmailsOnlyQueriesPossiblyPresentEmails() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.of("alex@gmail.com"));
+        when(delegate.selectExistingEmails(List.of("alex@gmail.com"))).thenReturn(Set.of("alex@gmail.com"));
+        underTest.rebuild();
+
+        // When
+        Set<String> actual = underTest.selectExistingEmails(List.of("alex@gmail.com", "jamila@gmail.com"));
+
+        // Then
+        assertThat(actual).containsExactly("alex@gmail.com");
+        verify(delegate).selectExistingEmails(List.of("alex@gmail.com"));
+    }
+
+    @Test
+    void selectExistingEmailsSkipsDelegateWhenAllAbsent() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.empty());
+        underTest.rebuild();
+
+        // When
+        Set<String> actual = underTest.selectExistingEmails(List.of("jamila@gmail.com"));
+
+        // Then
+        assertThat(actual).isEmpty();
+        verify(delegate, never()).selectExistingEmails(any());
+    }
+
+    @Test
+    void insertCustomerAddsEmailToFilter() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.empty());
+        underTest.rebuild();
+        Customer customer = new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE);
+        when(delegate.insertCustomer(customer)).thenReturn(true);
+        when(delegate.existsCustomerWithEmail("jamila@gmail.com")).thenReturn(true);
+
+        // When
+        boolean inserted = underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(inserted).isTrue();
+        assertThat(underTest.existsCustomerWithEmail("jamila@gmail.com")).isTrue();
+        verify(delegate).existsCustomerWithEmail("jamila@gmail.com");
+    }
+
+    @Test
+    void insertCustomersAddsEmailsToFilter() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.empty());
+        underTest.rebuild();
+        List<Customer> customers = List.of(
+                new Customer("Alex", "alex@gmail.com", 21, Gender.MALE),
+                new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE));
+        when(delegate.insertCustomers(customers)).thenReturn(new int[]{1, 1});
+        when(delegate.selectExistingEmails(any())).thenReturn(Set.of("alex@gmail.com", "jamila@gmail.com"));
+
+        // When
+        underTest.insertCustomers(customers);
+
+        // Then
+        assertThat(underTest.selectExistingEmails(List.of("alex@gmail.com", "jamila@gmail.com")))
+                .containsExactlyInAnyOrder("alex@gmail.com", "jamila@gmail.com");
+    }
+
+    @Test
+    void updateCustomerAddsNewEmailToFilter() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.of("alex@gmail.com"));
+        underTest.rebuild();
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alex@example.com");
+        when(delegate.updateCustomer(update)).thenReturn(Optional.of(new CustomerUpdateResult(
+                new Customer(1, "Alex", "alex@example.com", 21, Gender.MALE, 1L), 21)));
+        when(delegate.existsCustomerWithEmail("alex@example.com")).thenReturn(true);
+
+        // When
+        underTest.updateCustomer(update);
+
+        // Then
+        assertThat(underTest.existsCustomerWithEmail("alex@example.com")).isTrue();
+        assertThat(meterRegistry.get("customer.email.filter.stale.entries").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void deleteCustomerByIdCountsStaleEntry() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.of("alex@gmail.com"));
+        underTest.rebuild();
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L);
+        when(delegate.deleteCustomerById(1)).thenReturn(Optional.of(alex));
+
+        // When
+        Optional<Customer> deleted = underTest.deleteCustomerById(1);
+
+        // Then
+        assertThat(deleted).contains(alex);
+        assertThat(meterRegistry.get("customer.email.filter.stale.entries").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void rebuildPublishesMetrics() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.of("alex@gmail.com", "jamila@gmail.com"));
+
+        // When
+        underTest.rebuild();
+
+        // Then
+        assertThat(meterRegistry.get("customer.email.filter.rebuild").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("customer.email.filter.memory").gauge().value()).isPositive();
+        assertThat(meterRegistry.get("customer.email.filter.expected.fpp").gauge().value()).isLessThan(0.01);
+    }
+
+    @Test
+    void customerChangedEventAddsEmailsWrittenElsewhere() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.empty());
+        underTest.rebuild();
+        when(delegate.selectCustomersByIds(Set.of(2))).thenReturn(List.of(
+                new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE, 0L)));
+        when(delegate.existsCustomerWithEmail("jamila@gmail.com")).thenReturn(true);
+
+        // When
+        underTest.onCustomersChanged(CustomerChangedEvent.of(Set.of(2)));
+
+        // Then
+        assertThat(underTest.existsCustomerWithEmail("jamila@gmail.com")).isTrue();
+    }
+
+    @Test
+    void customerChangedEventForAllCustomersTriggersRebuild() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.empty()).thenReturn(Stream.of("alex@gmail.com"));
+        underTest.rebuild();
+
+        // When
+        underTest.onCustomersChanged(CustomerChangedEvent.all());
+
+        // Then
+        verify(delegate, times(2)).streamAllEmails();
+    }
+
+    @Test
+    void importCompletedTriggersRebuild() {
+        // Given
+        when(delegate.streamAllEmails()).thenReturn(Stream.empty()).thenReturn(Stream.of("alex@gmail.com"));
+        underTest.rebuild();
+
+        // When
+        underTest.onImportCompleted(new CustomerImportCompletedEvent(UUID.randomUUID(), 1));
+
+        // Then
+        verify(delegate, times(2)).streamAllEmails();
+        when(delegate.existsCustomerWithEmail("alex@gmail.com")).thenReturn(true);
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isTrue();
+    }
+}
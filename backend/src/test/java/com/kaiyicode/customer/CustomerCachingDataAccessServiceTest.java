@@ -0,0 +1,254 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerCachingDataAccessServiceTest {
+
+    private CustomerCachingDataAccessService underTest;
+    private MeterRegistry meterRegistry;
+    private AutoCloseable autoCloseable;
+    @Mock private CustomerDAO delegate;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = newCache(100);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    private CustomerCachingDataAccessService newCache(long maximumSize) {
+        return new CustomerCachingDataAccessService(
+                new StaticListableBeanFactory(Map.of("jdbc", delegate)),
+                meterRegistry,
+                "jdbc",
+                maximumSize,
+                Duration.ofMinutes(10),
+                Duration.ofSeconds(30));
+    }
+
+    @Test
+    void selectCustomerByIdLoadsOnce() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L);
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+
+        // When
+        Optional<Customer> first = underTest.selectCustomerById(1);
+        Optional<Customer> second = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(first).contains(alex);
+        assertThat(second).contains(alex);
+        verify(delegate, times(1)).selectCustomerById(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void selectCustomerByIdCachesMissingIds() {
+        // Given
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.empty());
+
+        // When
+        underTest.selectCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.existsCustomerWithId(1)).isFalse();
+        verify(delegate, times(1)).selectCustomerById(1);
+    }
+
+    @Test
+    void selectCustomersByIdsOnlyLoadsMisses() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE, 0L);
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        when(delegate.selectCustomersByIds(Set.of(2, 3))).thenReturn(List.of(jamila));
+        underTest.selectCustomerById(1);
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1, 2, 3));
+
+        // Then
+        assertThat(actual).containsExactly(alex, jamila);
+        verify(delegate).selectCustomersByIds(Set.of(2, 3));
+        assertThat(underTest.selectCustomerById(3)).isEmpty();
+        verify(delegate, times(0)).selectCustomerById(3);
+    }
+
+    @Test
+    void updateCustomerEvictsEntry() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L);
+        Customer updated = new Customer(1, "Alexander", "alex@gmail.com", 21, Gender.MALE, 1L);
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex), Optional.of(updated));
+        Customer update = new Customer();
+        update.setId(1);
+        update.setName("Alexander");
+        when(delegate.updateCustomer(update)).thenReturn(Optional.of(new CustomerUpdateResult(updated, 21)));
+        underTest.selectCustomerById(1);
+
+        // When
+        underTest.updateCustomer(update);
+
+        // Then
+        assertThat(underTest.selectCustomerById(1)).contains(updated);
+        verify(delegate, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void deleteCustomerByIdEvictsEntry() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L);
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex), Optional.empty());
+        when(delegate.deleteCustomerById(1)).thenReturn(Optional.of(alex));
+        underTest.selectCustomerById(1);
+
+        // When
+        underTest.deleteCustomerById(1);
+
+        // Then
+        assertThat(underTest.selectCustomerById(1)).isEmpty();
+        verify(delegate, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void insertCustomerEvictsNegativeEntry() {
+        // Given
+        Customer jamila = new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE);
+        when(delegate.selectCustomerById(2)).thenReturn(Optional.empty(), Optional.of(jamila));
+        when(delegate.insertCustomer(jamila)).thenAnswer(invocation -> {
+            jamila.setId(2);
+            return true;
+        });
+        underTest.selectCustomerById(2);
+
+        // When
+        underTest.insertCustomer(jamila);
+
+        // Then
+        assertThat(underTest.selectCustomerById(2)).contains(jamila);
+    }
+
+    @Test
+    void insertCustomersEvictsNegativeEntries() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE, 0L);
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        when(delegate.selectCustomerById(2)).thenReturn(Optional.empty(), Optional.of(jamila));
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+        List<Customer> batch = List.of(new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE));
+        when(delegate.insertCustomers(batch)).thenReturn(new int[]{1});
+
+        // When
+        underTest.insertCustomers(batch);
+
+        // Then
+        assertThat(underTest.selectCustomerById(2)).contains(jamila);
+        underTest.selectCustomerById(1);
+        verify(delegate, times(1)).selectCustomerById(1);
+    }
+
+    @Test
+    void importCompletedEvictsNegativeEntries() {
+        // Given
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE, 0L);
+        when(delegate.selectCustomerById(2)).thenReturn(Optional.empty(), Optional.of(jamila));
+        underTest.selectCustomerById(2);
+
+        // When
+        underTest.onImportCompleted(new CustomerImportCompletedEvent(UUID.randomUUID(), 1));
+
+        // Then
+        assertThat(underTest.selectCustomerById(2)).contains(jamila);
+    }
+
+    @Test
+    void customerChangedEventEvictsIds() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE, 0L);
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        when(delegate.selectCustomerById(2)).thenReturn(Optional.of(jamila));
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+
+        // When
+        underTest.onCustomersChanged(CustomerChangedEvent.of(Set.of(1)));
+
+        // Then
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+        verify(delegate, times(2)).selectCustomerById(1);
+        verify(delegate, times(1)).selectCustomerById(2);
+    }
+
+    @Test
+    void customerChangedEventForAllCustomersEvictsEverything() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L);
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        when(delegate.selectCustomerById(2)).thenReturn(Optional.empty());
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+
+        // When
+        underTest.onCustomersChanged(CustomerChangedEvent.all());
+
+        // Then
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+        verify(delegate, times(2)).selectCustomerById(1);
+        verify(delegate, times(2)).selectCustomerById(2);
+    }
+
+    @Test
+    void evictsWhenMaximumSizeIsReached() {
+        // Given
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = newCache(10);
+        for (int id = 1; id <= 1000; id++) {
+            when(delegate.selectCustomerById(id)).thenReturn(Optional.empty());
+        }
+
+        // When
+        for (int id = 1; id <= 1000; id++) {
+            underTest.selectCustomerById(id);
+        }
+
+        // Then
+        double evictions = meterRegistry.find("cache.evictions").functionCounters()
+                .stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+        assertThat(evictions).isPositive();
+    }
+}
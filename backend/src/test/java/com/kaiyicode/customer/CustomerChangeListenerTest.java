@@ -0,0 +1,167 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.AbstractTestcontainers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerChangeListenerTest extends AbstractTestcontainers {
+
+    private final BlockingQueue<CustomerChangedEvent> events = new LinkedBlockingQueue<>();
+    private CustomerChangeListener underTest;
+    private CustomerJDBCDataAccessService customerDAO;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        jdbcTemplate = getJdbcTemplate();
+        customerDAO = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper(), 100);
+        underTest = new CustomerChangeListener(
+                postgreSQLContainer.getJdbcUrl(),
+                postgreSQLContainer.getUsername(),
+                postgreSQLContainer.getPassword(),
+                event -> events.add((CustomerChangedEvent) event),
+                Duration.ofMillis(50)
+        );
+        underTest.start();
+        awaitConnected();
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.stop();
+    }
+
+    @Test
+    void publishesIdsOfInsertedUpdatedAndDeletedCustomers() throws InterruptedException {
+        // Given
+        Customer customer = newCustomer();
+
+        // When
+        customerDAO.insertCustomer(customer);
+        CustomerChangedEvent inserted = awaitEventFor(customer.getId());
+
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setName("Renamed");
+        customerDAO.updateCustomer(update);
+        CustomerChangedEvent updated = awaitEventFor(customer.getId());
+
+        customerDAO.deleteCustomerById(customer.getId());
+        CustomerChangedEvent deleted = awaitEventFor(customer.getId());
+
+        // Then
+        assertThat(inserted.allCustomers()).isFalse();
+        assertThat(updated.allCustomers()).isFalse();
+        assertThat(deleted.allCustomers()).isFalse();
+    }
+
+    @Test
+    void coalescesBurstsIntoOneEvent() throws InterruptedException {
+        // Given
+        List<Customer> customers = IntStream.range(0, 20)
+                .mapToObj(i -> newCustomer())
+                .toList();
+
+        // When
+        customers.forEach(customerDAO::insertCustomer);
+
+        // Then
+        Set<Integer> expected = new HashSet<>(customers.stream().map(Customer::getId).toList());
+        Set<Integer> received = new HashSet<>();
+        int eventCount = 0;
+        while (!received.containsAll(expected)) {
+            CustomerChangedEvent event = events.poll(10, TimeUnit.SECONDS);
+            assertThat(event).isNotNull();
+            received.addAll(event.ids());
+            eventCount++;
+        }
+        assertThat(eventCount).isLessThan(customers.size());
+    }
+
+    @Test
+    void largeStatementsAskForFullFlush() throws InterruptedException {
+        // Given
+        List<Customer> customers = IntStream.range(0, 600)
+                .mapToObj(i -> newCustomer())
+                .toList();
+        customerDAO.insertCustomers(customers);
+        drain();
+
+        // When
+        jdbcTemplate.update("UPDATE customer SET age = age");
+
+        // Then
+        assertThat(awaitFullFlush()).isTrue();
+    }
+
+    @Test
+    void reconnectsAndAsksForFullFlush() throws InterruptedException {
+        // Given
+        drain();
+
+        // When
+        jdbcTemplate.queryForList(
+                "SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE application_name = ?",
+                CustomerChangeListener.APPLICATION_NAME);
+
+        // Then
+        assertThat(awaitFullFlush()).isTrue();
+        assertThat(underTest.isConnected()).isTrue();
+    }
+
+    private Customer newCustomer() {
+        return new Customer(
+                faker.name().fullName(),
+                faker.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE);
+    }
+
+    private CustomerChangedEvent awaitEventFor(Integer id) throws InterruptedException {
+        while (true) {
+            CustomerChangedEvent event = events.poll(10, TimeUnit.SECONDS);
+            assertThat(event).isNotNull();
+            if (event.ids().contains(id)) {
+                return event;
+            }
+        }
+    }
+
+    private boolean awaitFullFlush() throws InterruptedException {
+        CustomerChangedEvent event;
+        while ((event = events.poll(30, TimeUnit.SECONDS)) != null) {
+            if (event.allCustomers()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void drain() throws InterruptedException {
+        // let notifications of earlier statements arrive before clearing them
+        Thread.sleep(500);
+        events.clear();
+    }
+
+    private void awaitConnected() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!underTest.isConnected() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(underTest.isConnected()).isTrue();
+    }
+}
@@ -0,0 +1,147 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerChangeTrackerTest extends AbstractTestcontainers {
+
+    private JdbcTemplate jdbcTemplate;
+    private CustomerJDBCDataAccessService customerDAO;
+    private CustomerChangeTracker underTest;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = getJdbcTemplate();
+        customerDAO = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper(), 100);
+        underTest = new CustomerChangeTracker(jdbcTemplate);
+    }
+
+    @Test
+    void customersETagIsStableWithoutChanges() {
+        // When
+        String first = underTest.customersETag();
+        String second = underTest.customersETag();
+
+        // Then
+        assertThat(first).isEqualTo(second).startsWith("\"").endsWith("\"");
+        assertThat(new CustomerChangeTracker(jdbcTemplate).customersETag()).isEqualTo(first);
+    }
+
+    @Test
+    void customersETagMovesWithEveryChange() {
+        // Given
+        String before = underTest.customersETag();
+        Customer customer = newCustomer();
+
+        // When
+        customerDAO.insertCustomer(customer);
+        String inserted = underTest.customersETag();
+        customerDAO.deleteCustomerById(customer.getId());
+        String deleted = underTest.customersETag();
+
+        // Then
+        assertThat(inserted).isNotEqualTo(before);
+        assertThat(deleted).isNotEqualTo(inserted).isNotEqualTo(before);
+    }
+
+    @Test
+    void changeThatCommitsLastMovesTheTagEvenIfItStartedFirst() throws Exception {
+        // Given
+        TransactionTemplate transactions =
+                new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        JdbcTemplate slowTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> transactions.executeWithoutResult(status -> {
+            new CustomerJDBCDataAccessService(slowTemplate, new CustomerRowMapper(), 100)
+                    .insertCustomer(newCustomer());
+            written.countDown();
+            try {
+                commit.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertThat(written.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        // not held up by the open transaction
+        customerDAO.insertCustomer(newCustomer());
+        String beforeSlowCommit = underTest.customersETag();
+        commit.countDown();
+        slow.get(10, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(underTest.customersETag()).isNotEqualTo(beforeSlowCommit);
+    }
+
+    @Test
+    void foldingChangesKeepsTheTag() {
+        // Given
+        customerDAO.insertCustomer(newCustomer());
+        String eTag = underTest.customersETag();
+
+        // When
+        underTest.foldChanges();
+
+        // Then
+        assertThat(underTest.customersETag()).isEqualTo(eTag);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM customer_change", Long.class)).isZero();
+    }
+
+    @Test
+    void customerTagIsReadWithoutTheRowAndFollowsIt() {
+        // Given
+        Customer customer = newCustomer();
+        customerDAO.insertCustomer(customer);
+        CustomerChangeTracker.CustomerTag tag = underTest.customerTag(customer.getId()).orElseThrow();
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setAge(21);
+
+        // When
+        Customer updated = customerDAO.updateCustomer(update).orElseThrow().customer();
+
+        // Then
+        assertThat(tag.eTag()).startsWith("\"").endsWith("\"");
+        assertThat(tag.describes(customer)).isTrue();
+        assertThat(tag.describes(updated)).isFalse();
+        assertThat(underTest.customerTag(customer.getId())).hasValueSatisfying(current -> {
+            assertThat(current.eTag()).isNotEqualTo(tag.eTag());
+            assertThat(current.describes(updated)).isTrue();
+        });
+        assertThat(new CustomerChangeTracker(jdbcTemplate).customerTag(customer.getId()))
+                .isEqualTo(underTest.customerTag(customer.getId()));
+    }
+
+    @Test
+    void missingCustomerHasNoTag() {
+        // Given
+        Customer customer = newCustomer();
+        customerDAO.insertCustomer(customer);
+        customerDAO.deleteCustomerById(customer.getId());
+
+        // When
+        // Then
+        assertThat(underTest.customerTag(customer.getId())).isEmpty();
+    }
+
+    private static Customer newCustomer() {
+        return new Customer(
+                faker.name().fullName(),
+                faker.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE);
+    }
+}
@@ -0,0 +1,709 @@
+package com.kaiyicode.customer;
+
+import com.github.javafaker.Faker;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// behaviour every CustomerDAO backend must share; tests tolerate rows left
+// behind by other tests so implementations can run them against shared storage
+interface CustomerDAOContract {
+    Faker faker = new Faker();
+
+    CustomerDAO underTest();
+
+    @Test
+    default void selectAllCustomers() {
+        // Given
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                faker.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+
+        // When
+        List<Customer> actual = underTest().selectAllCustomers();
+
+        // Then
+        assertThat(actual).isNotEmpty();
+
+    }
+
+    @Test
+    default void selectCustomersAfterId() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        int id = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        List<Customer> actual = underTest().selectCustomersAfterId(id - 1, 1);
+
+        // Then
+        assertThat(actual).hasSize(1);
+        assertThat(actual.get(0).getId()).isEqualTo(id);
+        assertThat(underTest().selectCustomersAfterId(id, 10))
+                .allSatisfy(c -> assertThat(c.getId()).isGreaterThan(id))
+                .isSortedAccordingTo(Comparator.comparing(Customer::getId));
+    }
+
+    @Test
+    default void streamAllCustomers() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+
+        // When
+        List<Customer> actual;
+        try (Stream<Customer> customers = underTest().streamAllCustomers()) {
+            actual = customers.toList();
+        }
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getEmail)
+                .contains(email);
+        assertThat(actual).isSortedAccordingTo(Comparator.comparing(Customer::getId));
+    }
+
+    @Test
+    default void streamAllEmails() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+
+        // When
+        List<String> actual;
+        try (Stream<String> emails = underTest().streamAllEmails()) {
+            actual = emails.toList();
+        }
+
+        // Then
+        assertThat(actual).contains(email);
+    }
+
+    @Test
+    default void selectCustomerById() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        int id = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        Optional<Customer> actual = underTest().selectCustomerById(id);
+
+        // Then
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+            assertThat(c.getAge()).isEqualTo(customer.getAge());
+        });
+    }
+
+    @Test
+    default void selectCustomersByIds() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        int id = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        List<Customer> actual = underTest().selectCustomersByIds(List.of(id, -1));
+
+        // Then
+        assertThat(actual).singleElement().satisfies(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getEmail()).isEqualTo(email);
+        });
+    }
+
+    @Test
+    default void returnEmptyWhenCustomerDoesNotExist() {
+        // Given
+        int id = -1;
+
+        // When
+        Optional<Customer> actual = underTest().selectCustomerById(id);
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    default void existsCustomerWithEmail() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+
+        // When
+        var actual = underTest().existsCustomerWithEmail(email);
+
+        // Then
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    default void insertCustomersSkipsTakenEmails() {
+        // Given
+        String takenEmail = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String newEmail = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest().insertCustomer(new Customer(
+                faker.name().fullName(),
+                takenEmail,
+                20,
+                Gender.MALE));
+
+        // When
+        int[] actual = underTest().insertCustomers(List.of(
+                new Customer(faker.name().fullName(), takenEmail, 30, Gender.FEMALE),
+                new Customer(faker.name().fullName(), newEmail, 30, Gender.FEMALE)));
+
+        // Then
+        assertThat(actual).containsExactly(0, 1);
+        assertThat(underTest().existsCustomerWithEmail(newEmail)).isTrue();
+    }
+
+    @Test
+    default void selectExistingEmails() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String unknownEmail = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest().insertCustomer(new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE));
+
+        // When
+        var actual = underTest().selectExistingEmails(List.of(email, unknownEmail));
+
+        // Then
+        assertThat(actual).containsExactly(email);
+    }
+
+    @Test
+    default void returnFalseWhenCustomerWithEmailDoesNotExist() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // When
+        var actual = underTest().existsCustomerWithEmail(email);
+
+        // Then
+        assertThat(actual).isFalse();
+    }
+
+    @Test
+    default void existsCustomerWithId() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        int id = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        var actual = underTest().existsCustomerWithId(id);
+
+        // Then
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    default void returnFalseWhenCustomerWithIdDoesNotExist() {
+        // Given
+        int id = -1;
+
+        // When
+        var actual = underTest().existsCustomerWithId(id);
+
+        // Then
+        assertThat(actual).isFalse();
+    }
+
+    @Test
+    default void deleteCustomerById() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        int id = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        var deleted = underTest().deleteCustomerById(id);
+
+        // Then
+        assertThat(deleted).hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getEmail()).isEqualTo(email);
+        });
+        var actual = underTest().selectCustomerById(id);
+        assertThat(actual).isNotPresent();
+    }
+
+    @Test
+    default void updateCustomerName() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        int id = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        var newName = "foo";
+
+        // When
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName(newName);
+
+        underTest().updateCustomer(update);
+
+        // Then
+        var actual = underTest().selectCustomerById(id);
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(newName);
+            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+            assertThat(c.getAge()).isEqualTo(customer.getAge());
+        });
+    }
+
+    @Test
+    default void updateCustomerEmail() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        int id = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        var newEmail = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // When
+        Customer update = new Customer();
+        update.setId(id);
+        update.setEmail(newEmail);
+
+        underTest().updateCustomer(update);
+
+        // Then
+        var actual = underTest().selectCustomerById(id);
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getEmail()).isEqualTo(newEmail);
+            assertThat(c.getAge()).isEqualTo(customer.getAge());
+        });
+    }
+
+    @Test
+    default void updateCustomerAge() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        int id = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        var newAge = 25;
+
+        // When
+        Customer update = new Customer();
+        update.setId(id);
+        update.setAge(25);
+
+        underTest().updateCustomer(update);
+
+        // Then
+        var actual = underTest().selectCustomerById(id);
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+            assertThat(c.getAge()).isEqualTo(newAge);
+        });
+    }
+
+    @Test
+    default void updateAllPropertiesCustomer() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        int id = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        var newName = "foo";
+        var newEmail = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        var newAge = 25;
+
+        // When
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName(newName);
+        update.setEmail(newEmail);
+        update.setAge(newAge);
+
+        underTest().updateCustomer(update);
+
+        // Then
+        var actual = underTest().selectCustomerById(id);
+        assertThat(actual).isPresent().hasValueSatisfying(updated -> {
+            assertThat(updated.getId()).isEqualTo(id);
+            assertThat(updated.getGender()).isEqualTo(Gender.MALE);
+            assertThat(updated.getName()).isEqualTo(newName);
+            assertThat(updated.getEmail()).isEqualTo(newEmail);
+            assertThat(updated.getAge()).isEqualTo(newAge);
+        });
+    }
+
+    @Test
+    default void updateCustomerWithExpectedVersionBumpsVersion() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        Customer inserted = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .findFirst()
+                .orElseThrow();
+
+        Customer update = new Customer();
+        update.setId(inserted.getId());
+        update.setAge(30);
+        update.setVersion(inserted.getVersion());
+
+        // When
+        var actual = underTest().updateCustomer(update);
+
+        // Then
+        assertThat(actual).isPresent().hasValueSatisfying(result -> {
+            assertThat(result.customer().getAge()).isEqualTo(30);
+            assertThat(result.customer().getVersion()).isEqualTo(inserted.getVersion() + 1);
+            assertThat(result.previousAge()).isEqualTo(20);
+        });
+    }
+
+    @Test
+    default void doNotUpdateWhenVersionIsStale() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        Customer inserted = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .findFirst()
+                .orElseThrow();
+
+        Customer update = new Customer();
+        update.setId(inserted.getId());
+        update.setAge(30);
+        update.setVersion(inserted.getVersion() + 1);
+
+        // When
+        var actual = underTest().updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest().selectCustomerById(inserted.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(20));
+    }
+
+    @Test
+    default void doNotUpdateWhenValuesAreUnchanged() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        Customer inserted = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .findFirst()
+                .orElseThrow();
+
+        Customer update = new Customer();
+        update.setId(inserted.getId());
+        update.setAge(20);
+
+        // When
+        var actual = underTest().updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    default void doNotUpdateWhenNothingChanged() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest().insertCustomer(customer);
+        int id = underTest().selectAllCustomers().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // When
+        Customer update = new Customer();
+        update.setId(id);
+
+        underTest().updateCustomer(update);
+
+        // Then
+        var actual = underTest().selectCustomerById(id);
+        assertThat(actual).isPresent().hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getName()).isEqualTo(customer.getName());
+            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+            assertThat(c.getAge()).isEqualTo(customer.getAge());
+        });
+    }
+
+    @Test
+    default void insertCustomer() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+
+        // When
+        var actual = underTest().insertCustomer(customer);
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(customer.getId()).isNotNull();
+        assertThat(underTest().selectCustomerById(customer.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    default void insertCustomerReturnsFalseWhenEmailIsTaken() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest().insertCustomer(new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE));
+
+        // When
+        var actual = underTest().insertCustomer(new Customer(
+                faker.name().fullName(),
+                email,
+                30,
+                Gender.FEMALE));
+
+        // Then
+        assertThat(actual).isFalse();
+    }
+
+    @Test
+    default void deleteCustomerByIdReturnsEmptyWhenCustomerDoesNotExist() {
+        // Given
+        int id = -1;
+
+        // When
+        var actual = underTest().deleteCustomerById(id);
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    default void selectCustomersFiltersByGenderAndAgeRange() {
+        // Given
+        int alex = givenCustomer("alex", 910, Gender.MALE);
+        givenCustomer("bea", 911, Gender.FEMALE);
+        int cy = givenCustomer("cy", 912, Gender.MALE);
+        givenCustomer("dan", 913, Gender.MALE);
+        CustomerQuery query = new CustomerQuery(
+                Gender.MALE, 910, 912, CustomerQuery.SortField.ID, false, null, 10);
+
+        // When
+        List<Customer> actual = underTest().selectCustomers(query);
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(alex, cy);
+    }
+
+    @Test
+    default void selectCustomersPagesByNameWithKeyset() {
+        // Given
+        int cy = givenCustomer("cy", 920, Gender.MALE);
+        int alex = givenCustomer("alex", 921, Gender.MALE);
+        int bea = givenCustomer("bea", 922, Gender.FEMALE);
+        int otherBea = givenCustomer("bea", 923, Gender.FEMALE);
+        CustomerQuery firstPage = new CustomerQuery(
+                null, 920, 929, CustomerQuery.SortField.NAME, false, null, 2);
+
+        // When
+        List<Customer> first = underTest().selectCustomers(firstPage);
+        List<Customer> second = underTest().selectCustomers(new CustomerQuery(
+                null, 920, 929, CustomerQuery.SortField.NAME, false, first.get(1), 2));
+
+        // Then
+        assertThat(first).extracting(Customer::getId).containsExactly(alex, bea);
+        assertThat(second).extracting(Customer::getId).containsExactly(otherBea, cy);
+    }
+
+    @Test
+    default void selectCustomersPagesByAgeDescending() {
+        // Given
+        int youngest = givenCustomer("alex", 930, Gender.MALE);
+        int first = givenCustomer("bea", 932, Gender.FEMALE);
+        int second = givenCustomer("cy", 932, Gender.MALE);
+        int middle = givenCustomer("dan", 931, Gender.MALE);
+        CustomerQuery firstPage = new CustomerQuery(
+                null, 930, 939, CustomerQuery.SortField.AGE, true, null, 3);
+
+        // When
+        List<Customer> page = underTest().selectCustomers(firstPage);
+        List<Customer> rest = underTest().selectCustomers(new CustomerQuery(
+                null, 930, 939, CustomerQuery.SortField.AGE, true, page.get(2), 3));
+
+        // Then
+        assertThat(page).extracting(Customer::getId).containsExactly(second, first, middle);
+        assertThat(rest).extracting(Customer::getId).containsExactly(youngest);
+    }
+
+    @Test
+    default void countCustomersByGenderAndAge() {
+        // Given
+        givenCustomer("alex", 950, Gender.MALE);
+        givenCustomer("ali", 950, Gender.MALE);
+        givenCustomer("bea", 950, Gender.FEMALE);
+
+        // When
+        List<CustomerCount> actual = underTest().countCustomersByGenderAndAge();
+
+        // Then
+        assertThat(actual)
+                .filteredOn(count -> count.age() == 950)
+                .containsExactlyInAnyOrder(
+                        new CustomerCount(Gender.MALE, 950, 2),
+                        new CustomerCount(Gender.FEMALE, 950, 1));
+    }
+
+    private int givenCustomer(String name, int age, Gender gender) {
+        Customer customer = new Customer(
+                name,
+                faker.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                age,
+                gender);
+        underTest().insertCustomer(customer);
+        return customer.getId();
+    }
+}
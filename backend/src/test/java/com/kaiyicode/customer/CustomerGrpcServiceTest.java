@@ -0,0 +1,345 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.customer.grpc.CustomerProto;
+import com.kaiyicode.customer.grpc.CustomerProto.BulkRegistrationResponse;
+import com.kaiyicode.customer.grpc.CustomerProto.BulkRegistrationResult;
+import com.kaiyicode.customer.grpc.CustomerProto.ExportCustomersRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.GetCustomerRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.ListCustomersRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.RegistrationRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.UpdateCustomerRequest;
+import com.kaiyicode.customer.grpc.CustomerServiceGrpc;
+import com.kaiyicode.exception.ResourceNotFoundException;
+import com.kaiyicode.exception.StaleResourceException;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerGrpcServiceTest {
+
+    @Mock
+    private CustomerService customerService;
+    private CustomerGrpcService underTest;
+    private Server server;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        underTest = new CustomerGrpcService(customerService, 2, Duration.ofSeconds(1));
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(underTest)
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+        underTest.close();
+    }
+
+    @Test
+    void getsCustomer() {
+        // Given
+        when(customerService.getCustomer(1))
+                .thenReturn(new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE, 3L));
+
+        // When
+        CustomerProto.Customer actual = CustomerServiceGrpc.newBlockingStub(channel)
+                .getCustomer(GetCustomerRequest.newBuilder().setId(1).build());
+
+        // Then
+        assertThat(actual).isEqualTo(CustomerProto.Customer.newBuilder()
+                .setId(1)
+                .setName("Alex")
+                .setEmail("alex@gmail.com")
+                .setAge(19)
+                .setGender(CustomerProto.Gender.MALE)
+                .setVersion(3L)
+                .build());
+    }
+
+    @Test
+    void mapsServiceExceptionsToStatusCodes() {
+        // Given
+        when(customerService.getCustomer(2))
+                .thenThrow(new ResourceNotFoundException("customer with [2] not found"));
+        when(customerService.updateCustomer(eq(2), any()))
+                .thenThrow(new StaleResourceException("customer with [2] was changed by someone else"));
+        CustomerServiceGrpc.CustomerServiceBlockingStub stub = CustomerServiceGrpc.newBlockingStub(channel);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> stub.getCustomer(GetCustomerRequest.newBuilder().setId(2).build()))
+                .isInstanceOfSatisfying(StatusRuntimeException.class, e -> {
+                    assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.NOT_FOUND);
+                    assertThat(e.getStatus().getDescription()).isEqualTo("customer with [2] not found");
+                });
+        assertThatThrownBy(() -> stub.updateCustomer(UpdateCustomerRequest.newBuilder().setId(2).setAge(20).build()))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.ABORTED));
+    }
+
+    @Test
+    void unsetUpdateFieldsAreLeftUnchanged() {
+        // Given
+        when(customerService.updateCustomer(eq(1), any()))
+                .thenReturn(new Customer(1, "Alex", "alex@gmail.com", 20, Gender.MALE, 4L));
+
+        // When
+        CustomerServiceGrpc.newBlockingStub(channel).updateCustomer(
+                UpdateCustomerRequest.newBuilder().setId(1).setAge(20).setVersion(3L).build());
+
+        // Then
+        verify(customerService).updateCustomer(1, new CustomerUpdateRequest(null, null, 20, 3L));
+    }
+
+    @Test
+    void listsEveryPage() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 21, Gender.FEMALE);
+        when(customerService.getCustomers(isNull(), eq(1), isNull(), eq(18), isNull(), eq("age"), eq("asc")))
+                .thenReturn(new CustomerPage(List.of(alex), "next"));
+        when(customerService.getCustomers(eq("next"), eq(1), isNull(), eq(18), isNull(), eq("age"), eq("asc")))
+                .thenReturn(new CustomerPage(List.of(jamila), null));
+
+        // When
+        List<Integer> ids = new ArrayList<>();
+        CustomerServiceGrpc.newBlockingStub(channel)
+                .listCustomers(ListCustomersRequest.newBuilder()
+                        .setMinAge(18)
+                        .setSort("age")
+                        .setPageSize(1)
+                        .build())
+                .forEachRemaining(customer -> ids.add(customer.getId()));
+
+        // Then
+        assertThat(ids).containsExactly(1, 2);
+    }
+
+    @Test
+    void rejectsUnspecifiedGenderFilter() {
+        // Given
+        ListCustomersRequest request = ListCustomersRequest.newBuilder()
+                .setGender(CustomerProto.Gender.GENDER_UNSPECIFIED)
+                .build();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> CustomerServiceGrpc.newBlockingStub(channel)
+                .listCustomers(request)
+                .forEachRemaining(customer -> {}))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+    }
+
+    @Test
+    void registersStreamedRequestsAndReturnsRejectionsOnly() throws Exception {
+        // Given
+        List<CustomerRegistrationRequest> consumed = new ArrayList<>();
+        when(customerService.addCustomers(any())).thenAnswer(invocation -> {
+            Iterator<CustomerRegistrationRequest> requests = invocation.getArgument(0);
+            requests.forEachRemaining(consumed::add);
+            return new CustomerBulkRegistrationResponse(2, 1, List.of(
+                    new CustomerBulkRegistrationResult(0, "alex@gmail.com",
+                            CustomerBulkRegistrationResult.Status.CREATED, null),
+                    new CustomerBulkRegistrationResult(1, null,
+                            CustomerBulkRegistrationResult.Status.INVALID, "name, email and gender are required"),
+                    new CustomerBulkRegistrationResult(2, "jamila@gmail.com",
+                            CustomerBulkRegistrationResult.Status.CREATED, null)));
+        });
+        CompletableFuture<BulkRegistrationResponse> response = new CompletableFuture<>();
+
+        // When
+        StreamObserver<RegistrationRequest> upload = CustomerServiceGrpc.newStub(channel)
+                .registerCustomers(observer(response));
+        upload.onNext(registration("Alex", "alex@gmail.com", CustomerProto.Gender.MALE));
+        upload.onNext(registration("", "", CustomerProto.Gender.GENDER_UNSPECIFIED));
+        upload.onNext(registration("Jamila", "jamila@gmail.com", CustomerProto.Gender.FEMALE));
+        upload.onCompleted();
+
+        // Then
+        assertThat(response.get(5, TimeUnit.SECONDS)).isEqualTo(BulkRegistrationResponse.newBuilder()
+                .setCreated(2)
+                .setRejected(1)
+                .addRejections(BulkRegistrationResult.newBuilder()
+                        .setIndex(1)
+                        .setStatus(BulkRegistrationResult.Status.INVALID)
+                        .setMessage("name, email and gender are required"))
+                .build());
+        assertThat(consumed).containsExactly(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 30, Gender.MALE),
+                new CustomerRegistrationRequest("", "", 30, null),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 30, Gender.FEMALE));
+    }
+
+    @Test
+    void exportWaitsForTheClientToAskForMore() throws Exception {
+        // Given
+        int total = 1_000;
+        AtomicInteger produced = new AtomicInteger();
+        doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            for (int i = 1; i <= total; i++) {
+                produced.incrementAndGet();
+                consumer.accept(new Customer(i, "Customer " + i, "customer-" + i + "@gmail.com", 30, Gender.MALE));
+            }
+            return null;
+        }).when(customerService).exportCustomers(any());
+        AtomicInteger received = new AtomicInteger();
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        List<ClientCallStreamObserver<ExportCustomersRequest>> call = new ArrayList<>();
+
+        // When
+        CustomerServiceGrpc.newStub(channel).exportCustomers(ExportCustomersRequest.getDefaultInstance(),
+                new ClientResponseObserver<ExportCustomersRequest, CustomerProto.Customer>() {
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<ExportCustomersRequest> requestStream) {
+                        requestStream.disableAutoRequestWithInitial(1);
+                        call.add(requestStream);
+                    }
+
+                    @Override
+                    public void onNext(CustomerProto.Customer customer) {
+                        received.incrementAndGet();
+                        first.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        done.countDown();
+                    }
+                });
+        assertThat(first.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(200);
+
+        // Then
+        // the producer is parked a message or two ahead, not at the end of the table
+        assertThat(produced.get()).isLessThan(10);
+        call.get(0).request(total);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(received.get()).isEqualTo(total);
+    }
+
+    @Test
+    void exportGivesUpOnAClientThatStopsReading() throws Exception {
+        // Given
+        AtomicInteger produced = new AtomicInteger();
+        CompletableFuture<Throwable> exportEnded = new CompletableFuture<>();
+        doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            try {
+                for (int i = 1; i <= 1_000; i++) {
+                    produced.incrementAndGet();
+                    consumer.accept(new Customer(i, "Customer " + i, "customer-" + i + "@gmail.com", 30, Gender.MALE));
+                }
+            } catch (RuntimeException e) {
+                exportEnded.complete(e);
+                throw e;
+            }
+            return null;
+        }).when(customerService).exportCustomers(any());
+        CompletableFuture<Throwable> failed = new CompletableFuture<>();
+
+        // When
+        CustomerServiceGrpc.newStub(channel).exportCustomers(ExportCustomersRequest.getDefaultInstance(),
+                new ClientResponseObserver<ExportCustomersRequest, CustomerProto.Customer>() {
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<ExportCustomersRequest> requestStream) {
+                        // reads one message, then never asks for more
+                        requestStream.disableAutoRequestWithInitial(1);
+                    }
+
+                    @Override
+                    public void onNext(CustomerProto.Customer customer) {
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        failed.complete(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        failed.complete(null);
+                    }
+                });
+
+        // Then
+        assertThat(Status.fromThrowable(failed.get(5, TimeUnit.SECONDS)).getCode())
+                .isEqualTo(Status.Code.DEADLINE_EXCEEDED);
+        // the export was unwound, which is what closes its cursor
+        assertThat(Status.fromThrowable(exportEnded.get(5, TimeUnit.SECONDS)).getCode())
+                .isEqualTo(Status.Code.DEADLINE_EXCEEDED);
+        assertThat(produced.get()).isLessThan(10);
+    }
+
+    private static RegistrationRequest registration(String name, String email, CustomerProto.Gender gender) {
+        return RegistrationRequest.newBuilder()
+                .setName(name)
+                .setEmail(email)
+                .setAge(30)
+                .setGender(gender)
+                .build();
+    }
+
+    private static <T> StreamObserver<T> observer(CompletableFuture<T> result) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package com.kaiyicode.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaiyicode.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class CustomerImportServiceTest extends AbstractTestcontainers {
+
+    private CustomerImportService underTest;
+    private CustomerJDBCDataAccessService customerDAO;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        underTest = new CustomerImportService(
+                jdbcTemplate,
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()),
+                new SyncTaskExecutor(),
+                new ObjectMapper(),
+                event -> { },
+                2
+        );
+        customerDAO = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper(), 100);
+    }
+
+    @Test
+    void importCsv() {
+        // Given
+        String existingEmail = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String newEmail = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        customerDAO.insertCustomer(new Customer("Alex", existingEmail, 20, Gender.MALE));
+        String csv = """
+                name,email,age,gender
+                "Jamila, Jr.",%s,19,FEMALE
+                Ali,%s,30,MALE
+                Maria,%s,31,FEMALE
+                Bob,bob@example.com,not-a-number,MALE
+                """.formatted(newEmail, existingEmail, newEmail);
+
+        // When
+        CustomerImportStatus actual = underTest.submitImport(
+                CustomerImportFormat.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        CustomerImportStatus status = underTest.getImportStatus(actual.id());
+        assertThat(status.state()).isEqualTo(CustomerImportStatus.State.COMPLETED);
+        assertThat(status.bytesRead()).isEqualTo(status.totalBytes());
+        assertThat(status.stagedRows()).isEqualTo(4);
+        assertThat(status.insertedRows()).isEqualTo(1);
+        assertThat(status.rejected())
+                .extracting(CustomerImportStatus.RejectedRow::line, CustomerImportStatus.RejectedRow::reason)
+                .containsExactly(
+                        tuple(2L, "DUPLICATE_EMAIL"),
+                        tuple(3L, "DUPLICATE_EMAIL"),
+                        tuple(4L, "INVALID"));
+        assertThat(customerDAO.selectExistingEmails(List.of(newEmail))).containsExactly(newEmail);
+    }
+
+    @Test
+    void reimportCountsEveryRejectionAcrossFetches() {
+        // Given
+        StringBuilder csv = new StringBuilder("name,email,age,gender\n");
+        for (int i = 0; i < 5; i++) {
+            csv.append("Alex,%s,20,MALE\n".formatted(faker.internet().safeEmailAddress() + "-" + UUID.randomUUID()));
+        }
+        byte[] file = csv.toString().getBytes(StandardCharsets.UTF_8);
+        underTest.submitImport(CustomerImportFormat.CSV, new ByteArrayInputStream(file));
+
+        // When
+        CustomerImportStatus actual = underTest.submitImport(
+                CustomerImportFormat.CSV, new ByteArrayInputStream(file));
+
+        // Then
+        CustomerImportStatus status = underTest.getImportStatus(actual.id());
+        assertThat(status.state()).isEqualTo(CustomerImportStatus.State.COMPLETED);
+        assertThat(status.insertedRows()).isZero();
+        assertThat(status.rejectedRows()).isEqualTo(5);
+        assertThat(status.rejected())
+                .extracting(CustomerImportStatus.RejectedRow::reason)
+                .containsOnly("DUPLICATE_EMAIL")
+                .hasSize(5);
+    }
+
+    @Test
+    void importNdjson() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String ndjson = """
+                {"name":"Alex","email":"%s","age":20,"gender":"MALE"}
+                {"name":"Broken",
+                """.formatted(email);
+
+        // When
+        CustomerImportStatus actual = underTest.submitImport(
+                CustomerImportFormat.NDJSON,
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        CustomerImportStatus status = underTest.getImportStatus(actual.id());
+        assertThat(status.state()).isEqualTo(CustomerImportStatus.State.COMPLETED);
+        assertThat(status.insertedRows()).isEqualTo(1);
+        assertThat(status.rejected())
+                .extracting(CustomerImportStatus.RejectedRow::line, CustomerImportStatus.RejectedRow::reason)
+                .containsExactly(tuple(2L, "INVALID"));
+        assertThat(customerDAO.existsCustomerWithEmail(email)).isTrue();
+    }
+}
@@ -4,13 +4,9 @@ import com.kaiyicode.AbstractTestcontainers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
-
 import static org.assertj.core.api.Assertions.assertThat;
 
-class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
+class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers implements CustomerDAOContract {
 
     private CustomerJDBCDataAccessService underTest;
     private final CustomerRowMapper customerRowMapper = new CustomerRowMapper();
@@ -19,341 +15,96 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
     void setUp() {
         underTest = new CustomerJDBCDataAccessService(
                 getJdbcTemplate(),
-                customerRowMapper
+                customerRowMapper,
+                100
         );
     }
 
-    @Test
-    void selectAllCustomers() {
-        // Given
-        Customer customer = new Customer(
-                faker.name().fullName(),
-                faker.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
-                20,
-                Gender.MALE);
-        underTest.insertCustomer(customer);
-
-        // When
-        List<Customer> actual = underTest.selectAllCustomers();
-
-        // Then
-        assertThat(actual).isNotEmpty();
-
-    }
-
-    @Test
-    void selectCustomerById() {
-        // Given
-        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-        Customer customer = new Customer(
-                faker.name().fullName(),
-                email,
-                20,
-                Gender.MALE);
-        underTest.insertCustomer(customer);
-        int id = underTest.selectAllCustomers().stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
-
-        // When
-        Optional<Customer> actual = underTest.selectCustomerById(id);
-
-        // Then
-        assertThat(actual).isPresent().hasValueSatisfying(c -> {
-            assertThat(c.getId()).isEqualTo(id);
-            assertThat(c.getName()).isEqualTo(customer.getName());
-            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
-            assertThat(c.getAge()).isEqualTo(customer.getAge());
-        });
-    }
-
-    @Test
-    void returnEmptyWhenCustomerDoesNotExist() {
-        // Given
-        int id = -1;
-
-        // When
-        Optional<Customer> actual = underTest.selectCustomerById(id);
-
-        // Then
-        assertThat(actual).isEmpty();
-    }
-
-    @Test
-    void existsCustomerWithEmail() {
-        // Given
-        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-        Customer customer = new Customer(
-                faker.name().fullName(),
-                email,
-                20,
-                Gender.MALE);
-        underTest.insertCustomer(customer);
-
-        // When
-        var actual = underTest.existsCustomerWithEmail(email);
-
-        // Then
-        assertThat(actual).isTrue();
-    }
-
-    @Test
-    void returnFalseWhenCustomerWithEmailDoesNotExist() {
-        // Given
-        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-
-        // When
-        var actual = underTest.existsCustomerWithEmail(email);
-
-        // Then
-        assertThat(actual).isFalse();
-    }
-
-    @Test
-    void existsCustomerWithId() {
-        // Given
-        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-        Customer customer = new Customer(
-                faker.name().fullName(),
-                email,
-                20,
-                Gender.MALE);
-        underTest.insertCustomer(customer);
-        int id = underTest.selectAllCustomers().stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
-
-        // When
-        var actual = underTest.existsCustomerWithId(id);
-
-        // Then
-        assertThat(actual).isTrue();
-    }
-
-    @Test
-    void returnFalseWhenCustomerWithIdDoesNotExist() {
-        // Given
-        int id = -1;
-
-        // When
-        var actual = underTest.existsCustomerWithId(id);
-
-        // Then
-        assertThat(actual).isFalse();
-    }
-
-    @Test
-    void deleteCustomerById() {
-        // Given
-        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-        Customer customer = new Customer(
-                faker.name().fullName(),
-                email,
-                20,
-                Gender.MALE);
-        underTest.insertCustomer(customer);
-        int id = underTest.selectAllCustomers().stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
-
-        // When
-        underTest.deleteCustomerById(id);
-
-        // Then
-        var actual = underTest.selectCustomerById(id);
-        assertThat(actual).isNotPresent();
-    }
-
-    @Test
-    void updateCustomerName() {
-        // Given
-        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-        Customer customer = new Customer(
-                faker.name().fullName(),
-                email,
-                20,
-                Gender.MALE);
-        underTest.insertCustomer(customer);
-        int id = underTest.selectAllCustomers().stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
-
-        var newName = "foo";
-
-        // When
-        Customer update = new Customer();
-        update.setId(id);
-        update.setName(newName);
-
-        underTest.updateCustomer(update);
-
-        // Then
-        var actual = underTest.selectCustomerById(id);
-        assertThat(actual).isPresent().hasValueSatisfying(c -> {
-            assertThat(c.getId()).isEqualTo(id);
-            assertThat(c.getName()).isEqualTo(newName);
-            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
-            assertThat(c.getAge()).isEqualTo(customer.getAge());
-        });
+    @Override
+    public CustomerDAO underTest() {
+        return underTest;
     }
 
     @Test
-    void updateCustomerEmail() {
+    void genderAndAgeRangeOrderedByAgeUseGenderAgeIndex() {
         // Given
-        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-        Customer customer = new Customer(
-                faker.name().fullName(),
-                email,
-                20,
-                Gender.MALE);
-        underTest.insertCustomer(customer);
-        int id = underTest.selectAllCustomers().stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
-
-        var newEmail = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer after = new Customer();
+        after.setId(100);
+        after.setAge(31);
+        CustomerQuery query = new CustomerQuery(
+                Gender.FEMALE, 30, 35, CustomerQuery.SortField.AGE, false, after, 21);
 
         // When
-        Customer update = new Customer();
-        update.setId(id);
-        update.setEmail(newEmail);
-
-        underTest.updateCustomer(update);
+        String plan = explain(query);
 
         // Then
-        var actual = underTest.selectCustomerById(id);
-        assertThat(actual).isPresent().hasValueSatisfying(c -> {
-            assertThat(c.getId()).isEqualTo(id);
-            assertThat(c.getName()).isEqualTo(customer.getName());
-            assertThat(c.getEmail()).isEqualTo(newEmail);
-            assertThat(c.getAge()).isEqualTo(customer.getAge());
-        });
+        assertThat(plan)
+                .contains("customer_gender_age_id_idx")
+                .doesNotContain("Seq Scan")
+                .doesNotContain("Sort");
     }
 
     @Test
-    void updateCustomerAge() {
+    void genderOrderedByNameUsesGenderNameIndex() {
         // Given
-        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-        Customer customer = new Customer(
-                faker.name().fullName(),
-                email,
-                20,
-                Gender.MALE);
-        underTest.insertCustomer(customer);
-        int id = underTest.selectAllCustomers().stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
-
-        var newAge = 25;
+        Customer after = new Customer();
+        after.setId(100);
+        after.setName("8");
+        CustomerQuery query = new CustomerQuery(
+                Gender.MALE, null, null, CustomerQuery.SortField.NAME, false, after, 21);
 
         // When
-        Customer update = new Customer();
-        update.setId(id);
-        update.setAge(25);
-
-        underTest.updateCustomer(update);
+        String plan = explain(query);
 
         // Then
-        var actual = underTest.selectCustomerById(id);
-        assertThat(actual).isPresent().hasValueSatisfying(c -> {
-            assertThat(c.getId()).isEqualTo(id);
-            assertThat(c.getName()).isEqualTo(customer.getName());
-            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
-            assertThat(c.getAge()).isEqualTo(newAge);
-        });
+        assertThat(plan)
+                .contains("customer_gender_name_id_idx")
+                .doesNotContain("Seq Scan")
+                .doesNotContain("Sort");
     }
 
     @Test
-    void updateAllPropertiesCustomer() {
+    void nameOrderDescendingScansNameIndexBackward() {
         // Given
-        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-        Customer customer = new Customer(
-                faker.name().fullName(),
-                email,
-                20,
-                Gender.MALE);
-        underTest.insertCustomer(customer);
-        int id = underTest.selectAllCustomers().stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
-
-        var newName = "foo";
-        var newEmail = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-        var newAge = 25;
+        CustomerQuery query = new CustomerQuery(
+                null, null, null, CustomerQuery.SortField.NAME, true, null, 21);
 
         // When
-        Customer update = new Customer();
-        update.setId(id);
-        update.setName(newName);
-        update.setEmail(newEmail);
-        update.setAge(newAge);
-
-        underTest.updateCustomer(update);
+        String plan = explain(query);
 
         // Then
-        var actual = underTest.selectCustomerById(id);
-        assertThat(actual).isPresent().hasValueSatisfying(updated -> {
-            assertThat(updated.getId()).isEqualTo(id);
-            assertThat(updated.getGender()).isEqualTo(Gender.MALE);
-            assertThat(updated.getName()).isEqualTo(newName);
-            assertThat(updated.getEmail()).isEqualTo(newEmail);
-            assertThat(updated.getAge()).isEqualTo(newAge);
-        });
+        assertThat(plan)
+                .contains("Index Scan Backward using customer_name_id_idx")
+                .doesNotContain("Sort");
     }
 
     @Test
-    void doNotUpdateWhenNothingChanged() {
+    void ageRangeOrderedByAgeUsesAgeIndex() {
         // Given
-        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
-        Customer customer = new Customer(
-                faker.name().fullName(),
-                email,
-                20,
-                Gender.MALE);
-        underTest.insertCustomer(customer);
-        int id = underTest.selectAllCustomers().stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
+        CustomerQuery query = new CustomerQuery(
+                null, 40, 42, CustomerQuery.SortField.AGE, true, null, 21);
 
         // When
-        Customer update = new Customer();
-        update.setId(id);
-
-        underTest.updateCustomer(update);
+        String plan = explain(query);
 
         // Then
-        var actual = underTest.selectCustomerById(id);
-        assertThat(actual).isPresent().hasValueSatisfying(c -> {
-            assertThat(c.getId()).isEqualTo(id);
-            assertThat(c.getName()).isEqualTo(customer.getName());
-            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
-            assertThat(c.getAge()).isEqualTo(customer.getAge());
-        });
+        assertThat(plan)
+                .contains("customer_age_id_idx")
+                .doesNotContain("Seq Scan")
+                .doesNotContain("Sort");
     }
 
-    @Test
-    void insertCustomer() {
-        // Given
-
-        // When
-
-        // Then
-
+    private String explain(CustomerQuery query) {
+        getJdbcTemplate().update("""
+                INSERT INTO customer (name, email, age, gender)
+                SELECT md5(n::text), 'filter-' || n || '@example.com', 18 + n % 73,
+                       CASE WHEN n % 2 = 0 THEN 'MALE' ELSE 'FEMALE' END
+                FROM generate_series(1, 20000) AS n
+                ON CONFLICT (email) DO NOTHING
+                """);
+        getJdbcTemplate().execute("VACUUM ANALYZE customer");
+        CustomerJDBCDataAccessService.SelectQuery select = CustomerJDBCDataAccessService.toSelectQuery(query);
+        return String.join("\n", getJdbcTemplate().queryForList(
+                "EXPLAIN " + select.sql(), String.class, select.args().toArray()));
     }
-}
\ No newline at end of file
+}
@@ -1,23 +1,46 @@
 package com.kaiyicode.customer;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import org.hibernate.exception.ConstraintViolationException;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CustomerJPADataAccessServiceTest {
 
     private CustomerJPADataAccessService underTest;
     private AutoCloseable autoCloseable;
     @Mock private CustomerRepository customerRepository;
+    @Mock private EntityManager entityManager;
+    @Mock private TypedQuery<Customer> customerQuery;
+    @Mock private TypedQuery<String> emailQuery;
 
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this);
-        underTest = new CustomerJPADataAccessService(customerRepository);
+        underTest = new CustomerJPADataAccessService(customerRepository, entityManager, 250);
     }
 
     @AfterEach
@@ -34,6 +57,85 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findAll();
     }
 
+    @Test
+    void selectCustomersAfterId() {
+        // Given
+        int id = 1;
+        int limit = 10;
+
+        // When
+        underTest.selectCustomersAfterId(id, limit);
+
+        // Then
+        verify(customerRepository).findByIdGreaterThanOrderByIdAsc(id, Limit.of(limit));
+    }
+
+    @Test
+    void selectCustomers() {
+        // Given
+        CustomerQuery query = new CustomerQuery(
+                Gender.FEMALE, 18, 30, CustomerQuery.SortField.NAME, false, null, 10);
+
+        // When
+        underTest.selectCustomers(query);
+
+        // Then
+        verify(customerRepository).findBy(any(Specification.class), any());
+    }
+
+    @Test
+    void countCustomersByGenderAndAge() {
+        // When
+        underTest.countCustomersByGenderAndAge();
+
+        // Then
+        verify(customerRepository).findCountsByGenderAndAge();
+    }
+
+    @Test
+    void sortBreaksTiesById() {
+        // Given
+        CustomerQuery query = new CustomerQuery(
+                null, null, null, CustomerQuery.SortField.AGE, true, null, 10);
+
+        // When
+        Sort actual = CustomerJPADataAccessService.sort(query);
+
+        // Then
+        assertThat(actual).isEqualTo(Sort.by(Sort.Direction.DESC, "age", "id"));
+    }
+
+    @Test
+    void streamAllCustomers() {
+        // Given
+        when(entityManager.createQuery(anyString(), eq(Customer.class))).thenReturn(customerQuery);
+        when(customerQuery.setHint(anyString(), any())).thenReturn(customerQuery);
+        when(customerQuery.getResultStream()).thenReturn(Stream.empty());
+
+        // When
+        underTest.streamAllCustomers();
+
+        // Then
+        verify(customerQuery).setHint(HINT_FETCH_SIZE, 250);
+        verify(customerQuery).setHint(HINT_READ_ONLY, true);
+        verify(customerQuery).getResultStream();
+    }
+
+    @Test
+    void streamAllEmails() {
+        // Given
+        when(entityManager.createQuery(anyString(), eq(String.class))).thenReturn(emailQuery);
+        when(emailQuery.setHint(anyString(), any())).thenReturn(emailQuery);
+        when(emailQuery.getResultStream()).thenReturn(Stream.empty());
+
+        // When
+        underTest.streamAllEmails();
+
+        // Then
+        verify(emailQuery).setHint(HINT_FETCH_SIZE, 250);
+        verify(emailQuery).getResultStream();
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -46,16 +148,73 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).findById(id);
     }
 
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        List<Integer> ids = List.of(1, 2);
+
+        // When
+        underTest.selectCustomersByIds(ids);
+
+        // Then
+        verify(customerRepository).findAllById(ids);
+    }
+
     @Test
     void insertCustomer() {
         // Given
         Customer customer = new Customer();
 
         // When
-        underTest.insertCustomer(customer);
+        var actual = underTest.insertCustomer(customer);
 
         // Then
         verify(customerRepository).save(customer);
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void insertCustomerReturnsFalseWhenEmailIsTaken() {
+        // Given
+        Customer customer = new Customer();
+        when(customerRepository.save(customer)).thenThrow(new DataIntegrityViolationException(
+                "duplicate key",
+                new ConstraintViolationException("duplicate key", null, "customer_email_unique")));
+
+        // When
+        var actual = underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(actual).isFalse();
+    }
+
+    @Test
+    void insertCustomers() {
+        // Given
+        Customer first = new Customer("Alex", "alex@gmail.com", 19, Gender.MALE);
+        Customer second = new Customer("Jamila", "jamila@gmail.com", 21, Gender.FEMALE);
+        when(customerRepository.save(second)).thenThrow(new DataIntegrityViolationException(
+                "duplicate key",
+                new ConstraintViolationException("duplicate key", null, "customer_email_unique")));
+
+        // When
+        int[] actual = underTest.insertCustomers(List.of(first, second));
+
+        // Then
+        assertThat(actual).containsExactly(1, 0);
+        verify(customerRepository).save(first);
+    }
+
+    @Test
+    void selectExistingEmails() {
+        // Given
+        Set<String> emails = Set.of("test@test.com");
+
+        // When
+        underTest.selectExistingEmails(emails);
+
+        // Then
+        verify(customerRepository).findExistingEmails(emails);
     }
 
     @Test
@@ -74,12 +233,16 @@ class CustomerJPADataAccessServiceTest {
     void deleteCustomerById() {
         // Given
         int id = 1;
+        Customer customer = new Customer(id, "Alex", "alex@gmail.com", 19, Gender.MALE, 0L);
+
+        when(customerRepository.deleteCustomerById(id)).thenReturn(Optional.of(customer));
 
         // When
-        underTest.deleteCustomerById(id);
+        var actual = underTest.deleteCustomerById(id);
 
         // Then
-        verify(customerRepository).deleteById(id);
+        verify(customerRepository).deleteCustomerById(id);
+        assertThat(actual).contains(customer);
     }
 
     @Test
@@ -97,12 +260,40 @@ class CustomerJPADataAccessServiceTest {
     @Test
     void updateCustomer() {
         // Given
-        Customer customer = new Customer();
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE, 0L);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+        when(customerRepository.save(customer)).thenReturn(customer);
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(20);
+        update.setVersion(0L);
 
         // When
-        underTest.updateCustomer(customer);
+        var actual = underTest.updateCustomer(update);
 
         // Then
         verify(customerRepository).save(customer);
+        assertThat(actual).hasValueSatisfying(result -> {
+            assertThat(result.customer().getAge()).isEqualTo(20);
+            assertThat(result.previousAge()).isEqualTo(19);
+        });
+    }
+
+    @Test
+    void doNotUpdateCustomerWhenVersionIsStale() {
+        // Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE, 2L);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(20);
+        update.setVersion(1L);
+
+        // When
+        var actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isEmpty();
+        verify(customerRepository, never()).save(any());
     }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package com.kaiyicode.customer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerJsonComponentTest {
+
+    // the mapper Spring Boot builds, with the component registered through @JsonComponent
+    private static final ObjectMapper objectMapper = bootObjectMapper(false);
+    // the same, writing CBOR, as the CBOR message converter is configured
+    private static final ObjectMapper cborMapper = bootObjectMapper(true);
+    // and without it: bean introspection over getters
+    private final ObjectMapper reflective = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void writesCustomersLikeTheReflectiveMapper() throws Exception {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE, 3L),
+                new Customer(2, "Zoë \"Z\" <b>☃</b>\n", "zoe@gmail.com", 21, Gender.FEMALE),
+                new Customer());
+
+        // When
+        String actual = objectMapper.writeValueAsString(customers);
+
+        // Then
+        assertThat(actual).isEqualTo(reflective.writeValueAsString(customers));
+        assertThat(objectMapper.writeValueAsBytes(customers)).isEqualTo(reflective.writeValueAsBytes(customers));
+        assertThat(objectMapper.getSerializerProviderInstance().findValueSerializer(Customer.class))
+                .isInstanceOf(CustomerJsonComponent.CustomerSerializer.class);
+    }
+
+    @Test
+    void readsCustomersLikeTheReflectiveMapper() throws Exception {
+        // Given
+        String json = """
+                [{"id": 1, "name": "Alex", "email": "alex@gmail.com", "age": 19, "gender": "MALE", "version": 3},
+                 {"gender": null, "unknown": {"nested": [1, 2]}, "age": "21", "id": "2", "name": 7},
+                 {}]
+                """;
+        TypeReference<List<Customer>> type = new TypeReference<>() {};
+
+        // When
+        List<Customer> actual = objectMapper.readValue(json, type);
+
+        // Then
+        List<Customer> expected = reflective.readValue(json, type);
+        assertThat(actual).usingRecursiveFieldByFieldElementComparator().isEqualTo(expected);
+        assertThat(actual.get(0).getVersion()).isEqualTo(3L);
+        assertThat(actual.get(1).getName()).isEqualTo("7");
+    }
+
+    @Test
+    void rejectsUnknownGenderLikeTheReflectiveMapper() {
+        // Given
+        String json = """
+                {"name": "Alex", "email": "alex@gmail.com", "age": 19, "gender": "OTHER"}
+                """;
+
+        // When
+        // Then
+        assertThatThrownBy(() -> objectMapper.readValue(json, CustomerRegistrationRequest.class))
+                .isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> reflective.readValue(json, CustomerRegistrationRequest.class))
+                .isInstanceOf(InvalidFormatException.class);
+    }
+
+    @Test
+    void roundTripsRegistrationRequests() throws Exception {
+        // Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", 19, Gender.MALE);
+
+        // When
+        String json = objectMapper.writeValueAsString(request);
+
+        // Then
+        assertThat(json).isEqualTo(reflective.writeValueAsString(request));
+        assertThat(objectMapper.readValue(json, CustomerRegistrationRequest.class)).isEqualTo(request);
+        // a missing primitive is its default
+        assertThat(objectMapper.readValue("{\"name\": \"Alex\"}", CustomerRegistrationRequest.class))
+                .isEqualTo(reflective.readValue("{\"name\": \"Alex\"}", CustomerRegistrationRequest.class));
+    }
+
+    @Test
+    void roundTripsUpdateRequests() throws Exception {
+        // Given
+        CustomerUpdateRequest request = new CustomerUpdateRequest(null, "alex@gmail.com", null, 4L);
+
+        // When
+        String json = objectMapper.writeValueAsString(request);
+
+        // Then
+        assertThat(json).isEqualTo(reflective.writeValueAsString(request));
+        assertThat(objectMapper.readValue(json, CustomerUpdateRequest.class)).isEqualTo(request);
+    }
+
+    @Test
+    void roundTripsThroughCborWithTheReflectiveSchema() throws Exception {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE, 3L),
+                new Customer(2, "Zoë \"Z\" <b>☃</b>\n", "zoe@gmail.com", 21, Gender.FEMALE),
+                new Customer());
+        ObjectMapper reflectiveCbor = Jackson2ObjectMapperBuilder.cbor().build();
+        TypeReference<List<Customer>> type = new TypeReference<>() {};
+
+        // When
+        byte[] cbor = cborMapper.writeValueAsBytes(customers);
+
+        // Then
+        // same field names and order as the reflective writer, byte for byte
+        assertThat(cbor).isEqualTo(reflectiveCbor.writeValueAsBytes(customers));
+        assertThat(cbor.length).isLessThan(objectMapper.writeValueAsBytes(customers).length);
+        assertThat(cborMapper.readValue(cbor, type)).isEqualTo(customers);
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", 19, Gender.MALE);
+        assertThat(cborMapper.readValue(cborMapper.writeValueAsBytes(request), CustomerRegistrationRequest.class))
+                .isEqualTo(request);
+    }
+
+    @Test
+    void readsFromBufferedTokens() {
+        // Given
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("id", 1);
+        values.put("name", "Alex");
+        values.put("gender", "MALE");
+
+        // When
+        Customer actual = objectMapper.convertValue(values, Customer.class);
+
+        // Then
+        assertThat(actual).isEqualTo(new Customer(1, "Alex", null, null, Gender.MALE));
+    }
+
+    private static ObjectMapper bootObjectMapper(boolean cbor) {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(
+                JacksonAutoConfiguration.class, CustomerJsonComponent.class)) {
+            return cbor
+                    ? context.getBean(Jackson2ObjectMapperBuilder.class).factory(new CBORFactory()).build()
+                    : context.getBean(ObjectMapper.class);
+        }
+    }
+}
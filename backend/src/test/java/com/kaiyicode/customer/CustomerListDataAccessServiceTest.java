@@ -0,0 +1,236 @@
+package com.kaiyicode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class CustomerListDataAccessServiceTest {
+
+    private CustomerListDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListDataAccessService();
+    }
+
+    @Test
+    void startsWithSeedCustomers() {
+        // When
+        List<Customer> actual = underTest.selectAllCustomers();
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getId, Customer::getEmail)
+                .containsExactly(
+                        tuple(1, "alex@gmail.com"),
+                        tuple(2, "jamila@gmail.com"));
+    }
+
+    @Test
+    void insertCustomerAssignsIdAndVersion() {
+        // Given
+        Customer customer = new Customer("Ali", "ali@gmail.com", 30, Gender.MALE);
+
+        // When
+        boolean inserted = underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(inserted).isTrue();
+        assertThat(customer.getId()).isEqualTo(3);
+        assertThat(customer.getVersion()).isZero();
+        assertThat(underTest.selectCustomerById(3)).contains(customer);
+        assertThat(underTest.existsCustomerWithEmail("ali@gmail.com")).isTrue();
+    }
+
+    @Test
+    void insertCustomerRejectsDuplicateEmail() {
+        // When
+        boolean inserted = underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 40, Gender.MALE));
+
+        // Then
+        assertThat(inserted).isFalse();
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void returnedCustomersAreCopies() {
+        // Given
+        Customer customer = underTest.selectCustomerById(1).orElseThrow();
+
+        // When
+        customer.setName("Mutated");
+
+        // Then
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+    }
+
+    @Test
+    void selectCustomersAfterIdPagesInIdOrder() {
+        // Given
+        IntStream.range(0, 5).forEach(i ->
+                underTest.insertCustomer(new Customer("c" + i, "c" + i + "@gmail.com", 20, Gender.MALE)));
+        underTest.deleteCustomerById(4);
+
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(2, 3);
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(3, 5, 6);
+    }
+
+    @Test
+    void selectCustomersFiltersSortsAndReturnsCopies() {
+        // Given
+        underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 30, Gender.MALE));
+        CustomerQuery query = new CustomerQuery(
+                Gender.MALE, null, 25, CustomerQuery.SortField.NAME, true, null, 10);
+
+        // When
+        List<Customer> actual = underTest.selectCustomers(query);
+        actual.get(0).setName("Mutated");
+
+        // Then
+        assertThat(actual).extracting(Customer::getEmail)
+                .containsExactly("jamila@gmail.com", "alex@gmail.com");
+        assertThat(underTest.selectCustomerById(2))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Jamila"));
+    }
+
+    @Test
+    void selectCustomersByIdsSkipsMissingIds() {
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(2, 99, 1));
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(2, 1);
+    }
+
+    @Test
+    void deleteCustomerByIdFreesEmail() {
+        // When
+        Optional<Customer> deleted = underTest.deleteCustomerById(1);
+
+        // Then
+        assertThat(deleted).hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("alex@gmail.com"));
+        assertThat(underTest.deleteCustomerById(1)).isEmpty();
+        assertThat(underTest.existsCustomerWithId(1)).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE))).isTrue();
+    }
+
+    @Test
+    void updateCustomerReplacesInsteadOfAppending() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alex@example.com");
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(update).map(CustomerUpdateResult::customer);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getEmail()).isEqualTo("alex@example.com");
+            assertThat(c.getVersion()).isEqualTo(1L);
+        });
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("alex@example.com")).isTrue();
+    }
+
+    @Test
+    void updateCustomerRejectsEmailOfAnotherCustomer() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("jamila@gmail.com");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("alex@gmail.com"));
+    }
+
+    @Test
+    void updateCustomerWithStaleVersionChangesNothing() {
+        // Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setName("Alexander");
+        update.setVersion(7L);
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(update).map(CustomerUpdateResult::customer);
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+    }
+
+    @Test
+    void concurrentInsertsOfSameEmailHaveOneWinner() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Boolean>> inserts = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            inserts.add(() -> underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 30, Gender.MALE)));
+        }
+
+        // When
+        long winners = 0;
+        for (Future<Boolean> result : executor.invokeAll(inserts)) {
+            winners += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(winners).isEqualTo(1);
+        assertThat(underTest.selectAllCustomers()).hasSize(3);
+    }
+
+    @Test
+    void concurrentVersionedUpdatesHaveOneWinner() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Optional<CustomerUpdateResult>>> updates = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            int age = 30 + i;
+            updates.add(() -> {
+                Customer update = new Customer();
+                update.setId(1);
+                update.setAge(age);
+                update.setVersion(0L);
+                return underTest.updateCustomer(update);
+            });
+        }
+
+        // When
+        long winners = 0;
+        for (Future<Optional<CustomerUpdateResult>> result : executor.invokeAll(updates)) {
+            winners += result.get().isPresent() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(winners).isEqualTo(1);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(1L));
+    }
+}
@@ -0,0 +1,244 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerLogDataAccessServiceTest implements CustomerDAOContract {
+
+    @TempDir
+    private Path directory;
+    private SimpleMeterRegistry meterRegistry;
+    private CustomerLogDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = open(DataSize.ofMegabytes(64));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        underTest.close();
+    }
+
+    @Override
+    public CustomerDAO underTest() {
+        return underTest;
+    }
+
+    @Test
+    void recoversStateByReplayingLog() throws IOException {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        underTest.insertCustomer(new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE));
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alex@example.com");
+        underTest.updateCustomer(update);
+        underTest.deleteCustomerById(2);
+        underTest.close();
+
+        // When
+        underTest = open(DataSize.ofMegabytes(64));
+
+        // Then
+        assertThat(underTest.selectAllCustomers()).singleElement().satisfies(c -> {
+            assertThat(c.getId()).isEqualTo(1);
+            assertThat(c.getEmail()).isEqualTo("alex@example.com");
+            assertThat(c.getVersion()).isEqualTo(1L);
+        });
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        Customer next = new Customer("Ali", "ali@gmail.com", 30, Gender.MALE);
+        underTest.insertCustomer(next);
+        assertThat(next.getId()).isEqualTo(3);
+    }
+
+    @Test
+    void discardsTornTailOnRecovery() throws IOException {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        underTest.close();
+        Path logFile = directory.resolve(CustomerLogDataAccessService.LOG_FILE);
+        long intact = Files.size(logFile);
+        // a crash half way through the next append
+        Files.write(logFile, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // When
+        underTest = open(DataSize.ofMegabytes(64));
+        underTest.insertCustomer(new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE));
+        underTest.close();
+        underTest = open(DataSize.ofMegabytes(64));
+
+        // Then
+        assertThat(underTest.selectAllCustomers())
+                .extracting(Customer::getEmail)
+                .containsExactly("alex@gmail.com", "jamila@gmail.com");
+        assertThat(Files.size(logFile)).isGreaterThan(intact);
+    }
+
+    @Test
+    void compactionWritesSnapshotAndTruncatesLog() throws IOException {
+        // Given
+        underTest.close();
+        underTest = open(DataSize.ofKilobytes(4));
+
+        // When
+        IntStream.range(0, 200).forEach(i ->
+                underTest.insertCustomer(new Customer("c" + i, "c" + i + "@gmail.com", 20, Gender.MALE)));
+        underTest.deleteCustomerById(1);
+        underTest.close();
+        underTest = open(DataSize.ofKilobytes(4));
+
+        // Then
+        assertThat(directory.resolve(CustomerLogDataAccessService.SNAPSHOT_FILE)).exists();
+        assertThat(Files.size(directory.resolve(CustomerLogDataAccessService.LOG_FILE)))
+                .isLessThanOrEqualTo(DataSize.ofKilobytes(4).toBytes());
+        assertThat(underTest.selectAllCustomers()).hasSize(199);
+        assertThat(underTest.existsCustomerWithId(1)).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("c199@gmail.com")).isTrue();
+    }
+
+    @Test
+    void replayingLogOverNewerSnapshotConverges() throws IOException {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(22);
+        underTest.updateCustomer(update);
+        underTest.close();
+        Path logFile = directory.resolve(CustomerLogDataAccessService.LOG_FILE);
+        byte[] log = Files.readAllBytes(logFile);
+        underTest = open(DataSize.ofMegabytes(64));
+        underTest.compact();
+        underTest.close();
+        // a crash after the snapshot rename but before the log truncation
+        Files.write(logFile, log);
+
+        // When
+        underTest = open(DataSize.ofMegabytes(64));
+
+        // Then
+        assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(c -> {
+            assertThat(c.getAge()).isEqualTo(22);
+            assertThat(c.getVersion()).isEqualTo(1L);
+        });
+    }
+
+    @Test
+    void concurrentWritersShareSyncs() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Boolean>> inserts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String email = "c" + i + "@gmail.com";
+            inserts.add(() -> underTest.insertCustomer(new Customer("c", email, 20, Gender.MALE)));
+        }
+
+        // When
+        for (Future<Boolean> result : executor.invokeAll(inserts)) {
+            assertThat(result.get()).isTrue();
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(underTest.selectAllCustomers()).hasSize(200);
+        assertThat(meterRegistry.get("customer.log.sync").timer().count()).isBetween(1L, 200L);
+    }
+
+    @Test
+    void changesAreInvisibleUntilTheLogIsForced() throws Exception {
+        // Given
+        CountDownLatch forcing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        underTest.close();
+        underTest = new CustomerLogDataAccessService(meterRegistry, directory, DataSize.ofMegabytes(64)) {
+            @Override
+            void forceLog() throws IOException {
+                forcing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                super.forceLog();
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // When
+        Future<Boolean> inserted = executor.submit(() ->
+                underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE)));
+        assertThat(forcing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Then
+        assertThat(underTest.selectCustomerById(1)).isEmpty();
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        release.countDown();
+        assertThat(inserted.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(underTest.selectCustomerById(1)).isPresent();
+        executor.shutdown();
+    }
+
+    @Test
+    void failedForceDiscardsTheChangeAndFencesWrites() throws IOException {
+        // Given
+        AtomicBoolean failing = new AtomicBoolean();
+        underTest.close();
+        underTest = new CustomerLogDataAccessService(meterRegistry, directory, DataSize.ofMegabytes(64)) {
+            @Override
+            void forceLog() throws IOException {
+                if (failing.get()) {
+                    throw new IOException("injected");
+                }
+                super.forceLog();
+            }
+        };
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        failing.set(true);
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(40);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE)))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(underTest.selectCustomerById(2)).isEmpty();
+        assertThat(underTest.existsCustomerWithEmail("jamila@gmail.com")).isFalse();
+
+        // nothing appended after the failure can be trusted, not even once forces work again
+        failing.set(false);
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(21));
+    }
+
+    private CustomerLogDataAccessService open(DataSize compactionThreshold) {
+        return new CustomerLogDataAccessService(meterRegistry, directory, compactionThreshold);
+    }
+}
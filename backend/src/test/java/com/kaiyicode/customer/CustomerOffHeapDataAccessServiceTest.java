@@ -0,0 +1,248 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerOffHeapDataAccessServiceTest implements CustomerDAOContract {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CustomerOffHeapDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // small slabs so tests cross slab boundaries
+        underTest = new CustomerOffHeapDataAccessService(meterRegistry, 4096, 4);
+    }
+
+    @Override
+    public CustomerDAO underTest() {
+        return underTest;
+    }
+
+    @Test
+    void insertCustomerRoundTripsThroughSlab() {
+        // Given
+        Customer customer = new Customer("Zoë Müller", "zoe@gmail.com", 30, Gender.FEMALE);
+
+        // When
+        boolean inserted = underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(inserted).isTrue();
+        assertThat(customer.getId()).isEqualTo(1);
+        assertThat(customer.getVersion()).isZero();
+        assertThat(underTest.selectCustomerById(1)).contains(customer);
+        assertThat(underTest.existsCustomerWithId(1)).isTrue();
+        assertThat(underTest.existsCustomerWithEmail("zoe@gmail.com")).isTrue();
+    }
+
+    @Test
+    void insertCustomerRejectsDuplicateEmail() {
+        // Given
+        underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 30, Gender.MALE));
+
+        // When
+        boolean inserted = underTest.insertCustomer(new Customer("Ali", "ali@gmail.com", 40, Gender.MALE));
+
+        // Then
+        assertThat(inserted).isFalse();
+        assertThat(underTest.selectAllCustomers()).hasSize(1);
+    }
+
+    @Test
+    void insertCustomerRejectsOversizedFields() {
+        // Given
+        Customer customer = new Customer("a".repeat(1025), "long@gmail.com", 30, Gender.MALE);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(customer))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(underTest.selectAllCustomers()).isEmpty();
+    }
+
+    @Test
+    void manyCustomersSpanSlabsAndIndexResizes() {
+        // Given
+        int count = 2_000;
+
+        // When
+        IntStream.rangeClosed(1, count).forEach(i ->
+                underTest.insertCustomer(new Customer("c" + i, "c" + i + "@gmail.com", 20 + i % 50, Gender.MALE)));
+
+        // Then
+        assertThat(underTest.footprint().records()).isEqualTo(count);
+        assertThat(underTest.footprint().slabBytes()).isGreaterThan(4096);
+        assertThat(underTest.selectCustomerById(1234))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("c1234@gmail.com"));
+        assertThat(underTest.streamAllCustomers()).extracting(Customer::getId)
+                .containsExactlyElementsOf(IntStream.rangeClosed(1, count).boxed().toList());
+        assertThat(underTest.streamAllEmails()).hasSize(count);
+    }
+
+    @Test
+    void selectCustomersAfterIdPagesInIdOrder() {
+        // Given
+        IntStream.range(0, 6).forEach(i ->
+                underTest.insertCustomer(new Customer("c" + i, "c" + i + "@gmail.com", 20, Gender.MALE)));
+        underTest.deleteCustomerById(4);
+
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(2, 3);
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(3, 5, 6);
+    }
+
+    @Test
+    void selectCustomersAfterLargestIdIsEmpty() {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(Integer.MAX_VALUE, 10);
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void selectCustomersByIdsSkipsMissingIds() {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        underTest.insertCustomer(new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE));
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(2, 99, 1));
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(2, 1);
+        assertThat(underTest.selectExistingEmails(List.of("alex@gmail.com", "nobody@gmail.com")))
+                .containsExactly("alex@gmail.com");
+    }
+
+    @Test
+    void nonPositiveIdsAreNeverFound() {
+        // Given
+        assertThat(underTest.selectCustomerById(0)).isEmpty();
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        Customer update = new Customer();
+        update.setId(0);
+        update.setAge(40);
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(update).map(CustomerUpdateResult::customer);
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.selectCustomerById(0)).isEmpty();
+        assertThat(underTest.selectCustomerById(-1)).isEmpty();
+        assertThat(underTest.existsCustomerWithId(0)).isFalse();
+        assertThat(underTest.selectCustomersByIds(List.of(0, 1))).extracting(Customer::getId).containsExactly(1);
+        assertThat(underTest.deleteCustomerById(0)).isEmpty();
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(21));
+    }
+
+    @Test
+    void deleteCustomerByIdFreesSlotAndEmail() {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        long slabBytes = underTest.footprint().slabBytes();
+
+        // When
+        Optional<Customer> deleted = underTest.deleteCustomerById(1);
+
+        // Then
+        assertThat(deleted).hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("alex@gmail.com"));
+        assertThat(underTest.deleteCustomerById(1)).isEmpty();
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.footprint().liveRecordBytes()).isZero();
+        assertThat(underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 22, Gender.MALE))).isTrue();
+        assertThat(underTest.footprint().slabBytes()).isEqualTo(slabBytes);
+    }
+
+    @Test
+    void updateCustomerRewritesRecordAndEmailIndex() {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        Customer update = new Customer();
+        update.setId(1);
+        update.setName("Alexander the Great of Macedon");
+        update.setEmail("alexander@example.com");
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(update).map(CustomerUpdateResult::customer);
+
+        // Then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Alexander the Great of Macedon");
+            assertThat(c.getEmail()).isEqualTo("alexander@example.com");
+            assertThat(c.getAge()).isEqualTo(21);
+            assertThat(c.getVersion()).isEqualTo(1L);
+        });
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("alexander@example.com")).isTrue();
+        assertThat(underTest.selectCustomerById(1)).isEqualTo(actual);
+    }
+
+    @Test
+    void updateCustomerRejectsEmailOfAnotherCustomer() {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        underTest.insertCustomer(new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE));
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("jamila@gmail.com");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("alex@gmail.com"));
+    }
+
+    @Test
+    void updateCustomerWithStaleVersionChangesNothing() {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(40);
+        update.setVersion(7L);
+
+        // When
+        Optional<Customer> actual = underTest.updateCustomer(update).map(CustomerUpdateResult::customer);
+
+        // Then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(21));
+    }
+
+    @Test
+    void footprintIsPublishedAsGauges() {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+
+        // When
+        double records = meterRegistry.get("customer.offheap.records").gauge().value();
+        double bytesPerRecord = meterRegistry.get("customer.offheap.bytes.per.record").gauge().value();
+
+        // Then
+        assertThat(records).isEqualTo(1);
+        assertThat(bytesPerRecord).isEqualTo(underTest.footprint().bytesPerRecord()).isPositive();
+    }
+}
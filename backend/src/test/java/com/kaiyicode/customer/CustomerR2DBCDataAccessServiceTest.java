@@ -0,0 +1,197 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.AbstractTestcontainers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerR2DBCDataAccessServiceTest extends AbstractTestcontainers {
+
+    private CustomerR2DBCDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerR2DBCDataAccessService(
+                postgreSQLContainer.getJdbcUrl(),
+                postgreSQLContainer.getUsername(),
+                postgreSQLContainer.getPassword(),
+                4,
+                Duration.ofSeconds(3),
+                2
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.close();
+    }
+
+    @Test
+    void insertCustomerReturnsGeneratedIdAndVersion() {
+        // Given
+        Customer customer = givenCustomer(20, Gender.MALE);
+
+        // When
+        Customer actual = underTest.insertCustomer(customer).block();
+
+        // Then
+        assertThat(actual).isNotNull();
+        assertThat(actual.getId()).isNotNull();
+        assertThat(actual.getVersion()).isZero();
+        assertThat(underTest.selectCustomerById(actual.getId()).block())
+                .usingRecursiveComparison()
+                .isEqualTo(actual);
+    }
+
+    @Test
+    void insertCustomerIsEmptyWhenEmailIsTaken() {
+        // Given
+        Customer customer = givenCustomer(20, Gender.MALE);
+        underTest.insertCustomer(customer).block();
+
+        // When
+        Customer actual = underTest.insertCustomer(
+                new Customer("Someone Else", customer.getEmail(), 30, Gender.FEMALE)).block();
+
+        // Then
+        assertThat(actual).isNull();
+    }
+
+    @Test
+    void selectAllCustomersStreamsInIdOrderAcrossFetches() {
+        // Given
+        Customer first = underTest.insertCustomer(givenCustomer(20, Gender.MALE)).block();
+        Customer second = underTest.insertCustomer(givenCustomer(21, Gender.FEMALE)).block();
+        Customer third = underTest.insertCustomer(givenCustomer(22, Gender.MALE)).block();
+
+        // When
+        // the fetch size is 2, so the rows arrive in several portal reads
+        List<Customer> actual = underTest.selectAllCustomers().collectList().block();
+
+        // Then
+        assertThat(actual)
+                .isSortedAccordingTo(Comparator.comparing(Customer::getId))
+                .extracting(Customer::getId)
+                .contains(first.getId(), second.getId(), third.getId());
+    }
+
+    @Test
+    void selectCustomersUsesTheJdbcKeysetQuery() {
+        // Given
+        Customer younger = underTest.insertCustomer(givenCustomer(961, Gender.FEMALE)).block();
+        Customer older = underTest.insertCustomer(givenCustomer(962, Gender.FEMALE)).block();
+        underTest.insertCustomer(givenCustomer(962, Gender.MALE)).block();
+
+        // When
+        List<Customer> firstPage = underTest.selectCustomers(new CustomerQuery(
+                Gender.FEMALE, 961, 962, CustomerQuery.SortField.AGE, true, null, 1)).collectList().block();
+        List<Customer> secondPage = underTest.selectCustomers(new CustomerQuery(
+                Gender.FEMALE, 961, 962, CustomerQuery.SortField.AGE, true, firstPage.get(0), 10))
+                .collectList().block();
+
+        // Then
+        assertThat(firstPage).extracting(Customer::getId).containsExactly(older.getId());
+        assertThat(secondPage).extracting(Customer::getId).contains(younger.getId())
+                .doesNotContain(older.getId());
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        Customer customer = underTest.insertCustomer(givenCustomer(20, Gender.MALE)).block();
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(Set.of(customer.getId(), -1))
+                .collectList().block();
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(customer.getId());
+    }
+
+    @Test
+    void deleteCustomerByIdReturnsTheDeletedRow() {
+        // Given
+        Customer customer = underTest.insertCustomer(givenCustomer(20, Gender.MALE)).block();
+
+        // When
+        Customer actual = underTest.deleteCustomerById(customer.getId()).block();
+
+        // Then
+        assertThat(actual).usingRecursiveComparison().isEqualTo(customer);
+        assertThat(underTest.selectCustomerById(customer.getId()).block()).isNull();
+        assertThat(underTest.deleteCustomerById(customer.getId()).block()).isNull();
+    }
+
+    @Test
+    void updateCustomerWritesOnlyChangedColumnsAndBumpsVersion() {
+        // Given
+        Customer customer = underTest.insertCustomer(givenCustomer(20, Gender.MALE)).block();
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setAge(21);
+        update.setVersion(customer.getVersion());
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(update).block();
+
+        // Then
+        assertThat(actual.previousAge()).isEqualTo(20);
+        assertThat(actual.customer().getAge()).isEqualTo(21);
+        assertThat(actual.customer().getName()).isEqualTo(customer.getName());
+        assertThat(actual.customer().getVersion()).isEqualTo(customer.getVersion() + 1);
+        // the version moved on, the same update is stale now
+        assertThat(underTest.updateCustomer(update).block()).isNull();
+    }
+
+    @Test
+    void updateCustomerToTakenEmailIsIntegrityViolation() {
+        // Given
+        Customer taken = underTest.insertCustomer(givenCustomer(20, Gender.MALE)).block();
+        Customer customer = underTest.insertCustomer(givenCustomer(20, Gender.MALE)).block();
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setEmail(taken.getEmail());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(update).block())
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void toR2dbcUrlDropsJdbcDriverOptions() {
+        // When
+        // Then
+        assertThat(CustomerR2DBCDataAccessService.toR2dbcUrl(
+                "jdbc:postgresql://localhost:5332/customer?loggerLevel=OFF"))
+                .isEqualTo("r2dbc:postgresql://localhost:5332/customer");
+        assertThatThrownBy(() -> CustomerR2DBCDataAccessService.toR2dbcUrl("jdbc:h2:mem:customer"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void toBindMarkersNumbersPlaceholders() {
+        // When
+        // Then
+        assertThat(CustomerR2DBCDataAccessService.toBindMarkers("WHERE (name, id) > (?, ?) LIMIT ?"))
+                .isEqualTo("WHERE (name, id) > ($1, $2) LIMIT $3");
+    }
+
+    private static Customer givenCustomer(int age, Gender gender) {
+        return new Customer(
+                faker.name().fullName(),
+                faker.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                age,
+                gender);
+    }
+}
@@ -0,0 +1,221 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.exception.DuplicateResourceException;
+import com.kaiyicode.exception.NoDataChangeException;
+import com.kaiyicode.exception.RequestValidationException;
+import com.kaiyicode.exception.ResourceNotFoundException;
+import com.kaiyicode.exception.StaleResourceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerReactiveServiceTest {
+
+    @Mock
+    private CustomerReactiveDAO customerDAO;
+    @Mock
+    private CustomerSuggestionIndex suggestionIndex;
+    @Mock
+    private CustomerStatistics statistics;
+    private CustomerReactiveService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerReactiveService(customerDAO, suggestionIndex, statistics);
+    }
+
+    @Test
+    void getCustomersPagesWithTheServletCursor() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        Customer ali = new Customer(2, "Ali", "ali@gmail.com", 21, Gender.MALE);
+        when(customerDAO.selectCustomers(any())).thenReturn(Flux.just(alex, ali));
+
+        // When
+        CustomerPage actual = underTest.getCustomers(null, 1, Gender.MALE, null, null, "name", "asc").block();
+
+        // Then
+        assertThat(actual.customers()).containsExactly(alex);
+        ArgumentCaptor<CustomerQuery> query = ArgumentCaptor.forClass(CustomerQuery.class);
+        verify(customerDAO).selectCustomers(query.capture());
+        assertThat(query.getValue().limit()).isEqualTo(2);
+
+        // When
+        when(customerDAO.selectCustomers(any())).thenReturn(Flux.empty());
+        underTest.getCustomers(actual.nextCursor(), 1, Gender.MALE, null, null, "name", "asc").block();
+
+        // Then
+        verify(customerDAO, times(2)).selectCustomers(query.capture());
+        assertThat(query.getValue().after().getName()).isEqualTo("Alex");
+        assertThat(query.getValue().after().getId()).isEqualTo(1);
+    }
+
+    @Test
+    void getCustomersSignalsInvalidParametersWithoutQuerying() {
+        // When
+        Mono<CustomerPage> actual = underTest.getCustomers(null, 1, null, null, null, "email", "asc");
+
+        // Then
+        assertThatThrownBy(actual::block)
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("sort must be one of id, name or age, not [email]");
+        verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void getCustomerSignalsNotFound() {
+        // Given
+        when(customerDAO.selectCustomerById(10)).thenReturn(Mono.empty());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomer(10).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with [10] not found");
+    }
+
+    @Test
+    void getCustomersByIdsReportsMissingIds() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        when(customerDAO.selectCustomersByIds(any())).thenReturn(Flux.just(alex));
+
+        // When
+        CustomerBatchResponse actual = underTest.getCustomersByIds(List.of(1, 2, 1)).block();
+
+        // Then
+        assertThat(actual.customers()).containsExactly(alex);
+        assertThat(actual.missingIds()).containsExactly(2);
+    }
+
+    @Test
+    void addCustomerUpdatesInMemoryViews() {
+        // Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", 19, Gender.MALE);
+        Customer inserted = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE, 0L);
+        when(customerDAO.insertCustomer(any())).thenReturn(Mono.just(inserted));
+
+        // When
+        underTest.addCustomer(request).block();
+
+        // Then
+        verify(suggestionIndex).customerSaved(inserted);
+        verify(statistics).customerAdded(inserted);
+    }
+
+    @Test
+    void addCustomerSignalsDuplicateEmail() {
+        // Given
+        when(customerDAO.insertCustomer(any())).thenReturn(Mono.empty());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.addCustomer(new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", 19, Gender.MALE)).block())
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email address already exists");
+        verify(statistics, never()).customerAdded(any());
+    }
+
+    @Test
+    void deleteCustomerCountsTheDeletedRow() {
+        // Given
+        Customer deleted = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE, 0L);
+        when(customerDAO.deleteCustomerById(1)).thenReturn(Mono.just(deleted));
+
+        // When
+        underTest.deleteCustomerById(1).block();
+
+        // Then
+        verify(suggestionIndex).customerDeleted(1);
+        verify(statistics).customerDeleted(deleted);
+    }
+
+    @Test
+    void deleteCustomerSignalsNotFound() {
+        // Given
+        when(customerDAO.deleteCustomerById(1)).thenReturn(Mono.empty());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(1).block())
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void updateCustomerAgeMovesStatistics() {
+        // Given
+        Customer after = new Customer(1, "Alex", "alex@gmail.com", 35, Gender.MALE, 1L);
+        when(customerDAO.updateCustomer(any())).thenReturn(Mono.just(new CustomerUpdateResult(after, 19)));
+
+        // When
+        Customer actual = underTest.updateCustomer(1, new CustomerUpdateRequest(null, null, 35, 0L)).block();
+
+        // Then
+        assertThat(actual).isEqualTo(after);
+        verify(statistics).customerAgeChanged(Gender.MALE, 19, 35);
+        verify(suggestionIndex).customerSaved(after);
+        verify(customerDAO, never()).selectCustomerById(any());
+    }
+
+    @Test
+    void updateCustomerSignalsStaleVersion() {
+        // Given
+        Customer current = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE, 3L);
+        when(customerDAO.updateCustomer(any())).thenReturn(Mono.empty());
+        when(customerDAO.selectCustomerById(1)).thenReturn(Mono.just(current));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(
+                1, new CustomerUpdateRequest("Alexander", null, null, 2L)).block())
+                .isInstanceOf(StaleResourceException.class)
+                .hasMessage("customer with [1] was modified concurrently");
+    }
+
+    @Test
+    void updateCustomerSignalsNoChange() {
+        // Given
+        Customer current = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE, 0L);
+        when(customerDAO.updateCustomer(any())).thenReturn(Mono.empty());
+        when(customerDAO.selectCustomerById(1)).thenReturn(Mono.just(current));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(
+                1, new CustomerUpdateRequest("Alex", null, null, null)).block())
+                .isInstanceOf(NoDataChangeException.class);
+    }
+
+    @Test
+    void updateCustomerToTakenEmailSignalsDuplicate() {
+        // Given
+        when(customerDAO.updateCustomer(any())).thenReturn(Mono.error(new DuplicateKeyException("taken")));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(
+                1, new CustomerUpdateRequest(null, "jamila@gmail.com", null, null)).block())
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email address already exists");
+    }
+}
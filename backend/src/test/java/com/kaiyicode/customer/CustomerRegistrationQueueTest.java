@@ -0,0 +1,289 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.exception.DuplicateResourceException;
+import com.kaiyicode.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerRegistrationQueueTest {
+
+    @Mock
+    private CustomerDAO customerDAO;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private CustomerSuggestionIndex suggestionIndex;
+    @Mock
+    private CustomerStatistics statistics;
+    private SimpleMeterRegistry meterRegistry;
+    private final List<List<Customer>> batches = new CopyOnWriteArrayList<>();
+    private CustomerRegistrationQueue underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (underTest != null) {
+            underTest.stop();
+        }
+    }
+
+    @Test
+    void writesQueuedRegistrationsInBatches() {
+        // Given
+        when(customerDAO.insertCustomers(anyList())).thenAnswer(inserting(null));
+        underTest = start(10, 2);
+
+        // When
+        underTest.submit(customer("alex@gmail.com"));
+        underTest.submit(customer("ali@gmail.com"));
+        underTest.submit(customer("jamila@gmail.com"));
+        underTest.stop();
+
+        // Then
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(2));
+        assertThat(batches.stream().flatMap(List::stream).map(Customer::getEmail))
+                .containsExactly("alex@gmail.com", "ali@gmail.com", "jamila@gmail.com");
+        verify(statistics, times(3)).customerAdded(any());
+        verify(suggestionIndex, times(batches.size())).customersAdded();
+        verify(transactionManager, times(batches.size())).commit(any());
+        assertThat(meterRegistry.get("customer.registration.batch").summary().totalAmount()).isEqualTo(3);
+        assertThat(underTest.depth()).isZero();
+    }
+
+    @Test
+    void rejectsEmailThatIsAlreadyQueued() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerDAO.insertCustomers(anyList())).thenAnswer(inserting(release));
+        underTest = start(10, 10);
+        underTest.submit(customer("alex@gmail.com"));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.submit(customer("alex@gmail.com")))
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email address already exists");
+        release.countDown();
+    }
+
+    @Test
+    void rejectsEmailThatIsAlreadyStoredAndReleasesIt() {
+        // Given
+        when(customerDAO.existsCustomerWithEmail("alex@gmail.com")).thenReturn(true, false);
+        when(customerDAO.insertCustomers(anyList())).thenAnswer(inserting(null));
+        underTest = start(10, 10);
+
+        // When
+        assertThatThrownBy(() -> underTest.submit(customer("alex@gmail.com")))
+                .isInstanceOf(DuplicateResourceException.class);
+        // deleted meanwhile, the same email may register again
+        underTest.submit(customer("alex@gmail.com"));
+        underTest.stop();
+
+        // Then
+        assertThat(batches).hasSize(1);
+    }
+
+    @Test
+    void rejectsRegistrationsWhenTheQueueIsFull() throws Exception {
+        // Given
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerDAO.insertCustomers(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            return inserting(release).answer(invocation);
+        });
+        underTest = start(1, 10);
+        // taken off the queue by the writer, which then blocks
+        underTest.submit(customer("alex@gmail.com"));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        underTest.submit(customer("ali@gmail.com"));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.submit(customer("jamila@gmail.com")))
+                .isInstanceOf(ServiceOverloadedException.class);
+        assertThat(meterRegistry.get("customer.registration.overloaded").counter().count()).isEqualTo(1);
+        assertThat(underTest.depth()).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    void stopWritesEverythingStillQueued() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerDAO.insertCustomers(anyList())).thenAnswer(inserting(release));
+        underTest = start(10, 2);
+        for (int i = 0; i < 5; i++) {
+            underTest.submit(customer("customer-" + i + "@gmail.com"));
+        }
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+
+        // When
+        underTest.stop();
+
+        // Then
+        assertThat(batches.stream().mapToInt(List::size).sum()).isEqualTo(5);
+        assertThat(underTest.depth()).isZero();
+        assertThatThrownBy(() -> underTest.submit(customer("late@gmail.com")))
+                .isInstanceOf(ServiceOverloadedException.class);
+    }
+
+    @Test
+    void retriesBatchUntilItIsCommitted() {
+        // Given
+        when(customerDAO.insertCustomers(anyList()))
+                .thenThrow(new CannotGetJdbcConnectionException("database is down"))
+                .thenAnswer(inserting(null));
+        underTest = start(10, 10);
+
+        // When
+        underTest.submit(customer("alex@gmail.com"));
+        underTest.stop();
+
+        // Then
+        verify(transactionManager).rollback(any());
+        assertThat(batches).hasSize(1);
+        verify(statistics).customerAdded(any());
+    }
+
+    @Test
+    void retriesBatchWhenNoTransactionCanBeBegun() {
+        // Given
+        when(transactionManager.getTransaction(any()))
+                .thenThrow(new CannotCreateTransactionException("database is down"))
+                .thenReturn(null);
+        when(customerDAO.insertCustomers(anyList())).thenAnswer(inserting(null));
+        underTest = start(10, 10);
+
+        // When
+        underTest.submit(customer("alex@gmail.com"));
+        underTest.stop();
+
+        // Then
+        assertThat(batches).hasSize(1);
+        verify(statistics).customerAdded(any());
+        assertThat(underTest.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void committedBatchIsNotWrittenAgainWhenPublishingFails() {
+        // Given
+        when(customerDAO.insertCustomers(anyList())).thenAnswer(inserting(null));
+        doThrow(new IllegalStateException("suggestions are rebuilding"))
+                .when(suggestionIndex).customersAdded();
+        underTest = start(10, 10);
+
+        // When
+        underTest.submit(customer("alex@gmail.com"));
+        underTest.stop();
+
+        // Then
+        assertThat(batches).hasSize(1);
+        verify(statistics).customerAdded(any());
+        assertThat(meterRegistry.get("customer.registration.conflicts").counter().count()).isZero();
+    }
+
+    @Test
+    void deadWriterIsReportedAndStopsAdmission() throws Exception {
+        // Given
+        CountDownLatch dying = new CountDownLatch(1);
+        when(customerDAO.insertCustomers(anyList())).thenAnswer(invocation -> {
+            dying.countDown();
+            throw new StackOverflowError();
+        });
+        underTest = start(10, 10);
+        underTest.submit(customer("alex@gmail.com"));
+        assertThat(dying.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        while (underTest.health().getStatus().equals(Status.UP)) {
+            Thread.onSpinWait();
+        }
+
+        // Then
+        assertThat(underTest.health().getStatus()).isEqualTo(Status.DOWN);
+        assertThatThrownBy(() -> underTest.submit(customer("ali@gmail.com")))
+                .isInstanceOf(ServiceOverloadedException.class);
+    }
+
+    @Test
+    void countsRegistrationsLostToConcurrentOnes() {
+        // Given
+        when(customerDAO.insertCustomers(anyList())).thenReturn(new int[]{0});
+        underTest = start(10, 10);
+
+        // When
+        underTest.submit(customer("alex@gmail.com"));
+        underTest.stop();
+
+        // Then
+        verify(statistics, never()).customerAdded(any());
+        verify(suggestionIndex, never()).customersAdded();
+        assertThat(meterRegistry.get("customer.registration.conflicts").counter().count()).isEqualTo(1);
+    }
+
+    private CustomerRegistrationQueue start(int capacity, int batchSize) {
+        CustomerRegistrationQueue queue = new CustomerRegistrationQueue(
+                customerDAO, transactionManager, suggestionIndex, statistics,
+                meterRegistry, capacity, batchSize, Duration.ofSeconds(10));
+        queue.start();
+        return queue;
+    }
+
+    private Answer<int[]> inserting(CountDownLatch release) {
+        return invocation -> {
+            if (release != null) {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            List<Customer> batch = List.copyOf(invocation.getArgument(0));
+            batches.add(batch);
+            int[] inserted = new int[batch.size()];
+            Arrays.fill(inserted, 1);
+            return inserted;
+        };
+    }
+
+    private static Customer customer(String email) {
+        return new Customer("Alex", email, 19, Gender.MALE);
+    }
+}
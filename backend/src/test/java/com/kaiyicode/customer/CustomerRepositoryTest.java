@@ -1,12 +1,14 @@
 package com.kaiyicode.customer;
 
 import com.kaiyicode.AbstractTestcontainers;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -17,6 +19,8 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
 
     @Autowired
     private CustomerRepository underTest;
+    @Autowired
+    private EntityManager entityManager;
 
     @BeforeEach
     void setUp() {
@@ -52,4 +56,64 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
         // Then
         assertThat(actual).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    void deleteCustomerById() {
+        // Given
+        String email = faker.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                faker.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest.save(customer);
+
+        // When
+        var deleted = underTest.deleteCustomerById(customer.getId());
+        var deletedAgain = underTest.deleteCustomerById(customer.getId());
+
+        // Then
+        assertThat(deleted).hasValueSatisfying(c -> {
+            assertThat(c.getEmail()).isEqualTo(email);
+            assertThat(c.getAge()).isEqualTo(20);
+        });
+        assertThat(deletedAgain).isEmpty();
+    }
+
+    @Test
+    void specificationFiltersAndPagesWithKeyset() {
+        // Given
+        CustomerJPADataAccessService customerDAO = new CustomerJPADataAccessService(underTest, entityManager, 1000);
+        underTest.save(new Customer("cy", "cy-" + UUID.randomUUID(), 30, Gender.FEMALE));
+        underTest.save(new Customer("alex", "alex-" + UUID.randomUUID(), 25, Gender.FEMALE));
+        underTest.save(new Customer("bea", "bea-" + UUID.randomUUID(), 28, Gender.FEMALE));
+        underTest.save(new Customer("dan", "dan-" + UUID.randomUUID(), 28, Gender.MALE));
+        underTest.save(new Customer("eve", "eve-" + UUID.randomUUID(), 40, Gender.FEMALE));
+
+        // When
+        List<Customer> first = customerDAO.selectCustomers(new CustomerQuery(
+                Gender.FEMALE, 20, 35, CustomerQuery.SortField.NAME, false, null, 2));
+        List<Customer> second = customerDAO.selectCustomers(new CustomerQuery(
+                Gender.FEMALE, 20, 35, CustomerQuery.SortField.NAME, false, first.get(1), 2));
+
+        // Then
+        assertThat(first).extracting(Customer::getName).containsExactly("alex", "bea");
+        assertThat(second).extracting(Customer::getName).containsExactly("cy");
+    }
+
+    @Test
+    void findCountsByGenderAndAge() {
+        // Given
+        underTest.save(new Customer("alex", "alex-" + UUID.randomUUID(), 30, Gender.MALE));
+        underTest.save(new Customer("ali", "ali-" + UUID.randomUUID(), 30, Gender.MALE));
+        underTest.save(new Customer("bea", "bea-" + UUID.randomUUID(), 30, Gender.FEMALE));
+
+        // When
+        List<CustomerCount> actual = underTest.findCountsByGenderAndAge();
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder(
+                new CustomerCount(Gender.MALE, 30, 2),
+                new CustomerCount(Gender.FEMALE, 30, 1));
+    }
+}
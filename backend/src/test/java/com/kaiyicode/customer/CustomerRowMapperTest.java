@@ -21,6 +21,7 @@ class CustomerRowMapperTest {
         when(resultSet.getString("email")).thenReturn("john@gmail.com");
         when(resultSet.getInt("age")).thenReturn(32);
         when(resultSet.getString("gender")).thenReturn("MALE");
+        when(resultSet.getLong("version")).thenReturn(3L);
 
         // When
         Customer actual = underTest.mapRow(resultSet, 1);
@@ -30,5 +31,6 @@ class CustomerRowMapperTest {
                 1, "John", "john@gmail.com", 32,
                 Gender.MALE);
         assertThat(actual).isEqualTo(expected);
+        assertThat(actual.getVersion()).isEqualTo(3L);
     }
 }
\ No newline at end of file
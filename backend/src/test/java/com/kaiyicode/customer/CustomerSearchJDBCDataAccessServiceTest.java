@@ -0,0 +1,120 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerSearchJDBCDataAccessServiceTest extends AbstractTestcontainers {
+
+    private final JdbcTemplate jdbcTemplate = getJdbcTemplate();
+    private CustomerJDBCDataAccessService customerDAO;
+    private CustomerSearchJDBCDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+        customerDAO = new CustomerJDBCDataAccessService(jdbcTemplate, customerRowMapper, 100);
+        underTest = new CustomerSearchJDBCDataAccessService(jdbcTemplate, customerRowMapper);
+    }
+
+    @Test
+    void searchCustomersRanksSubstringMatchesAboveFuzzyMatches() {
+        // Given
+        String suffix = UUID.randomUUID().toString();
+        customerDAO.insertCustomer(new Customer(
+                "Ada Quilfeather", "ada-" + suffix + "@gmail.com", 30, Gender.FEMALE));
+        customerDAO.insertCustomer(new Customer(
+                "Ada Quillfeather", "ada.q-" + suffix + "@gmail.com", 30, Gender.FEMALE));
+
+        // When
+        List<Customer> actual = underTest.searchCustomers("Quillfeather", 0, 10);
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getName)
+                .startsWith("Ada Quillfeather")
+                .contains("Ada Quilfeather");
+    }
+
+    @Test
+    void searchCustomersMatchesPartialEmail() {
+        // Given
+        String token = UUID.randomUUID().toString().replace("-", "");
+        customerDAO.insertCustomer(new Customer(
+                faker.name().fullName(), "x" + token + "@gmail.com", 30, Gender.MALE));
+
+        // When
+        List<Customer> actual = underTest.searchCustomers(token.substring(4, 16), 0, 10);
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getEmail)
+                .contains("x" + token + "@gmail.com");
+    }
+
+    @Test
+    void searchCustomersTreatsWildcardsLiterally() {
+        // Given
+        customerDAO.insertCustomer(new Customer(
+                faker.name().fullName(), UUID.randomUUID() + "@gmail.com", 30, Gender.MALE));
+
+        // When
+        List<Customer> actual = underTest.searchCustomers("%_%", 0, 10);
+
+        // Then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void searchCustomersPagesByOffset() {
+        // Given
+        String surname = "Quixotic" + UUID.randomUUID().toString().substring(0, 6);
+        for (int i = 0; i < 5; i++) {
+            customerDAO.insertCustomer(new Customer(
+                    "Sam " + surname, "sam" + i + "-" + surname + "@gmail.com", 30, Gender.MALE));
+        }
+
+        // When
+        List<Customer> first = underTest.searchCustomers(surname, 0, 3);
+        List<Customer> second = underTest.searchCustomers(surname, 3, 3);
+
+        // Then
+        assertThat(first).hasSize(3);
+        assertThat(second).hasSize(2);
+        assertThat(first).doesNotContainAnyElementsOf(second);
+    }
+
+    @Test
+    void searchUsesTrigramIndexes() {
+        // Given
+        jdbcTemplate.update("""
+                INSERT INTO customer (name, email, age, gender)
+                SELECT 'seed ' || n, 'seed-' || n || '-' || md5(n::text) || '@example.com', 20, 'MALE'
+                FROM generate_series(1, 20000) AS n
+                ON CONFLICT (email) DO NOTHING
+                """);
+        // also merges the GIN pending list, which the planner prices as a full scan
+        jdbcTemplate.execute("VACUUM ANALYZE customer");
+
+        // When
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + CustomerSearchJDBCDataAccessService.SEARCH_SQL,
+                String.class,
+                "%fontaine%", "%fontaine%",
+                "fontaine", "fontaine",
+                "%fontaine%", "%fontaine%",
+                "fontaine", "fontaine",
+                20, 0);
+
+        // Then
+        assertThat(String.join("\n", plan))
+                .contains("customer_name_trgm_idx")
+                .contains("customer_email_trgm_idx")
+                .doesNotContain("Seq Scan");
+    }
+}
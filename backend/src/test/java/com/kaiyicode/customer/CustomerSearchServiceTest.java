@@ -0,0 +1,130 @@
+package com.kaiyicode.customer;
+
+import com.kaiyicode.exception.RequestValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerSearchServiceTest {
+
+    @Mock
+    private CustomerSearchDAO customerSearchDAO;
+    @Mock
+    private CustomerSuggestionIndex suggestionIndex;
+    private CustomerSearchService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerSearchService(customerSearchDAO, suggestionIndex);
+    }
+
+    @Test
+    void searchCustomersReportsNextPage() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        Customer alexa = new Customer(2, "Alexa", "alexa@gmail.com", 21, Gender.FEMALE);
+        Customer alexander = new Customer(3, "Alexander", "alexander@gmail.com", 30, Gender.MALE);
+        when(customerSearchDAO.searchCustomers("alex", 2, 3)).thenReturn(List.of(alex, alexa, alexander));
+
+        // When
+        CustomerSearchPage actual = underTest.searchCustomers("  alex ", 1, 2);
+
+        // Then
+        assertThat(actual.customers()).containsExactly(alex, alexa);
+        assertThat(actual.page()).isEqualTo(1);
+        assertThat(actual.hasNext()).isTrue();
+    }
+
+    @Test
+    void searchCustomersReportsLastPage() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        when(customerSearchDAO.searchCustomers("alex", 0, 3)).thenReturn(List.of(alex));
+
+        // When
+        CustomerSearchPage actual = underTest.searchCustomers("alex", 0, 2);
+
+        // Then
+        assertThat(actual.customers()).containsExactly(alex);
+        assertThat(actual.hasNext()).isFalse();
+    }
+
+    @Test
+    void searchCustomersRejectsShortQuery() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.searchCustomers(" al ", 0, 20))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("search query must be between 3 and 255 characters");
+        verifyNoInteractions(customerSearchDAO);
+    }
+
+    @Test
+    void searchCustomersRejectsInvalidPageSize() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.searchCustomers("alex", 0, 101))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("page size must be between 1 and 100");
+        verifyNoInteractions(customerSearchDAO);
+    }
+
+    @Test
+    void searchCustomersRejectsPagesBeyondResultWindow() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.searchCustomers("alex", 10, 100))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("only the first 1000 search results can be paged through");
+        verifyNoInteractions(customerSearchDAO);
+    }
+
+    @Test
+    void suggestCustomersUsesIndexOnceBuilt() {
+        // Given
+        CustomerSuggestion alex = new CustomerSuggestion(1, "Alex", "alex@gmail.com");
+        when(suggestionIndex.isReady()).thenReturn(true);
+        when(suggestionIndex.suggest("ale", 5)).thenReturn(List.of(alex));
+
+        // When
+        List<CustomerSuggestion> actual = underTest.suggestCustomers(" ale", 5);
+
+        // Then
+        assertThat(actual).containsExactly(alex);
+        verifyNoInteractions(customerSearchDAO);
+    }
+
+    @Test
+    void suggestCustomersFallsBackToDatabaseWhileIndexBuilds() {
+        // Given
+        when(suggestionIndex.isReady()).thenReturn(false);
+        when(customerSearchDAO.searchCustomers("ale", 0, 5))
+                .thenReturn(List.of(new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE)));
+
+        // When
+        List<CustomerSuggestion> actual = underTest.suggestCustomers("ale", 5);
+
+        // Then
+        assertThat(actual).containsExactly(new CustomerSuggestion(1, "Alex", "alex@gmail.com"));
+    }
+
+    @Test
+    void suggestCustomersRejectsInvalidLimit() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.suggestCustomers("alex", 21))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("suggestion limit must be between 1 and 20");
+        verifyNoInteractions(suggestionIndex);
+    }
+}
@@ -2,18 +2,29 @@ package com.kaiyicode.customer;
 
 import com.kaiyicode.exception.DuplicateResourceException;
 import com.kaiyicode.exception.NoDataChangeException;
+import com.kaiyicode.exception.RequestValidationException;
 import com.kaiyicode.exception.ResourceNotFoundException;
+import com.kaiyicode.exception.StaleResourceException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,11 +32,15 @@ class CustomerServiceTest {
 
     @Mock
     private CustomerDAO customerDAO;
+    @Mock
+    private CustomerSuggestionIndex suggestionIndex;
+    @Mock
+    private CustomerStatistics statistics;
     private CustomerService underTest;
 
     @BeforeEach
     void setUp() {
-        underTest = new CustomerService(customerDAO);
+        underTest = new CustomerService(customerDAO, suggestionIndex, statistics, 2, Optional.empty());
     }
 
     @Test
@@ -37,6 +52,154 @@ class CustomerServiceTest {
         verify(customerDAO).selectAllCustomers();
     }
 
+    @Test
+    void getCustomersReturnsNextCursorWhenMoreCustomersExist() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 21, Gender.FEMALE);
+        when(customerDAO.selectCustomersAfterId(0, 2)).thenReturn(List.of(alex, jamila));
+
+        // When
+        CustomerPage actual = underTest.getCustomers(null, 1);
+
+        // Then
+        assertThat(actual.customers()).containsExactly(alex);
+        assertThat(actual.nextCursor()).isNotNull();
+
+        // When
+        underTest.getCustomers(actual.nextCursor(), 1);
+
+        // Then
+        verify(customerDAO).selectCustomersAfterId(1, 2);
+    }
+
+    @Test
+    void getCustomersReturnsNoCursorOnLastPage() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        when(customerDAO.selectCustomersAfterId(0, 11)).thenReturn(List.of(alex));
+
+        // When
+        CustomerPage actual = underTest.getCustomers(null, 10);
+
+        // Then
+        assertThat(actual.customers()).containsExactly(alex);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void willThrowWhenGetCustomersCursorIsInvalid() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomers("not-a-cursor", 10))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid cursor [not-a-cursor]");
+        verify(customerDAO, never()).selectCustomersAfterId(anyInt(), anyInt());
+    }
+
+    @Test
+    void willThrowWhenGetCustomersPageSizeIsOutOfRange() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomers(null, 0))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("page size must be between 1 and 500");
+    }
+
+    @Test
+    void getCustomerStats() {
+        // When
+        underTest.getCustomerStats();
+
+        // Then
+        verify(statistics).snapshot();
+    }
+
+    @Test
+    void getCustomersWithoutFiltersKeepsIdKeyset() {
+        // When
+        underTest.getCustomers(null, 10, null, null, null, "id", "asc");
+
+        // Then
+        verify(customerDAO).selectCustomersAfterId(0, 11);
+        verify(customerDAO, never()).selectCustomers(any());
+    }
+
+    @Test
+    void getFilteredCustomersPagesByNameKeyset() {
+        // Given
+        Customer alex = new Customer(7, "Alex", "alex@gmail.com", 19, Gender.FEMALE);
+        Customer jamila = new Customer(3, "Jamila", "jamila@gmail.com", 21, Gender.FEMALE);
+        when(customerDAO.selectCustomers(any())).thenReturn(List.of(alex, jamila));
+        ArgumentCaptor<CustomerQuery> queryCaptor = ArgumentCaptor.forClass(CustomerQuery.class);
+
+        // When
+        CustomerPage first = underTest.getCustomers(null, 1, Gender.FEMALE, 18, 30, "NAME", "asc");
+        underTest.getCustomers(first.nextCursor(), 1, Gender.FEMALE, 18, 30, "name", "asc");
+
+        // Then
+        assertThat(first.customers()).containsExactly(alex);
+        verify(customerDAO, times(2)).selectCustomers(queryCaptor.capture());
+        assertThat(queryCaptor.getAllValues().get(0))
+                .isEqualTo(new CustomerQuery(Gender.FEMALE, 18, 30, CustomerQuery.SortField.NAME, false, null, 2));
+        CustomerQuery second = queryCaptor.getAllValues().get(1);
+        assertThat(second.after().getId()).isEqualTo(7);
+        assertThat(second.after().getName()).isEqualTo("Alex");
+    }
+
+    @Test
+    void willThrowWhenCursorDoesNotMatchSort() {
+        // Given
+        String idCursor = "Nw";
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomers(idCursor, 10, null, null, null, "age", "desc"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid cursor [Nw]");
+        verify(customerDAO, never()).selectCustomers(any());
+    }
+
+    @Test
+    void willThrowWhenSortOrDirectionIsUnknown() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomers(null, 10, null, null, null, "email", "asc"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("sort must be one of id, name or age, not [email]");
+        assertThatThrownBy(() -> underTest.getCustomers(null, 10, null, null, null, "id", "up"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("direction must be asc or desc, not [up]");
+    }
+
+    @Test
+    void willThrowWhenAgeRangeIsInverted() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomers(null, 10, null, 40, 30, "age", "asc"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("minAge [40] must not be greater than maxAge [30]");
+        verify(customerDAO, never()).selectCustomers(any());
+    }
+
+    @Test
+    void exportCustomers() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 21, Gender.FEMALE);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(customerDAO.streamAllCustomers())
+                .thenReturn(Stream.of(alex, jamila).onClose(() -> closed.set(true)));
+        List<Customer> exported = new ArrayList<>();
+
+        // When
+        underTest.exportCustomers(exported::add);
+
+        // Then
+        assertThat(exported).containsExactly(alex, jamila);
+        assertThat(closed).isTrue();
+    }
+
     @Test
     void canGetCustomer() {
         // Given
@@ -67,11 +230,39 @@ class CustomerServiceTest {
                         "customer with [%s] not found".formatted(id));
     }
 
+    @Test
+    void getCustomersByIdsKeepsRequestedOrderAndReportsMissingIds() {
+        // Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 19, Gender.MALE);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 21, Gender.FEMALE);
+        when(customerDAO.selectCustomersByIds(Set.of(2, 3, 1))).thenReturn(List.of(alex, jamila));
+
+        // When
+        CustomerBatchResponse actual = underTest.getCustomersByIds(List.of(2, 3, 1, 2));
+
+        // Then
+        assertThat(actual.customers()).containsExactly(jamila, alex);
+        assertThat(actual.missingIds()).containsExactly(3);
+    }
+
+    @Test
+    void willThrowWhenTooManyCustomerIdsRequested() {
+        // Given
+        List<Integer> ids = IntStream.rangeClosed(1, 1001).boxed().toList();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomersByIds(ids))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("at most 1000 customer ids can be requested at once");
+        verify(customerDAO, never()).selectCustomersByIds(any());
+    }
+
     @Test
     void addCustomer() {
         // Given
         String email = "alex@gmail.com";
-        when(customerDAO.existsCustomerWithEmail(email)).thenReturn(false);
+        when(customerDAO.insertCustomer(any())).thenReturn(true);
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, 19, Gender.MALE
         );
@@ -83,6 +274,7 @@ class CustomerServiceTest {
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
 
         verify(customerDAO).insertCustomer(customerArgumentCaptor.capture());
+        verify(customerDAO, never()).existsCustomerWithEmail(any());
 
         Customer customer = customerArgumentCaptor.getValue();
 
@@ -90,94 +282,184 @@ class CustomerServiceTest {
         assertThat(customer.getName()).isEqualTo(request.name());
         assertThat(customer.getEmail()).isEqualTo(request.email());
         assertThat(customer.getAge()).isEqualTo(request.age());
+        verify(suggestionIndex).customerSaved(customer);
+        verify(statistics).customerAdded(customer);
+    }
+
+    @Test
+    void addCustomerQueuesRegistrationWhenWritingBehind() {
+        // Given
+        CustomerRegistrationQueue registrationQueue = mock(CustomerRegistrationQueue.class);
+        underTest = new CustomerService(customerDAO, suggestionIndex, statistics, 2,
+                Optional.of(registrationQueue));
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", 19, Gender.MALE
+        );
+
+        // When
+        boolean stored = underTest.addCustomer(request);
+
+        // Then
+        assertThat(stored).isFalse();
+        ArgumentCaptor<Customer> queued = ArgumentCaptor.forClass(Customer.class);
+        verify(registrationQueue).submit(queued.capture());
+        assertThat(queued.getValue().getEmail()).isEqualTo(request.email());
+        verify(customerDAO, never()).insertCustomer(any());
+        verifyNoInteractions(statistics);
+    }
+
+    @Test
+    void addCustomerRejectsIncompleteRegistrationBeforeQueueing() {
+        // Given
+        CustomerRegistrationQueue registrationQueue = mock(CustomerRegistrationQueue.class);
+        underTest = new CustomerService(customerDAO, suggestionIndex, statistics, 2,
+                Optional.of(registrationQueue));
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Alex", "alex@gmail.com", 19, null
+        );
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.addCustomer(request))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("name, email and gender are required");
+        verifyNoInteractions(registrationQueue);
     }
 
     @Test
     void willThrowWhenEmailExistsWhileAddingCustomer() {
         // Given
         String email = "alex@gmail.com";
-        when(customerDAO.existsCustomerWithEmail(email)).thenReturn(true);
+        when(customerDAO.insertCustomer(any())).thenReturn(false);
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, 19, Gender.MALE
         );
 
         // When
+        // Then
         assertThatThrownBy(() -> underTest.addCustomer(request))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessageContaining("email address already exists");
+    }
+
+    @Test
+    void addCustomersInChunksAndReportsResultPerItem() {
+        // Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19, Gender.MALE),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 21, Gender.FEMALE),
+                new CustomerRegistrationRequest("Ali", "alex@gmail.com", 30, Gender.MALE),
+                new CustomerRegistrationRequest(null, "nameless@gmail.com", 30, Gender.MALE),
+                new CustomerRegistrationRequest("Maria", "maria@gmail.com", 40, Gender.FEMALE)
+        );
+        when(customerDAO.selectExistingEmails(Set.of("alex@gmail.com", "jamila@gmail.com")))
+                .thenReturn(Set.of("jamila@gmail.com"));
+        when(customerDAO.selectExistingEmails(Set.of("alex@gmail.com", "nameless@gmail.com")))
+                .thenReturn(Set.of());
+        when(customerDAO.selectExistingEmails(Set.of("maria@gmail.com")))
+                .thenReturn(Set.of());
+        when(customerDAO.insertCustomers(anyList()))
+                .thenReturn(new int[]{1})
+                .thenReturn(new int[]{1})
+                .thenReturn(new int[]{0});
+
+        // When
+        CustomerBulkRegistrationResponse actual = underTest.addCustomers(requests.iterator());
 
         // Then
-        verify(customerDAO, never()).insertCustomer(any());
+        assertThat(actual.created()).isEqualTo(2);
+        assertThat(actual.rejected()).isEqualTo(3);
+        assertThat(actual.results())
+                .extracting(CustomerBulkRegistrationResult::index, CustomerBulkRegistrationResult::status)
+                .containsExactly(
+                        tuple(0, CustomerBulkRegistrationResult.Status.CREATED),
+                        tuple(1, CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL),
+                        tuple(2, CustomerBulkRegistrationResult.Status.CREATED),
+                        tuple(3, CustomerBulkRegistrationResult.Status.INVALID),
+                        tuple(4, CustomerBulkRegistrationResult.Status.DUPLICATE_EMAIL));
+        verify(customerDAO, times(3)).insertCustomers(anyList());
+        verify(suggestionIndex).customersAdded();
+        ArgumentCaptor<Customer> addedCaptor = ArgumentCaptor.forClass(Customer.class);
+        verify(statistics, times(2)).customerAdded(addedCaptor.capture());
+        assertThat(addedCaptor.getAllValues()).extracting(Customer::getEmail)
+                .containsExactly("alex@gmail.com", "alex@gmail.com");
     }
 
     @Test
     void deleteCustomerById() {
         // Given
         int id = 10;
-        when(customerDAO.existsCustomerWithId(id)).thenReturn(true);
+        Customer customer = new Customer(id, "Alex", "alex@gmail.com", 19, Gender.MALE, 0L);
+        when(customerDAO.deleteCustomerById(id)).thenReturn(Optional.of(customer));
 
         // When
         underTest.deleteCustomerById(id);
 
         // Then
         verify(customerDAO).deleteCustomerById(id);
+        verify(customerDAO, never()).existsCustomerWithId(any());
+        verify(customerDAO, never()).selectCustomerById(any());
+        verify(suggestionIndex).customerDeleted(id);
+        verify(statistics).customerDeleted(customer);
     }
 
     @Test
     void willThrowWhenDeleteCustomerByIdNotExists() {
         // Given
         int id = 10;
-        when(customerDAO.existsCustomerWithId(id)).thenReturn(false);
+        when(customerDAO.deleteCustomerById(id)).thenReturn(Optional.empty());
 
         // When
+        // Then
         assertThatThrownBy(() -> underTest.deleteCustomerById(id))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("customer with [%s] not found".formatted(id));
-
-        // Then
-        verify(customerDAO, never()).deleteCustomerById(id);
+        verifyNoInteractions(suggestionIndex);
     }
 
     @Test
     void updateCustomerName() {
         // Given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", 19,
-                Gender.MALE);
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        Customer updated = new Customer(
+                id, "Alex1", "alex@gmail.com", 19,
+                Gender.MALE, 1L);
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.of(new CustomerUpdateResult(updated, 19)));
         CustomerUpdateRequest request = new CustomerUpdateRequest(
-                "Alex1", null, null
+                "Alex1", null, null, null
         );
 
         // When
-        underTest.updateCustomer(id, request);
+        Customer actual = underTest.updateCustomer(id, request);
 
         // Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
 
         verify(customerDAO).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDAO, never()).selectCustomerById(any());
 
-        Customer actual = customerArgumentCaptor.getValue();
+        Customer update = customerArgumentCaptor.getValue();
 
-        assertThat(actual.getId()).isEqualTo(id);
-        assertThat(actual.getName()).isEqualTo(request.name());
-        assertThat(actual.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(actual.getAge()).isEqualTo(customer.getAge());
+        assertThat(update.getId()).isEqualTo(id);
+        assertThat(update.getName()).isEqualTo(request.name());
+        assertThat(update.getEmail()).isNull();
+        assertThat(update.getAge()).isNull();
+        assertThat(update.getVersion()).isNull();
+        assertThat(actual).isEqualTo(updated);
+        verify(suggestionIndex).customerSaved(updated);
     }
 
     @Test
     void updateCustomerEmail() {
         // Given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", 19,
-                Gender.MALE);
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        Customer updated = new Customer(
+                id, "Alex", "alex1@gmail.com", 19,
+                Gender.MALE, 1L);
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.of(new CustomerUpdateResult(updated, 19)));
         CustomerUpdateRequest request = new CustomerUpdateRequest(
-                null, "alex1@gmail.com", null
+                null, "alex1@gmail.com", null, null
         );
-        when(customerDAO.existsCustomerWithEmail("alex1@gmail.com")).thenReturn(false);
 
         // When
         underTest.updateCustomer(id, request);
@@ -186,81 +468,114 @@ class CustomerServiceTest {
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
 
         verify(customerDAO).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDAO, never()).existsCustomerWithEmail(any());
 
-        Customer actual = customerArgumentCaptor.getValue();
+        Customer update = customerArgumentCaptor.getValue();
 
-        assertThat(actual.getId()).isEqualTo(id);
-        assertThat(actual.getName()).isEqualTo(customer.getName());
-        assertThat(actual.getEmail()).isEqualTo(request.email());
-        assertThat(actual.getAge()).isEqualTo(customer.getAge());
+        assertThat(update.getId()).isEqualTo(id);
+        assertThat(update.getName()).isNull();
+        assertThat(update.getEmail()).isEqualTo(request.email());
+        assertThat(update.getAge()).isNull();
     }
 
     @Test
     void willThrowWhenEmailExistsWhileUpdateCustomerEmail() {
         // Given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", 19,
-                Gender.MALE);
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(any()))
+                .thenThrow(new DuplicateKeyException("customer_email_unique"));
         CustomerUpdateRequest request = new CustomerUpdateRequest(
-                null, "alex1@gmail.com", null
+                null, "alex1@gmail.com", null, null
         );
-        when(customerDAO.existsCustomerWithEmail("alex1@gmail.com")).thenReturn(true);
 
         // When
+        // Then
         assertThatThrownBy(() -> underTest.updateCustomer(id, request))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("email address already exists");
-
-        // Then
-        verify(customerDAO, never()).updateCustomer(any());
     }
 
     @Test
-    void updateCustomerAge() {
+    void updateCustomerAgeWithExpectedVersion() {
         // Given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", 19,
-                Gender.MALE);
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        Customer updated = new Customer(
+                id, "Alex", "alex@gmail.com", 20,
+                Gender.MALE, 4L);
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.of(new CustomerUpdateResult(updated, 9)));
         CustomerUpdateRequest request = new CustomerUpdateRequest(
-                null, null, 20
+                null, null, 20, 3L
         );
 
         // When
-        underTest.updateCustomer(id, request);
+        Customer actual = underTest.updateCustomer(id, request);
 
         // Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
 
         verify(customerDAO).updateCustomer(customerArgumentCaptor.capture());
 
-        Customer actual = customerArgumentCaptor.getValue();
+        Customer update = customerArgumentCaptor.getValue();
+
+        assertThat(update.getId()).isEqualTo(id);
+        assertThat(update.getAge()).isEqualTo(request.age());
+        assertThat(update.getVersion()).isEqualTo(3L);
+        assertThat(actual.getVersion()).isEqualTo(4L);
+        verify(customerDAO, never()).selectCustomerById(any());
+        verify(statistics).customerAgeChanged(Gender.MALE, 9, 20);
+    }
+
+    @Test
+    void willThrowWhenUpdateCustomerVersionIsStale() {
+        // Given
+        int id = 10;
+        Customer current = new Customer(
+                id, "Alex", "alex@gmail.com", 19,
+                Gender.MALE, 5L);
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.empty());
+        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(current));
+        CustomerUpdateRequest request = new CustomerUpdateRequest(
+                null, null, 20, 3L
+        );
 
-        assertThat(actual.getId()).isEqualTo(id);
-        assertThat(actual.getName()).isEqualTo(customer.getName());
-        assertThat(actual.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(actual.getAge()).isEqualTo(request.age());
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request))
+                .isInstanceOf(StaleResourceException.class)
+                .hasMessage("customer with [%s] was modified concurrently".formatted(id));
+    }
+
+    @Test
+    void willThrowWhenUpdateCustomerHitsOptimisticLockingFailure() {
+        // Given
+        int id = 10;
+        when(customerDAO.updateCustomer(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Customer.class, id));
+        CustomerUpdateRequest request = new CustomerUpdateRequest(
+                "Alex1", null, null, 3L
+        );
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request))
+                .isInstanceOf(StaleResourceException.class);
     }
 
     @Test
     void willThrowWhenUpdateCustomerNotExists() {
         // Given
         int id = 10;
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.empty());
         when(customerDAO.selectCustomerById(id)).thenReturn(Optional.empty());
         CustomerUpdateRequest request = new CustomerUpdateRequest(
-                "Alex", "alex@gmail.com", 19
+                "Alex", "alex@gmail.com", 19, null
         );
 
         // When
+        // Then
         assertThatThrownBy(() -> underTest.updateCustomer(id, request))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("customer with [%s] not found".formatted(id));
-
-        // Then
-        verify(customerDAO, never()).updateCustomer(any());
     }
 
     @Test
@@ -269,10 +584,26 @@ class CustomerServiceTest {
         int id = 10;
         Customer customer = new Customer(
                 id, "Alex", "alex@gmail.com", 19,
-                Gender.MALE);
+                Gender.MALE, 0L);
+        when(customerDAO.updateCustomer(any())).thenReturn(Optional.empty());
         when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
         CustomerUpdateRequest request = new CustomerUpdateRequest(
-                "Alex", "alex@gmail.com", 19
+                "Alex", "alex@gmail.com", 19, null
+        );
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request))
+                .isInstanceOf(NoDataChangeException.class)
+                .hasMessage("no data changes found");
+    }
+
+    @Test
+    void willThrowWhenUpdateCustomerRequestIsEmpty() {
+        // Given
+        int id = 10;
+        CustomerUpdateRequest request = new CustomerUpdateRequest(
+                null, null, null, null
         );
 
         // When
@@ -283,4 +614,4 @@ class CustomerServiceTest {
         // Then
         verify(customerDAO, never()).updateCustomer(any());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,177 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerStatisticsTest {
+
+    private CustomerStatistics underTest;
+    private SimpleMeterRegistry meterRegistry;
+    private AutoCloseable autoCloseable;
+    @Mock private CustomerDAO customerDAO;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new CustomerStatistics(
+                new StaticListableBeanFactory(Map.of("jdbc", customerDAO)),
+                new SyncTaskExecutor(),
+                meterRegistry,
+                "jdbc",
+                10);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void countsWritesByGenderAndAgeBucket() {
+        // Given
+        underTest.customerAdded(new Customer("Alex", "alex@gmail.com", 19, Gender.MALE));
+        underTest.customerAdded(new Customer("Jamila", "jamila@gmail.com", 21, Gender.FEMALE));
+        underTest.customerAdded(new Customer("Ali", "ali@gmail.com", 104, Gender.MALE));
+
+        // When
+        CustomerStats actual = underTest.snapshot();
+
+        // Then
+        assertThat(actual.total()).isEqualTo(3);
+        assertThat(actual.byGender()).containsEntry(Gender.MALE, 2L).containsEntry(Gender.FEMALE, 1L);
+        assertThat(actual.ageHistogram()).hasSize(11);
+        assertThat(actual.ageHistogram().get(1)).isEqualTo(new CustomerStats.AgeBucket(10, 19, 1));
+        assertThat(actual.ageHistogram().get(2)).isEqualTo(new CustomerStats.AgeBucket(20, 29, 1));
+        assertThat(actual.ageHistogram().get(10)).isEqualTo(new CustomerStats.AgeBucket(100, null, 1));
+        assertThat(actual.reconciledAt()).isNull();
+    }
+
+    @Test
+    void ageChangesAndDeletesMoveCounts() {
+        // Given
+        Customer alex = new Customer("Alex", "alex@gmail.com", 19, Gender.MALE);
+        Customer jamila = new Customer("Jamila", "jamila@gmail.com", 21, Gender.FEMALE);
+        underTest.customerAdded(alex);
+        underTest.customerAdded(jamila);
+
+        // When
+        underTest.customerAgeChanged(Gender.MALE, 19, 35);
+        underTest.customerDeleted(jamila);
+
+        // Then
+        CustomerStats actual = underTest.snapshot();
+        assertThat(actual.total()).isEqualTo(1);
+        assertThat(actual.byGender()).containsEntry(Gender.FEMALE, 0L);
+        assertThat(actual.ageHistogram())
+                .filteredOn(bucket -> bucket.count() > 0)
+                .containsExactly(new CustomerStats.AgeBucket(30, 39, 1));
+    }
+
+    @Test
+    void reconcileReplacesCountersWithDatabaseCounts() {
+        // Given
+        underTest.customerAdded(new Customer("Alex", "alex@gmail.com", 19, Gender.MALE));
+        when(customerDAO.countCustomersByGenderAndAge()).thenReturn(List.of(
+                new CustomerCount(Gender.MALE, 19, 5),
+                new CustomerCount(Gender.MALE, 15, 2),
+                new CustomerCount(Gender.FEMALE, 64, 3)));
+
+        // When
+        underTest.reconcile();
+        underTest.customerAdded(new Customer("Ali", "ali@gmail.com", 30, Gender.MALE));
+        underTest.reconcile();
+
+        // Then
+        CustomerStats actual = underTest.snapshot();
+        assertThat(actual.total()).isEqualTo(10);
+        assertThat(actual.byGender()).containsEntry(Gender.MALE, 7L).containsEntry(Gender.FEMALE, 3L);
+        assertThat(actual.ageHistogram().get(1).count()).isEqualTo(7);
+        assertThat(actual.ageHistogram().get(6).count()).isEqualTo(3);
+        assertThat(actual.reconciledAt()).isNotNull();
+        // the first reconciliation only seeds the counters, drift is measured from then on
+        assertThat(meterRegistry.get("customer.stats.reconcile.drift").summary().totalAmount()).isEqualTo(1);
+    }
+
+    @Test
+    void writesDuringReconcileAreKept() {
+        // Given
+        when(customerDAO.countCustomersByGenderAndAge()).thenAnswer(invocation -> {
+            underTest.customerAdded(new Customer("Alex", "alex@gmail.com", 19, Gender.MALE));
+            return List.of(new CustomerCount(Gender.FEMALE, 40, 4));
+        });
+
+        // When
+        underTest.reconcile();
+
+        // Then
+        assertThat(underTest.snapshot().total()).isEqualTo(5);
+    }
+
+    @Test
+    void failedReconcileKeepsIncrementalCounts() {
+        // Given
+        underTest.customerAdded(new Customer("Alex", "alex@gmail.com", 19, Gender.MALE));
+        when(customerDAO.countCustomersByGenderAndAge()).thenThrow(new IllegalStateException("boom"));
+
+        // When
+        underTest.reconcile();
+
+        // Then
+        assertThat(underTest.snapshot().total()).isEqualTo(1);
+        assertThat(underTest.snapshot().reconciledAt()).isNull();
+    }
+
+    @Test
+    void importsTriggerReconcile() {
+        // Given
+        when(customerDAO.countCustomersByGenderAndAge()).thenReturn(List.of(
+                new CustomerCount(Gender.FEMALE, 40, 4)));
+
+        // When
+        underTest.onImportCompleted(new CustomerImportCompletedEvent(UUID.randomUUID(), 4));
+
+        // Then
+        assertThat(underTest.snapshot().total()).isEqualTo(4);
+    }
+
+    @Test
+    void singleRowChangesDoNotTriggerReconcile() {
+        // When
+        underTest.onCustomersChanged(CustomerChangedEvent.of(Set.of(1)));
+
+        // Then
+        verify(customerDAO, never()).countCustomersByGenderAndAge();
+    }
+
+    @Test
+    void willThrowWhenBucketWidthIsOutOfRange() {
+        // When
+        // Then
+        assertThatThrownBy(() -> new CustomerStatistics(
+                new StaticListableBeanFactory(Map.of("jdbc", customerDAO)),
+                new SyncTaskExecutor(),
+                meterRegistry,
+                "jdbc",
+                0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("age bucket width must be between 1 and 100");
+    }
+}
@@ -0,0 +1,146 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerSuggestionIndexTest {
+
+    private CustomerSuggestionIndex underTest;
+    private AutoCloseable autoCloseable;
+    @Mock private CustomerDAO customerDAO;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        underTest = new CustomerSuggestionIndex(
+                new StaticListableBeanFactory(Map.of("jdbc", customerDAO)),
+                transactionManager,
+                new SyncTaskExecutor(),
+                new SimpleMeterRegistry(),
+                "jdbc");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void isNotReadyBeforeFirstBuild() {
+        // When
+        // Then
+        assertThat(underTest.isReady()).isFalse();
+        assertThatThrownBy(() -> underTest.suggest("alex", 10))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rebuildIndexesStreamedCustomers() {
+        // Given
+        when(customerDAO.streamAllCustomers()).thenReturn(Stream.of(
+                new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L),
+                new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE, 0L)));
+
+        // When
+        underTest.rebuild();
+
+        // Then
+        assertThat(underTest.isReady()).isTrue();
+        assertThat(underTest.suggest("jam", 10))
+                .containsExactly(new CustomerSuggestion(2, "Jamila", "jamila@gmail.com"));
+    }
+
+    @Test
+    void writesThroughServiceUpdateIndex() {
+        // Given
+        when(customerDAO.streamAllCustomers()).thenReturn(Stream.of(
+                new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L)));
+        underTest.rebuild();
+
+        // When
+        underTest.customerSaved(new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE, 0L));
+        underTest.customerDeleted(1);
+
+        // Then
+        assertThat(underTest.suggest("gmail", 10)).extracting(CustomerSuggestion::id).containsExactly(2);
+    }
+
+    @Test
+    void customersAddedCatchesUpPastHighestIndexedId() {
+        // Given
+        when(customerDAO.streamAllCustomers()).thenReturn(Stream.of(
+                new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L)));
+        underTest.rebuild();
+        when(customerDAO.selectCustomersAfterId(1, 1000)).thenReturn(List.of(
+                new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE, 0L)));
+
+        // When
+        underTest.customerSaved(new Customer("Jamila", "jamila@gmail.com", 19, Gender.FEMALE));
+
+        // Then
+        assertThat(underTest.suggest("jamila", 10)).extracting(CustomerSuggestion::id).containsExactly(2);
+    }
+
+    @Test
+    void changesFromOtherInstancesAreReloaded() {
+        // Given
+        when(customerDAO.streamAllCustomers()).thenReturn(Stream.of(
+                new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L),
+                new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE, 0L)));
+        underTest.rebuild();
+        when(customerDAO.selectCustomersByIds(Set.of(1, 2))).thenReturn(List.of(
+                new Customer(1, "Alex", "alex@example.com", 21, Gender.MALE, 1L)));
+
+        // When
+        underTest.onCustomersChanged(CustomerChangedEvent.of(Set.of(1, 2)));
+
+        // Then
+        assertThat(underTest.suggest("gmail", 10)).isEmpty();
+        assertThat(underTest.suggest("example", 10)).extracting(CustomerSuggestion::id).containsExactly(1);
+    }
+
+    @Test
+    void changesAreIgnoredBeforeFirstBuild() {
+        // When
+        underTest.onCustomersChanged(CustomerChangedEvent.of(Set.of(1)));
+
+        // Then
+        verify(customerDAO, never()).selectCustomersByIds(any());
+        verify(customerDAO, never()).selectCustomersAfterId(anyInt(), anyInt());
+    }
+
+    @Test
+    void failedRebuildKeepsFallingBackToDatabase() {
+        // Given
+        when(customerDAO.streamAllCustomers()).thenThrow(new IllegalStateException("boom"));
+
+        // When
+        underTest.rebuild();
+
+        // Then
+        assertThat(underTest.isReady()).isFalse();
+    }
+}
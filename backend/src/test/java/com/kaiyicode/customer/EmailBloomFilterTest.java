@@ -0,0 +1,75 @@
+package com.kaiyicode.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailBloomFilterTest {
+
+    @Test
+    void hasNoFalseNegatives() {
+        // Given
+        EmailBloomFilter underTest = EmailBloomFilter.create(10_000, 0.01);
+
+        // When
+        IntStream.range(0, 10_000).forEach(i -> underTest.put("customer-" + i + "@example.com"));
+
+        // Then
+        assertThat(IntStream.range(0, 10_000))
+                .allMatch(i -> underTest.mightContain("customer-" + i + "@example.com"));
+        assertThat(underTest.insertions()).isEqualTo(10_000);
+    }
+
+    @Test
+    void keepsFalsePositiveRateNearTarget() {
+        // Given
+        EmailBloomFilter underTest = EmailBloomFilter.create(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> underTest.put("customer-" + i + "@example.com"));
+
+        // When
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> underTest.mightContain("unknown-" + i + "@example.com"))
+                .count();
+
+        // Then
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(underTest.expectedFalsePositiveRate()).isBetween(0.005, 0.02);
+        assertThat(underTest.memoryBytes()).isBetween(10_000L, 13_000L);
+    }
+
+    @Test
+    void acceptsConcurrentWriters() throws InterruptedException {
+        // Given
+        EmailBloomFilter underTest = EmailBloomFilter.create(100_000, 0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            executor.execute(() -> IntStream.range(0, 10_000)
+                    .forEach(i -> underTest.put("t" + thread + "-" + i + "@example.com")));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // Then
+        assertThat(IntStream.range(0, 8).boxed()
+                .flatMap(t -> IntStream.range(0, 10_000).mapToObj(i -> "t" + t + "-" + i + "@example.com")))
+                .allMatch(underTest::mightContain);
+        assertThat(underTest.insertions()).isEqualTo(80_000);
+    }
+
+    @Test
+    void rejectsInvalidSizing() {
+        assertThatThrownBy(() -> EmailBloomFilter.create(0, 0.01))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> EmailBloomFilter.create(100, 1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
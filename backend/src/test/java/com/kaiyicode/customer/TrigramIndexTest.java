@@ -0,0 +1,146 @@
+package com.kaiyicode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TrigramIndexTest {
+
+    private TrigramIndex underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new TrigramIndex();
+    }
+
+    @Test
+    void searchMatchesSubstringsOfNameAndEmailIgnoringCase() {
+        // Given
+        underTest.put(new Customer(1, "Alex Johnson", "alex@gmail.com", 21, Gender.MALE, 0L));
+        underTest.put(new Customer(2, "Jamila Ahmed", "jamila@yahoo.com", 19, Gender.FEMALE, 0L));
+
+        // When
+        List<CustomerSuggestion> byName = underTest.search("JOHN", 10);
+        List<CustomerSuggestion> byEmail = underTest.search("yahoo", 10);
+
+        // Then
+        assertThat(byName).containsExactly(new CustomerSuggestion(1, "Alex Johnson", "alex@gmail.com"));
+        assertThat(byEmail).extracting(CustomerSuggestion::id).containsExactly(2);
+    }
+
+    @Test
+    void searchRejectsCandidatesWhoseTrigramsAreNotAdjacent() {
+        // Given
+        // "abcxbcd" holds every trigram of "abcd" except that they never line up
+        underTest.put(new Customer(1, "abc bcd", "x@gmail.com", 21, Gender.MALE, 0L));
+        underTest.put(new Customer(2, "abcd", "y@gmail.com", 21, Gender.MALE, 0L));
+
+        // When
+        List<CustomerSuggestion> actual = underTest.search("abcd", 10);
+
+        // Then
+        assertThat(actual).extracting(CustomerSuggestion::id).containsExactly(2);
+    }
+
+    @Test
+    void searchStopsAtLimit() {
+        // Given
+        IntStream.rangeClosed(1, 100).forEach(i ->
+                underTest.put(new Customer(i, "Sam " + i, "sam" + i + "@gmail.com", 21, Gender.MALE, 0L)));
+
+        // When
+        List<CustomerSuggestion> actual = underTest.search("gmail", 5);
+
+        // Then
+        assertThat(actual).extracting(CustomerSuggestion::id).containsExactly(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    void putReplacesTrigramsOfPreviousVersion() {
+        // Given
+        underTest.put(new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L));
+
+        // When
+        underTest.put(new Customer(1, "Alex", "alexander@example.com", 21, Gender.MALE, 1L));
+
+        // Then
+        assertThat(underTest.search("gmail", 10)).isEmpty();
+        assertThat(underTest.search("example", 10)).extracting(CustomerSuggestion::id).containsExactly(1);
+        assertThat(underTest.size()).isEqualTo(1);
+    }
+
+    @Test
+    void putIgnoresOlderVersions() {
+        // Given
+        underTest.put(new Customer(1, "Alex", "alexander@example.com", 21, Gender.MALE, 1L));
+
+        // When
+        underTest.put(new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L));
+
+        // Then
+        assertThat(underTest.search("gmail", 10)).isEmpty();
+        assertThat(underTest.search("example", 10)).hasSize(1);
+    }
+
+    @Test
+    void removedCustomersAreNotResurrectedByLatePuts() {
+        // Given
+        underTest.put(new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L));
+
+        // When
+        underTest.remove(1);
+        underTest.put(new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L));
+
+        // Then
+        assertThat(underTest.search("alex", 10)).isEmpty();
+        assertThat(underTest.size()).isZero();
+        assertThat(underTest.highestId()).isEqualTo(1);
+    }
+
+    @Test
+    void searchRejectsQueriesShorterThanATrigram() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.search("al", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void memoryIsGivenBackOnRemove() {
+        // Given
+        long empty = underTest.memoryBytes();
+        underTest.put(new Customer(1, "Alex", "alex@gmail.com", 21, Gender.MALE, 0L));
+        long one = underTest.memoryBytes();
+
+        // When
+        underTest.put(new Customer(2, "Jamila", "jamila@gmail.com", 19, Gender.FEMALE, 0L));
+        underTest.put(new Customer(2, "Jamila Ahmed", "jamila@example.com", 19, Gender.FEMALE, 1L));
+        underTest.remove(2);
+
+        // Then
+        assertThat(one).isGreaterThan(empty);
+        assertThat(underTest.memoryBytes()).isEqualTo(one);
+        underTest.remove(1);
+        assertThat(underTest.memoryBytes()).isEqualTo(empty);
+    }
+
+    @Test
+    void commonTrigramsStayCompact() {
+        // Given
+        IntStream.rangeClosed(1, 100_000).forEach(i ->
+                underTest.put(new Customer(i, "c" + i, "c" + i + "@gmail.com", 21, Gender.MALE, 0L)));
+
+        // When
+        long memory = underTest.memoryBytes();
+
+        // Then
+        // the documents alone are about 40 bytes per customer
+        assertThat(memory / 100_000).isLessThan(120);
+        assertThat(underTest.search("c99999@", 10)).extracting(CustomerSuggestion::id).containsExactly(99999);
+    }
+}
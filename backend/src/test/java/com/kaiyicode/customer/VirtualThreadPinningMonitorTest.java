@@ -0,0 +1,100 @@
+package com.kaiyicode.customer;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadPinningMonitorTest {
+
+    private VirtualThreadPinningMonitor underTest;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(20));
+        underTest.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.stop();
+    }
+
+    @Test
+    void reportsPinningInDataAccessMethods() throws Exception {
+        // Given
+        PinnedDataAccessService dao = new PinnedDataAccessService();
+
+        // When
+        Thread.ofVirtual().start(dao::load).join();
+
+        // Then
+        Timer pinned = awaitPinned("VirtualThreadPinningMonitorTest$PinnedDataAccessService.load");
+        assertThat(pinned).isNotNull();
+        assertThat(pinned.count()).isEqualTo(1);
+        assertThat(pinned.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20);
+    }
+
+    @Test
+    void ignoresBlockingThatDoesNotPin() throws Exception {
+        // When
+        Thread.ofVirtual().start(() -> sleep(100)).join();
+        Thread.ofVirtual().start(new PinnedDataAccessService()::load).join();
+
+        // Then
+        awaitPinned("VirtualThreadPinningMonitorTest$PinnedDataAccessService.load");
+        assertThat(meterRegistry.find("customer.dao.pinned")
+                .tag("location", VirtualThreadPinningMonitor.OTHER_LOCATION)
+                .timer()).isNull();
+    }
+
+    @Test
+    void stopIsIdempotent() {
+        // When
+        underTest.stop();
+        underTest.stop();
+
+        // Then
+        assertThat(underTest.isRunning()).isFalse();
+    }
+
+    // events are flushed to the stream about once a second
+    private Timer awaitPinned(String location) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            Timer timer = meterRegistry.find("customer.dao.pinned").tag("location", location).timer();
+            if (timer != null) {
+                return timer;
+            }
+            Thread.sleep(50);
+        }
+        return null;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static class PinnedDataAccessService {
+        private final Object monitor = new Object();
+
+        void load() {
+            // a blocking call under a monitor, like a JDBC round trip in a synchronized DAO method
+            synchronized (monitor) {
+                sleep(50);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.kaiyicode.journey;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.javafaker.Faker;
+import com.kaiyicode.customer.Customer;
+import com.kaiyicode.customer.CustomerBulkRegistrationResponse;
+import com.kaiyicode.customer.CustomerRegistrationRequest;
+import com.kaiyicode.customer.Gender;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+// bodies are encoded and decoded here with a plain CBOR mapper, as a client without
+// the server's serializers would
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "customer.change-listener.enabled=false")
+public class CustomerCborIntegrationTest {
+
+    @Autowired
+    private WebTestClient webClient;
+    private final ObjectMapper cbor = Jackson2ObjectMapperBuilder.cbor().build();
+    private static final Random RANDOM = new Random();
+    private static final String CUSTOMER_URI = "api/v1/customer";
+    private static final TypeReference<List<Customer>> CUSTOMER_LIST = new TypeReference<>() {};
+
+    @Test
+    void canRegisterAndGetCustomerAsCbor() throws Exception {
+        // create registration request
+        CustomerRegistrationRequest request = registrationRequest();
+
+        // send a post request
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .bodyValue(cbor.writeValueAsBytes(request))
+                .exchange()
+                .expectStatus().isOk();
+
+        // get all customers as CBOR
+        EntityExchangeResult<byte[]> allCustomersResult = webClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectHeader().values(HttpHeaders.VARY, vary -> assertThat(vary).contains(HttpHeaders.ACCEPT))
+                .expectBody(byte[].class)
+                .returnResult();
+        List<Customer> allCustomers = cbor.readValue(allCustomersResult.getResponseBody(), CUSTOMER_LIST);
+
+        Customer expectedCustomer = new Customer(
+                request.name(), request.email(), request.age(), request.gender()
+        );
+
+        // make sure that customer is present
+        assertThat(allCustomers)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id", "version")
+                .contains(expectedCustomer);
+
+        var customer = allCustomers.stream()
+                .filter(c -> c.getEmail().equals(request.email()))
+                .findFirst()
+                .orElseThrow();
+
+        // get customer by id, in both encodings
+        byte[] cborCustomer = webClient.get()
+                .uri(CUSTOMER_URI + "/" + customer.getId())
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        byte[] jsonCustomer = webClient.get()
+                .uri(CUSTOMER_URI + "/" + customer.getId())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(cbor.readValue(cborCustomer, Customer.class)).isEqualTo(customer);
+        assertThat(cborCustomer.length).isLessThan(jsonCustomer.length);
+    }
+
+    @Test
+    void canBulkRegisterCustomersAsCbor() throws Exception {
+        // create registration requests, the last one repeating the first email
+        List<CustomerRegistrationRequest> requests = List.of(
+                registrationRequest(), registrationRequest(), registrationRequest());
+        CustomerRegistrationRequest duplicate = new CustomerRegistrationRequest(
+                "Duplicate", requests.get(0).email(), 30, Gender.FEMALE);
+
+        // send them as one CBOR array and ask for a CBOR report
+        byte[] response = webClient.post()
+                .uri(CUSTOMER_URI + "/bulk")
+                .accept(MediaType.APPLICATION_CBOR)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .bodyValue(cbor.writeValueAsBytes(List.of(
+                        requests.get(0), requests.get(1), requests.get(2), duplicate)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        CustomerBulkRegistrationResponse report = cbor.readValue(response, CustomerBulkRegistrationResponse.class);
+        assertThat(report.created()).isEqualTo(3);
+        assertThat(report.rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsMalformedCborBody() {
+        // a truncated array
+        webClient.post()
+                .uri(CUSTOMER_URI + "/bulk")
+                .contentType(MediaType.APPLICATION_CBOR)
+                .bodyValue(new byte[]{(byte) 0x9f, (byte) 0xa1})
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private static CustomerRegistrationRequest registrationRequest() {
+        Faker faker = new Faker();
+        String firstName = faker.name().firstName();
+        String lastName = faker.name().lastName();
+        String name = firstName + " " + lastName;
+        String email = firstName + "." + lastName + "-" + UUID.randomUUID() + "@gmail.com";
+        int age = RANDOM.nextInt(16, 99);
+        Gender gender = age % 2 == 0 ? Gender.MALE : Gender.FEMALE;
+        return new CustomerRegistrationRequest(name, email, age, gender);
+    }
+}
@@ -0,0 +1,184 @@
+package com.kaiyicode.journey;
+
+import com.github.javafaker.Faker;
+import com.kaiyicode.AbstractTestcontainers;
+import com.kaiyicode.customer.CustomerGrpcServer;
+import com.kaiyicode.customer.grpc.CustomerProto;
+import com.kaiyicode.customer.grpc.CustomerProto.BulkRegistrationResponse;
+import com.kaiyicode.customer.grpc.CustomerProto.BulkRegistrationResult;
+import com.kaiyicode.customer.grpc.CustomerProto.DeleteCustomerRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.ExportCustomersRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.GetCustomerRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.ListCustomersRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.RegistrationRequest;
+import com.kaiyicode.customer.grpc.CustomerProto.UpdateCustomerRequest;
+import com.kaiyicode.customer.grpc.CustomerServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+// over a real HTTP/2 connection on localhost; the gRPC port is picked at random too
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "customer.change-listener.enabled=false",
+        "customer.grpc.enabled=true",
+        "customer.grpc.port=0"
+})
+public class CustomerGrpcIntegrationTest extends AbstractTestcontainers {
+
+    @Autowired
+    private CustomerGrpcServer server;
+    private ManagedChannel channel;
+    private CustomerServiceGrpc.CustomerServiceBlockingStub blockingStub;
+    private static final Random RANDOM = new Random();
+
+    @BeforeEach
+    void setUp() {
+        channel = ManagedChannelBuilder.forAddress("localhost", server.getPort())
+                .usePlaintext()
+                .build();
+        blockingStub = CustomerServiceGrpc.newBlockingStub(channel)
+                .withDeadlineAfter(10, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void canRegisterListGetUpdateAndDeleteCustomers() throws Exception {
+        // stream registrations, the last one repeating the first email
+        List<RegistrationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            requests.add(registrationRequest(30 + i));
+        }
+        requests.add(requests.get(0).toBuilder().setName("Duplicate").build());
+
+        CompletableFuture<BulkRegistrationResponse> response = new CompletableFuture<>();
+        StreamObserver<RegistrationRequest> upload = CustomerServiceGrpc.newStub(channel)
+                .registerCustomers(observer(response));
+        requests.forEach(upload::onNext);
+        upload.onCompleted();
+
+        BulkRegistrationResponse report = response.get(10, TimeUnit.SECONDS);
+        assertThat(report.getCreated()).isEqualTo(3);
+        assertThat(report.getRejected()).isEqualTo(1);
+        assertThat(report.getRejectionsList())
+                .extracting(BulkRegistrationResult::getIndex, BulkRegistrationResult::getStatus)
+                .containsExactly(tuple(3, BulkRegistrationResult.Status.DUPLICATE_EMAIL));
+
+        // list them back across several pages
+        List<CustomerProto.Customer> listed = new ArrayList<>();
+        blockingStub.listCustomers(ListCustomersRequest.newBuilder()
+                        .setPageSize(2)
+                        .build())
+                .forEachRemaining(listed::add);
+        List<CustomerProto.Customer> registered = listed.stream()
+                .filter(customer -> requests.stream().anyMatch(r -> r.getEmail().equals(customer.getEmail())))
+                .toList();
+        assertThat(registered)
+                .extracting(CustomerProto.Customer::getName)
+                .containsExactly(requests.get(0).getName(), requests.get(1).getName(), requests.get(2).getName());
+
+        // get one
+        CustomerProto.Customer first = registered.get(0);
+        assertThat(blockingStub.getCustomer(GetCustomerRequest.newBuilder().setId(first.getId()).build()))
+                .isEqualTo(first);
+
+        // update its age, leaving the rest unchanged
+        CustomerProto.Customer updated = blockingStub.updateCustomer(UpdateCustomerRequest.newBuilder()
+                .setId(first.getId())
+                .setAge(first.getAge() + 1)
+                .build());
+        assertThat(updated.getAge()).isEqualTo(first.getAge() + 1);
+        assertThat(updated.getName()).isEqualTo(first.getName());
+        assertThat(updated.getVersion()).isGreaterThan(first.getVersion());
+
+        // an update against the old version is stale
+        assertThatThrownBy(() -> blockingStub.updateCustomer(UpdateCustomerRequest.newBuilder()
+                .setId(first.getId())
+                .setName("Too late")
+                .setVersion(first.getVersion())
+                .build()))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.ABORTED));
+
+        // delete it
+        blockingStub.deleteCustomer(DeleteCustomerRequest.newBuilder().setId(first.getId()).build());
+        assertThatThrownBy(() -> blockingStub.getCustomer(GetCustomerRequest.newBuilder().setId(first.getId()).build()))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.NOT_FOUND));
+    }
+
+    @Test
+    void canExportCustomers() throws Exception {
+        // register enough customers to fill the transport's buffers several times over
+        List<RegistrationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            requests.add(registrationRequest(20 + i % 50));
+        }
+        CompletableFuture<BulkRegistrationResponse> response = new CompletableFuture<>();
+        StreamObserver<RegistrationRequest> upload = CustomerServiceGrpc.newStub(channel)
+                .registerCustomers(observer(response));
+        requests.forEach(upload::onNext);
+        upload.onCompleted();
+        assertThat(response.get(30, TimeUnit.SECONDS).getCreated()).isEqualTo(requests.size());
+
+        // export them all
+        List<String> exported = new ArrayList<>();
+        blockingStub.withDeadlineAfter(30, TimeUnit.SECONDS)
+                .exportCustomers(ExportCustomersRequest.getDefaultInstance())
+                .forEachRemaining(customer -> exported.add(customer.getEmail()));
+
+        assertThat(exported).containsAll(requests.stream().map(RegistrationRequest::getEmail).toList());
+    }
+
+    private static RegistrationRequest registrationRequest(int age) {
+        Faker faker = new Faker();
+        String firstName = faker.name().firstName();
+        String lastName = faker.name().lastName();
+        return RegistrationRequest.newBuilder()
+                .setName(firstName + " " + lastName)
+                .setEmail(firstName + "." + lastName + "-" + UUID.randomUUID() + "@gmail.com")
+                .setAge(age)
+                .setGender(RANDOM.nextBoolean() ? CustomerProto.Gender.MALE : CustomerProto.Gender.FEMALE)
+                .build();
+    }
+
+    private static <T> StreamObserver<T> observer(CompletableFuture<T> result) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+    }
+}
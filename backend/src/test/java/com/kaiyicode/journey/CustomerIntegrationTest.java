@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
@@ -68,7 +69,7 @@ public class CustomerIntegrationTest {
 
         // make sure that customer is present
         assertThat(allCustomers)
-                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id", "version")
                 .contains(expectedCustomer);
 
         // get customer by id
@@ -193,7 +194,7 @@ public class CustomerIntegrationTest {
         int newAge = RANDOM.nextInt(16, 99);
 
         CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(
-                newName, newEmail, newAge
+                newName, newEmail, newAge, null
         );
 
         webClient.put()
@@ -216,4 +217,109 @@ public class CustomerIntegrationTest {
                 .expectBody(new ParameterizedTypeReference<Customer>() {})
                 .isEqualTo(expectedCustomer);
     }
+
+    @Test
+    void canRevalidateCustomerWithETag() {
+        // create registration request
+        Faker faker = new Faker();
+        String firstName = faker.name().firstName();
+        String lastName = faker.name().lastName();
+        String name = firstName + " " + lastName;
+        String email = firstName + "." + lastName + "-" + UUID.randomUUID() + "@gmail.com";
+        int age = RANDOM.nextInt(16, 99);
+        Gender gender = age % 2 == 0 ? Gender.MALE : Gender.FEMALE;
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                name, email, age, gender
+        );
+
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        // get all customers and remember the list's ETag
+        var allCustomersResult = webClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() {})
+                .returnResult();
+        String listETag = allCustomersResult.getResponseHeaders().getETag();
+        assertThat(listETag).isNotNull();
+
+        var id = allCustomersResult.getResponseBody().stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // unchanged list revalidates with 304 and no body
+        webClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        // same for a single customer
+        String customerETag = webClient.get()
+                .uri(CUSTOMER_URI + "/" + id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(customerETag).isNotNull();
+
+        webClient.get()
+                .uri(CUSTOMER_URI + "/" + id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(customerETag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        // an update invalidates both tags
+        CustomerUpdateRequest customerUpdateRequest = new CustomerUpdateRequest(
+                name + " Jr.", null, null, null
+        );
+
+        webClient.put()
+                .uri(CUSTOMER_URI + "/" + id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(customerUpdateRequest), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus().isOk();
+
+        webClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus().isOk();
+
+        webClient.get()
+                .uri(CUSTOMER_URI + "/" + id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(customerETag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Customer.class)
+                .value(customer -> assertThat(customer.getName()).isEqualTo(name + " Jr."));
+
+        // a missing customer carries no tag a client could revalidate once the id exists
+        webClient.get()
+                .uri(CUSTOMER_URI + "/" + Integer.MAX_VALUE)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectHeader().doesNotExist(HttpHeaders.ETAG);
+    }
 }
@@ -0,0 +1,273 @@
+package com.kaiyicode.journey;
+
+import com.github.javafaker.Faker;
+import com.kaiyicode.AbstractTestcontainers;
+import com.kaiyicode.customer.Customer;
+import com.kaiyicode.customer.CustomerPage;
+import com.kaiyicode.customer.CustomerReactiveServer;
+import com.kaiyicode.customer.CustomerRegistrationRequest;
+import com.kaiyicode.customer.CustomerUpdateRequest;
+import com.kaiyicode.customer.Gender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+// the reactive server listens next to the servlet container; its port is picked at random too
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "customer.change-listener.enabled=false",
+        "customer.reactive.enabled=true",
+        "customer.reactive.port=0"
+})
+public class CustomerReactiveIntegrationTest extends AbstractTestcontainers {
+
+    @Autowired
+    private CustomerReactiveServer server;
+    private WebTestClient webClient;
+    private static final Random RANDOM = new Random();
+    private static final String CUSTOMER_URI = "/api/v1/customer";
+
+    @BeforeEach
+    void setUp() {
+        webClient = WebTestClient.bindToServer()
+                .baseUrl("http://localhost:" + server.getPort())
+                .responseTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Test
+    void canRegisterGetUpdateAndDeleteCustomer() {
+        // register
+        CustomerRegistrationRequest request = registrationRequest(30, Gender.FEMALE);
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk();
+
+        // registering the same email again is a conflict
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("email address already exists");
+
+        // find it in the streamed list
+        List<Customer> allCustomers = webClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Customer.class)
+                .returnResult()
+                .getResponseBody();
+        Customer registered = allCustomers.stream()
+                .filter(customer -> customer.getEmail().equals(request.email()))
+                .findFirst()
+                .orElseThrow();
+        assertThat(registered)
+                .usingRecursiveComparison()
+                .ignoringFields("id", "version")
+                .isEqualTo(new Customer(request.name(), request.email(), request.age(), request.gender()));
+
+        // update it
+        String newName = "Reactive " + registered.getName();
+        Customer updated = webClient.put()
+                .uri(CUSTOMER_URI + "/{id}", registered.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerUpdateRequest(newName, null, null, registered.getVersion()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Customer.class)
+                .returnResult()
+                .getResponseBody();
+        assertThat(updated.getName()).isEqualTo(newName);
+        assertThat(updated.getVersion()).isEqualTo(registered.getVersion() + 1);
+
+        // the old version is stale now
+        webClient.put()
+                .uri(CUSTOMER_URI + "/{id}", registered.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerUpdateRequest("Someone", null, null, registered.getVersion()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+
+        // delete it
+        webClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", registered.getId())
+                .exchange()
+                .expectStatus().isOk();
+
+        // and it is gone, with the same error body as the servlet API
+        webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", registered.getId())
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(404)
+                .jsonPath("$.message").isEqualTo("customer with [%s] not found".formatted(registered.getId()))
+                .jsonPath("$.path").isEqualTo(CUSTOMER_URI + "/" + registered.getId());
+    }
+
+    @Test
+    void canRevalidateCustomerWithETag() {
+        // Given
+        Customer customer = register(registrationRequest(40, Gender.MALE));
+        String eTag = webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", customer.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(eTag).isNotNull();
+
+        // When
+        // Then
+        webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", customer.getId())
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        webClient.put()
+                .uri(CUSTOMER_URI + "/{id}", customer.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new CustomerUpdateRequest(null, null, 41, null))
+                .exchange()
+                .expectStatus().isOk();
+
+        webClient.get()
+                .uri(CUSTOMER_URI + "/{id}", customer.getId())
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void canPageFilteredCustomersWithCursor() {
+        // Given
+        // an age band of its own, so rows from earlier runs stay out of the pages
+        int age = 1_000 + RANDOM.nextInt(1_000_000) * 2;
+        Customer first = register(registrationRequest(age, Gender.FEMALE));
+        Customer second = register(registrationRequest(age + 1, Gender.FEMALE));
+
+        // When
+        CustomerPage firstPage = page(age, null);
+        CustomerPage secondPage = page(age, firstPage.nextCursor());
+
+        // Then
+        assertThat(firstPage.customers()).extracting(Customer::getId).containsExactly(first.getId());
+        assertThat(firstPage.nextCursor()).isNotNull();
+        assertThat(secondPage.customers()).extracting(Customer::getId).containsExactly(second.getId());
+
+        webClient.get()
+                .uri(CUSTOMER_URI + "/page?sort=email")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("sort must be one of id, name or age, not [email]");
+    }
+
+    @Test
+    void exportStreamsNewlineDelimitedCustomers() {
+        // Given
+        Customer customer = register(registrationRequest(25, Gender.MALE));
+
+        // When
+        List<Customer> exported = webClient.get()
+                .uri(CUSTOMER_URI + "/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Customer.class)
+                .getResponseBody()
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        // Then
+        assertThat(exported).extracting(Customer::getId).contains(customer.getId());
+    }
+
+    @Test
+    void batchReportsMissingIds() {
+        // Given
+        Customer customer = register(registrationRequest(26, Gender.FEMALE));
+
+        // When
+        Map<String, List<Object>> actual = webClient.get()
+                .uri(CUSTOMER_URI + "/batch?ids={id},-1", customer.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<Map<String, List<Object>>>() {})
+                .returnResult()
+                .getResponseBody();
+
+        // Then
+        assertThat(actual.get("customers")).hasSize(1);
+        assertThat(actual.get("missingIds")).containsExactly(-1);
+    }
+
+    private CustomerPage page(int minAge, String cursor) {
+        return webClient.get()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI + "/page")
+                        .queryParam("size", 1)
+                        .queryParam("gender", "FEMALE")
+                        .queryParam("minAge", minAge)
+                        .queryParam("maxAge", minAge + 1)
+                        .queryParam("sort", "age")
+                        .queryParamIfPresent("cursor", Optional.ofNullable(cursor))
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private Customer register(CustomerRegistrationRequest request) {
+        webClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk();
+        return webClient.get()
+                .uri(CUSTOMER_URI + "/export")
+                .exchange()
+                .returnResult(Customer.class)
+                .getResponseBody()
+                .filter(customer -> customer.getEmail().equals(request.email()))
+                .blockFirst(Duration.ofSeconds(10));
+    }
+
+    private static CustomerRegistrationRequest registrationRequest(int age, Gender gender) {
+        Faker faker = new Faker();
+        String firstName = faker.name().firstName();
+        String lastName = faker.name().lastName();
+        return new CustomerRegistrationRequest(
+                firstName + " " + lastName,
+                firstName + "." + lastName + "-" + UUID.randomUUID() + "@gmail.com",
+                age,
+                gender);
+    }
+}